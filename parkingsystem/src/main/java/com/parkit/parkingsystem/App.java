@@ -1,5 +1,6 @@
 package com.parkit.parkingsystem;
 
+import com.parkit.parkingsystem.config.DataBaseConfig;
 import com.parkit.parkingsystem.service.InteractiveShell;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -9,5 +10,6 @@ public class App {
     public static void main(String args[]){
         logger.info("Initializing Parking System");
         InteractiveShell.loadInterface();
+        DataBaseConfig.closeConnectionPool();
     }
 }
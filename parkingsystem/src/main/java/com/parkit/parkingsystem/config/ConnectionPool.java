@@ -0,0 +1,244 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of JDBC connections. At most maxSize connections are handed out at the same time,
+ * idle connections are validated before being reused and closed once they stayed idle too long.
+ */
+public class ConnectionPool {
+
+    private static final Logger logger = LogManager.getLogger("ConnectionPool");
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    public interface ConnectionFactory {
+        Connection create() throws ClassNotFoundException, SQLException;
+    }
+
+    private static class IdleConnection {
+        private final Connection connection;
+        private final long idleSince;
+
+        private IdleConnection(Connection connection, long idleSince) {
+            this.connection = connection;
+            this.idleSince = idleSince;
+        }
+    }
+
+    private final ConnectionFactory connectionFactory;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final long borrowTimeoutMillis;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<IdleConnection> idleConnections = new LinkedBlockingDeque<>();
+    private final ConcurrentHashMap<Connection, Boolean> activeConnections = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService evictor;
+
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+
+    private volatile boolean closed;
+
+    /**
+     * Creates a pool and starts closing its connections that stay idle longer than idleTimeoutMillis.
+     */
+    public static ConnectionPool create(ConnectionFactory connectionFactory, int maxSize, long idleTimeoutMillis, long borrowTimeoutMillis) {
+        ConnectionPool pool = new ConnectionPool(connectionFactory, maxSize, idleTimeoutMillis, borrowTimeoutMillis);
+        long period = Math.max(1000, idleTimeoutMillis / 2);
+        pool.evictor.scheduleAtFixedRate(pool::evictIdleConnections, period, period, TimeUnit.MILLISECONDS);
+        return pool;
+    }
+
+    private ConnectionPool(ConnectionFactory connectionFactory, int maxSize, long idleTimeoutMillis, long borrowTimeoutMillis) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive");
+        }
+        this.connectionFactory = connectionFactory;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.permits = new Semaphore(maxSize, true);
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public Connection borrow() throws ClassNotFoundException, SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timeout waiting for a connection from the pool after " + borrowTimeoutMillis + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection from the pool", e);
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            Connection connection = takeValidIdleConnection();
+            if (connection == null) {
+                connection = connectionFactory.create();
+                createdCount.incrementAndGet();
+            }
+            activeConnections.put(connection, Boolean.TRUE);
+            return connection;
+        } catch (ClassNotFoundException | SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public void release(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        if (activeConnections.remove(connection) == null) {
+            //not borrowed from this pool, closed so that it does not leak, unless it is already back in the pool
+            if (!isIdle(connection)) {
+                logger.error("Closing a connection that was not borrowed from the pool");
+                closeQuietly(connection);
+            }
+            return;
+        }
+        try {
+            if (closed || connection.isClosed()) {
+                closeQuietly(connection);
+            } else {
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                idleConnections.offerFirst(new IdleConnection(connection, System.currentTimeMillis()));
+            }
+        } catch (SQLException e) {
+            logger.error("Error while returning connection to the pool", e);
+            closeQuietly(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        IdleConnection idle;
+        while ((idle = idleConnections.pollFirst()) != null) {
+            closeQuietly(idle.connection);
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getActiveCount() {
+        return activeConnections.size();
+    }
+
+    public int getIdleCount() {
+        return idleConnections.size();
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+
+    public long getEvictedCount() {
+        return evictedCount.get();
+    }
+
+    public long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get());
+    }
+
+    public long getMaxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    public double getAverageWaitMillis() {
+        long borrows = borrowCount.get();
+        return borrows == 0 ? 0 : (double) totalWaitNanos.get() / borrows / 1_000_000;
+    }
+
+    void evictIdleConnections() {
+        long limit = System.currentTimeMillis() - idleTimeoutMillis;
+        Iterator<IdleConnection> iterator = idleConnections.descendingIterator();
+        while (iterator.hasNext()) {
+            IdleConnection idle = iterator.next();
+            if (idle.idleSince < limit && idleConnections.remove(idle)) {
+                closeQuietly(idle.connection);
+                evictedCount.incrementAndGet();
+            }
+        }
+    }
+
+    private Connection takeValidIdleConnection() {
+        IdleConnection idle;
+        while ((idle = idleConnections.pollFirst()) != null) {
+            if (isValid(idle.connection)) {
+                return idle.connection;
+            }
+            closeQuietly(idle.connection);
+            evictedCount.incrementAndGet();
+        }
+        return null;
+    }
+
+    private boolean isIdle(Connection connection) {
+        for (IdleConnection idle : idleConnections) {
+            if (idle.connection == connection) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void recordWait(long waitNanos) {
+        borrowCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    private void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.error("Error while closing pooled connection", e);
+        }
+    }
+}
@@ -1,28 +1,99 @@
 package com.parkit.parkingsystem.config;
 
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.sql.*;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class DataBaseConfig {
 
+    //the connection, statement and result set lifecycle is logged at debug: it runs several times per DAO call
     private static final Logger logger = LogManager.getLogger("DataBaseConfig");
 
+    private static final OperationMetrics GET_CONNECTION_METRICS = Metrics.operation("DataBaseConfig.getConnection");
+
+    private static final int POOL_SIZE = Integer.getInteger("parkit.db.pool.size", 10);
+    private static final long POOL_IDLE_TIMEOUT_MILLIS = Long.getLong("parkit.db.pool.idleTimeoutMillis", 5 * 60 * 1000L);
+    private static final long POOL_BORROW_TIMEOUT_MILLIS = Long.getLong("parkit.db.pool.borrowTimeoutMillis", 30 * 1000L);
+
+    //a lock rather than synchronized so that virtual threads waiting here do not pin their carrier
+    private static final ReentrantLock connectionPoolLock = new ReentrantLock();
+    private static volatile ConnectionPool connectionPool;
+
+    public static ConnectionPool getConnectionPool() {
+        ConnectionPool pool = connectionPool;
+        if (pool != null) {
+            return pool;
+        }
+        connectionPoolLock.lock();
+        try {
+            if (connectionPool == null) {
+                StorageBackend backend = StorageBackend.fromConfiguration();
+                pool = ConnectionPool.create(backend::connect, POOL_SIZE, POOL_IDLE_TIMEOUT_MILLIS, POOL_BORROW_TIMEOUT_MILLIS);
+                logger.info("Using the " + backend.name().toLowerCase() + " storage backend");
+                if (backend.isEmbedded()) {
+                    migrate(pool);
+                }
+                connectionPool = pool;
+            }
+            return connectionPool;
+        } finally {
+            connectionPoolLock.unlock();
+        }
+    }
+
+    private static void migrate(ConnectionPool pool) {
+        try {
+            Connection con = pool.borrow();
+            try {
+                SchemaMigrator.migrate(con);
+            } finally {
+                pool.release(con);
+            }
+        } catch (Exception e) {
+            logger.error("Error migrating the embedded database schema", e);
+        }
+    }
+
+    public static void closeConnectionPool() {
+        connectionPoolLock.lock();
+        try {
+            if (connectionPool != null) {
+                connectionPool.close();
+                connectionPool = null;
+            }
+        } finally {
+            connectionPoolLock.unlock();
+        }
+    }
+
     public Connection getConnection() throws ClassNotFoundException, SQLException {
-        logger.info("Create DB connection");
-        Class.forName("com.mysql.cj.jdbc.Driver");
-        return DriverManager.getConnection(
-                "jdbc:mysql://localhost:3306/test?serverTimezone=UTC&enabledTLSProtocols=TLSv1.2","root","codio");
+        long start = System.nanoTime();
+        try {
+            return getConnectionPool().borrow();
+        } finally {
+            GET_CONNECTION_METRICS.record(start);
+        }
     }
 
     public void closeConnection(Connection con){
+        if(con!=null){
+            getConnectionPool().release(con);
+            if(logger.isDebugEnabled()){
+                logger.debug("Released DB connection to the pool");
+            }
+        }
+    }
+
+    public void rollback(Connection con){
         if(con!=null){
             try {
-                con.close();
-                logger.info("Closing DB connection");
+                con.rollback();
             } catch (SQLException e) {
-                logger.error("Error while closing connection",e);
+                logger.error("Error while rolling back transaction",e);
             }
         }
     }
@@ -31,7 +102,9 @@ public class DataBaseConfig {
         if(ps!=null){
             try {
                 ps.close();
-                logger.info("Closing Prepared Statement");
+                if(logger.isDebugEnabled()){
+                    logger.debug("Closing Prepared Statement");
+                }
             } catch (SQLException e) {
                 logger.error("Error while closing prepared statement",e);
             }
@@ -42,7 +115,9 @@ public class DataBaseConfig {
         if(rs!=null){
             try {
                 rs.close();
-                logger.info("Closing Result Set");
+                if(logger.isDebugEnabled()){
+                    logger.debug("Closing Result Set");
+                }
             } catch (SQLException e) {
                 logger.error("Error while closing result set",e);
             }
@@ -0,0 +1,162 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies the versioned scripts of db/migration on top of a database created with resources/Data.sql,
+ * or from scratch on an empty database. The scripts only use SQL that both MySQL and H2 in MySQL mode run.
+ * Applied versions are recorded in the schema_version table so each script only runs once.
+ */
+public class SchemaMigrator {
+
+    private static final Logger logger = LogManager.getLogger("SchemaMigrator");
+
+    public static final String MIGRATION_PATH = "db/migration/";
+
+    //keep in order, new scripts are appended at the end
+    public static final String[] MIGRATIONS = {
+            "V1__baseline.sql",
+            "V2__vehicle_visit.sql",
+            "V3__ticket_indexes.sql",
+            "V4__default_parking_spots.sql",
+            "V5__archived_visit.sql",
+            "V6__ticket_in_time_index.sql",
+            "V7__ticket_export_pending.sql",
+            "V8__ticket_rollup.sql"
+    };
+
+    private static final String CREATE_SCHEMA_VERSION = "create table if not exists schema_version(VERSION int PRIMARY KEY, SCRIPT varchar(100) NOT NULL, INSTALLED_ON DATETIME NOT NULL)";
+    private static final String GET_SCHEMA_VERSION = "select max(VERSION) from schema_version";
+    private static final String SAVE_SCHEMA_VERSION = "insert into schema_version(VERSION, SCRIPT, INSTALLED_ON) values(?,?,?)";
+
+    //duplicate key name on MySQL, and the SQL state H2 uses for an index that already exists
+    private static final int MYSQL_DUPLICATE_INDEX = 1061;
+    private static final String DUPLICATE_INDEX_STATE = "42S11";
+
+    private final DataBaseConfig dataBaseConfig;
+
+    public SchemaMigrator(DataBaseConfig dataBaseConfig) {
+        this.dataBaseConfig = dataBaseConfig;
+    }
+
+    public int migrate() throws Exception {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            return migrate(con);
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    public static int migrate(Connection con) throws Exception {
+        try (Statement statement = con.createStatement()) {
+            statement.execute(CREATE_SCHEMA_VERSION);
+        }
+        int currentVersion = getCurrentVersion(con);
+        int applied = 0;
+        for (String script : MIGRATIONS) {
+            int version = getVersion(script);
+            if (version > currentVersion) {
+                apply(con, version, script);
+                applied++;
+            }
+        }
+        logger.info("Database schema is up to date, " + applied + " migration(s) applied");
+        return applied;
+    }
+
+    public static int getVersion(String script) {
+        return Integer.parseInt(script.substring(1, script.indexOf("__")));
+    }
+
+    public static List<String> readStatements(String script) throws IOException {
+        InputStream in = SchemaMigrator.class.getClassLoader().getResourceAsStream(MIGRATION_PATH + script);
+        if (in == null) {
+            throw new IOException("Migration script not found:" + script);
+        }
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                    continue;
+                }
+                current.append(line).append('\n');
+                if (trimmed.endsWith(";")) {
+                    String statement = current.toString().trim();
+                    statements.add(statement.substring(0, statement.length() - 1));
+                    current.setLength(0);
+                }
+            }
+        }
+        if (current.toString().trim().length() > 0) {
+            statements.add(current.toString().trim());
+        }
+        return statements;
+    }
+
+    private static int getCurrentVersion(Connection con) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(GET_SCHEMA_VERSION);
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static void apply(Connection con, int version, String script) throws Exception {
+        logger.info("Applying migration " + script);
+        //DDL statements commit implicitly on MySQL, so each script must be safe to re-run up to its failure point
+        try (Statement statement = con.createStatement()) {
+            for (String sql : readStatements(script)) {
+                try {
+                    statement.execute(sql);
+                } catch (SQLException e) {
+                    //MySQL has no "create index if not exists": an index created by a failed run is kept
+                    if (!isCreateIndex(sql) || !isDuplicateIndex(e)) {
+                        throw e;
+                    }
+                    logger.info("Index of " + script + " already exists, skipping: " + sql);
+                }
+            }
+        }
+        try (PreparedStatement ps = con.prepareStatement(SAVE_SCHEMA_VERSION)) {
+            ps.setInt(1, version);
+            ps.setString(2, script);
+            ps.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+            ps.executeUpdate();
+        }
+    }
+
+    private static boolean isCreateIndex(String sql) {
+        return sql.regionMatches(true, 0, "create index", 0, "create index".length());
+    }
+
+    private static boolean isDuplicateIndex(SQLException e) {
+        return e.getErrorCode() == MYSQL_DUPLICATE_INDEX || DUPLICATE_INDEX_STATE.equals(e.getSQLState());
+    }
+
+    public static void main(String[] args) throws Exception {
+        try {
+            new SchemaMigrator(new DataBaseConfig()).migrate();
+        } finally {
+            DataBaseConfig.closeConnectionPool();
+        }
+    }
+}
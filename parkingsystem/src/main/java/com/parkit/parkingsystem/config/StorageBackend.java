@@ -0,0 +1,90 @@
+package com.parkit.parkingsystem.config;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * Database the application stores its parking spots and tickets in, chosen with -Dparkit.db.backend:
+ * <ul>
+ * <li>mysql (default): a MySQL server, -Dparkit.db.url, -Dparkit.db.user and -Dparkit.db.password
+ * override the connection settings.</li>
+ * <li>h2: an embedded H2 database running in the application process, stored in the file
+ * -Dparkit.db.file (data/parkit by default). It runs in MySQL mode so the same SQL works on both,
+ * and its schema is created and migrated on first use.</li>
+ * <li>memory: no SQL database, InMemoryParkingStore keeps the data in memory with a write-ahead log
+ * on disk. It is not a JDBC backend, see isInMemory.</li>
+ * </ul>
+ */
+public enum StorageBackend {
+
+    MYSQL("com.mysql.cj.jdbc.Driver", "root", "codio", false) {
+        @Override
+        String defaultUrl() {
+            //server side prepared statements, cached per connection so that each statement is parsed and planned
+            //once per pooled connection and closing it only returns it to the cache
+            return "jdbc:mysql://localhost:3306/test?serverTimezone=UTC&enabledTLSProtocols=TLSv1.2&rewriteBatchedStatements=true&useCursorFetch=true"
+                    + "&useServerPrepStmts=true&cachePrepStmts=true&prepStmtCacheSize=" + PREP_STMT_CACHE_SIZE + "&prepStmtCacheSqlLimit=2048";
+        }
+    },
+
+    H2("org.h2.Driver", "sa", "", true) {
+        @Override
+        String defaultUrl() {
+            return h2Url("file:" + System.getProperty("parkit.db.file", "data/parkit"));
+        }
+    };
+
+    public static final String BACKEND_PROPERTY = "parkit.db.backend";
+    public static final String MEMORY_BACKEND = "memory";
+
+    private static final int PREP_STMT_CACHE_SIZE = Integer.getInteger("parkit.db.prepStmtCacheSize", 64);
+
+    private final String driverClassName;
+    private final String defaultUser;
+    private final String defaultPassword;
+    private final boolean embedded;
+
+    StorageBackend(String driverClassName, String defaultUser, String defaultPassword, boolean embedded) {
+        this.driverClassName = driverClassName;
+        this.defaultUser = defaultUser;
+        this.defaultPassword = defaultPassword;
+        this.embedded = embedded;
+    }
+
+    abstract String defaultUrl();
+
+    /**
+     * An embedded database has no administrator to run Data.sql, so the application creates its schema.
+     */
+    public boolean isEmbedded() {
+        return embedded;
+    }
+
+    public Connection connect() throws ClassNotFoundException, SQLException {
+        Class.forName(driverClassName);
+        return DriverManager.getConnection(System.getProperty("parkit.db.url", defaultUrl()),
+                System.getProperty("parkit.db.user", defaultUser), System.getProperty("parkit.db.password", defaultPassword));
+    }
+
+    /**
+     * URL of an H2 database with the MySQL compatibility settings, database being "file:path" or "mem:name".
+     */
+    public static String h2Url(String database) {
+        return "jdbc:h2:" + database + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE";
+    }
+
+    public static boolean isInMemory() {
+        return MEMORY_BACKEND.equalsIgnoreCase(System.getProperty(BACKEND_PROPERTY, "").trim());
+    }
+
+    public static StorageBackend fromConfiguration() {
+        String backend = System.getProperty(BACKEND_PROPERTY, "mysql");
+        try {
+            return valueOf(backend.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown storage backend:" + backend);
+        }
+    }
+}
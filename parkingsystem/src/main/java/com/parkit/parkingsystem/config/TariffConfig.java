@@ -0,0 +1,203 @@
+package com.parkit.parkingsystem.config;
+
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.Tariff;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Loads the tariff of the site from the file given by -Dparkit.tariff.file, or from tariff.properties
+ * on the classpath, and keeps it in memory. When a file is used it can be watched and reloaded as soon
+ * as it changes; a tariff that fails to load never replaces the current one.
+ */
+public class TariffConfig {
+
+    private static final Logger logger = LogManager.getLogger("TariffConfig");
+
+    public static final String TARIFF_FILE_PROPERTY = "parkit.tariff.file";
+    private static final String TARIFF_RESOURCE = "tariff.properties";
+    //keeps minutes * rate * band * discount of FareEngine far from a long overflow
+    private static final long MAX_BAND_PERCENT = 1000;
+
+    //guards reload, which reads the tariff file
+    private static final ReentrantLock lock = new ReentrantLock();
+    private static volatile Tariff tariff;
+    private static long loadedLastModified;
+    private static ScheduledExecutorService watcher;
+
+    public static Tariff getTariff() {
+        Tariff current = tariff;
+        if (current == null) {
+            lock.lock();
+            try {
+                if (tariff == null) {
+                    reload();
+                }
+                current = tariff;
+            } finally {
+                lock.unlock();
+            }
+        }
+        return current;
+    }
+
+    public static void setTariff(Tariff newTariff) {
+        lock.lock();
+        try {
+            tariff = newTariff;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static boolean reload() {
+        String file = System.getProperty(TARIFF_FILE_PROPERTY);
+        lock.lock();
+        try {
+            Properties properties = new Properties();
+            if (file != null) {
+                Path path = Paths.get(file);
+                long lastModified = Files.getLastModifiedTime(path).toMillis();
+                try (InputStream in = Files.newInputStream(path)) {
+                    properties.load(in);
+                }
+                loadedLastModified = lastModified;
+            } else {
+                try (InputStream in = TariffConfig.class.getClassLoader().getResourceAsStream(TARIFF_RESOURCE)) {
+                    if (in != null) {
+                        properties.load(in);
+                    }
+                }
+            }
+            tariff = parse(properties);
+            logger.info("Tariff loaded from " + (file != null ? file : TARIFF_RESOURCE));
+            return true;
+        } catch (IOException | RuntimeException e) {
+            logger.error("Error loading tariff, keeping the current one", e);
+            if (tariff == null) {
+                tariff = parse(new Properties());
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static void watch(long periodMillis) {
+        lock.lock();
+        try {
+            if (watcher != null || System.getProperty(TARIFF_FILE_PROPERTY) == null) {
+                return;
+            }
+            watcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "tariff-watcher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            watcher.scheduleWithFixedDelay(TariffConfig::reloadIfModified, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void reloadIfModified() {
+        lock.lock();
+        try {
+            long lastModified = Files.getLastModifiedTime(Paths.get(System.getProperty(TARIFF_FILE_PROPERTY))).toMillis();
+            if (lastModified != loadedLastModified) {
+                reload();
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("Error checking tariff file", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * rate.CAR / rate.BIKE: hourly rate in cents
+     * freePeriodMinutes: parking time that is not charged
+     * discount.N: discount percentage from N previous visits on
+     * band.FROM-TO: percentage of the hourly rate, up to 1000, for an entry between hour FROM (included) and TO (excluded)
+     * zoneOffset: offset of the site local time used by the bands, for example +01:00
+     */
+    public static Tariff parse(Properties properties) {
+        long[] ratePerHourInCents = new long[ParkingType.values().length];
+        ratePerHourInCents[ParkingType.CAR.ordinal()] = Fare.CAR_RATE_PER_HOUR_IN_CENTS;
+        ratePerHourInCents[ParkingType.BIKE.ordinal()] = Fare.BIKE_RATE_PER_HOUR_IN_CENTS;
+        long freePeriodInMinutes = Fare.FREE_PERIOD_IN_MINUTES;
+        TreeMap<Integer, Long> discountTiers = new TreeMap<>();
+        discountTiers.put(0, 0L);
+        boolean discountConfigured = false;
+        long[] ratePercentByHourOfDay = new long[24];
+        Arrays.fill(ratePercentByHourOfDay, 100);
+        long zoneOffsetMillis = 0;
+
+        for (String key : properties.stringPropertyNames()) {
+            String value = properties.getProperty(key).trim();
+            if (key.startsWith("rate.")) {
+                ratePerHourInCents[ParkingType.valueOf(key.substring("rate.".length())).ordinal()] = parsePositive(key, value);
+            } else if (key.equals("freePeriodMinutes")) {
+                freePeriodInMinutes = parsePositive(key, value);
+            } else if (key.startsWith("discount.")) {
+                long percent = parsePercent(key, value, 100);
+                discountTiers.put((int) parsePositive(key, key.substring("discount.".length())), percent);
+                discountConfigured = true;
+            } else if (key.startsWith("band.")) {
+                String[] hours = key.substring("band.".length()).split("-");
+                int fromHour = Integer.parseInt(hours[0]);
+                int toHour = Integer.parseInt(hours[1]);
+                if (fromHour < 0 || toHour > 24 || fromHour >= toHour) {
+                    throw new IllegalArgumentException("Invalid time band:" + key);
+                }
+                Arrays.fill(ratePercentByHourOfDay, fromHour, toHour, parsePercent(key, value, MAX_BAND_PERCENT));
+            } else if (key.equals("zoneOffset")) {
+                zoneOffsetMillis = TimeUnit.SECONDS.toMillis(ZoneOffset.of(value).getTotalSeconds());
+            } else {
+                logger.warn("Unknown tariff property " + key);
+            }
+        }
+        if (!discountConfigured) {
+            discountTiers.put(1, Fare.RECURRING_USER_DISCOUNT_PERCENT);
+        }
+
+        int maxVisits = discountTiers.lastKey();
+        long[] discountPercentByPreviousVisits = new long[maxVisits + 1];
+        for (Map.Entry<Integer, Long> tier : discountTiers.entrySet()) {
+            Arrays.fill(discountPercentByPreviousVisits, tier.getKey(), maxVisits + 1, tier.getValue());
+        }
+        return new Tariff(ratePerHourInCents, freePeriodInMinutes, discountPercentByPreviousVisits, ratePercentByHourOfDay, zoneOffsetMillis);
+    }
+
+    private static long parsePositive(String key, String value) {
+        long parsed = Long.parseLong(value);
+        if (parsed < 0) {
+            throw new IllegalArgumentException("Negative value for tariff property " + key);
+        }
+        return parsed;
+    }
+
+    private static long parsePercent(String key, String value, long max) {
+        long percent = parsePositive(key, value);
+        if (percent > max) {
+            throw new IllegalArgumentException("Percentage out of range for tariff property " + key);
+        }
+        return percent;
+    }
+}
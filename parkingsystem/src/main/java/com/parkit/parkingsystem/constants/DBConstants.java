@@ -2,11 +2,40 @@ package com.parkit.parkingsystem.constants;
 
 public class DBConstants {
 
-    public static final String GET_NEXT_PARKING_SPOT = "select min(PARKING_NUMBER) from parking where AVAILABLE = true and TYPE = ?";
+    public static final String GET_PARKING_SPOTS = "select PARKING_NUMBER, AVAILABLE, TYPE from parking";
+    public static final String CLAIM_PARKING_SPOT = "update parking set available = false where PARKING_NUMBER = ? and AVAILABLE = true";
     public static final String UPDATE_PARKING_SPOT = "update parking set available = ? where PARKING_NUMBER = ?";
 
     public static final String SAVE_TICKET = "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)";
-    public static final String UPDATE_TICKET = "update ticket set PRICE=?, OUT_TIME=? where ID=?";
+    public static final String UPDATE_TICKET = "update ticket set PRICE=?, OUT_TIME=? where ID=? and OUT_TIME is null";
+    public static final String UPDATE_TICKET_PRICE = "update ticket set PRICE=? where ID=?";
     public static final String GET_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? order by t.IN_TIME desc limit 1";
-    public static final String GET_NBTICKET = "select count(*) from ticket t where t.VEHICLE_REG_NUMBER=?";
+    public static final String GET_TICKET_FOR_EXIT = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE, v.NB_VISIT from ticket t join parking p on p.PARKING_NUMBER = t.PARKING_NUMBER left join vehicle_visit v on v.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER where t.VEHICLE_REG_NUMBER=? order by t.IN_TIME desc limit 1";
+    public static final String GET_OPEN_TICKETS = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.VEHICLE_REG_NUMBER, p.TYPE, v.NB_VISIT from ticket t join parking p on p.PARKING_NUMBER = t.PARKING_NUMBER left join vehicle_visit v on v.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER where t.OUT_TIME is null";
+    public static final String GET_TICKETS_FOR_ROLLUPS = "select t.IN_TIME, t.OUT_TIME, t.PRICE, p.TYPE from ticket t join parking p on p.PARKING_NUMBER = t.PARKING_NUMBER order by t.IN_TIME";
+    public static final String COUNT_TICKET_ROLLUPS = "select count(*) from ticket_rollup";
+    public static final String GET_TICKET_ROLLUPS = "select PERIOD, PERIOD_START, TYPE, TICKET_COUNT, REVENUE_CENTS, TOTAL_DURATION_MILLIS, PEAK_OCCUPIED from ticket_rollup";
+    public static final String ADD_TO_TICKET_ROLLUP = "insert into ticket_rollup(PERIOD, PERIOD_START, TYPE, TICKET_COUNT, REVENUE_CENTS, TOTAL_DURATION_MILLIS, PEAK_OCCUPIED) values(?,?,?,?,?,?,?) on duplicate key update TICKET_COUNT = TICKET_COUNT + ?, REVENUE_CENTS = REVENUE_CENTS + ?, TOTAL_DURATION_MILLIS = TOTAL_DURATION_MILLIS + ?, PEAK_OCCUPIED = greatest(PEAK_OCCUPIED, ?)";
+    public static final String COUNT_OPEN_TICKETS_BY_TYPE = "select p.TYPE, count(*) from ticket t join parking p on p.PARKING_NUMBER = t.PARKING_NUMBER where t.OUT_TIME is null group by p.TYPE";
+    public static final String GET_NBTICKET = "select NB_VISIT from vehicle_visit where VEHICLE_REG_NUMBER=?";
+    public static final String GET_VISIT_COUNTS = "select VEHICLE_REG_NUMBER, NB_VISIT from vehicle_visit";
+    public static final String COUNT_VISIT_COUNTS = "select count(*) from vehicle_visit";
+    public static final String CLEAR_VISIT_COUNTS = "delete from vehicle_visit";
+    public static final String REBUILD_VISIT_COUNTS = "insert into vehicle_visit(VEHICLE_REG_NUMBER, NB_VISIT) select VEHICLE_REG_NUMBER, sum(NB_VISIT) from (select VEHICLE_REG_NUMBER, count(*) as NB_VISIT from ticket group by VEHICLE_REG_NUMBER union all select VEHICLE_REG_NUMBER, NB_VISIT from vehicle_archived_visit) v group by VEHICLE_REG_NUMBER";
+    public static final String INCREMENT_VISIT = "insert into vehicle_visit(VEHICLE_REG_NUMBER, NB_VISIT) values(?,1) on duplicate key update NB_VISIT = NB_VISIT + 1";
+
+    public static final String GET_CLOSED_TICKETS_TO_REPRICE = "select t.ID, t.IN_TIME, t.OUT_TIME, t.PRICE, p.TYPE, coalesce((select a.NB_VISIT from vehicle_archived_visit a where a.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER), 0) + (select count(*) from ticket e where e.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER and e.ID < t.ID) from ticket t join parking p on p.PARKING_NUMBER = t.PARKING_NUMBER where t.ID > ? and t.OUT_TIME >= ? and t.OUT_TIME < ? order by t.ID";
+
+    public static final String GET_TICKETS_TO_EXPORT = "select t.ID, t.PARKING_NUMBER, p.TYPE, t.VEHICLE_REG_NUMBER, t.PRICE, t.IN_TIME, t.OUT_TIME from ticket t join parking p on p.PARKING_NUMBER = t.PARKING_NUMBER where t.ID > ? order by t.ID";
+    public static final String GET_TICKET_IDS_BETWEEN = "select ID from ticket where ID between ? and ? order by ID";
+    public static final String GET_PENDING_TICKETS_TO_EXPORT = "select t.ID, t.PARKING_NUMBER, p.TYPE, t.VEHICLE_REG_NUMBER, t.PRICE, t.IN_TIME, t.OUT_TIME, e.VERSION from ticket_export_pending e join ticket t on t.ID = e.TICKET_ID join parking p on p.PARKING_NUMBER = t.PARKING_NUMBER where t.OUT_TIME is not null order by t.ID";
+    public static final String MARK_TICKET_FOR_EXPORT = "insert into ticket_export_pending(TICKET_ID, VERSION) values(?,1) on duplicate key update VERSION = VERSION + 1";
+    public static final String CLEAR_TICKET_EXPORT_MARK = "delete from ticket_export_pending where TICKET_ID=? and VERSION=?";
+
+    //ticket_archive_<yyyyMM> tables, one per month of OUT_TIME
+    public static final String CREATE_TICKET_ARCHIVE = "create table if not exists ticket_archive_%s(ID int PRIMARY KEY, PARKING_NUMBER int NOT NULL, VEHICLE_REG_NUMBER varchar(10) NOT NULL, PRICE double, IN_TIME DATETIME NOT NULL, OUT_TIME DATETIME NOT NULL)";
+    public static final String ARCHIVE_TICKET = "insert into ticket_archive_%s(ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?,?)";
+    public static final String GET_TICKETS_TO_ARCHIVE = "select ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME from ticket t where OUT_TIME < ? and ID <= ? and not exists (select 1 from ticket_export_pending e where e.TICKET_ID = t.ID) order by OUT_TIME limit ?";
+    public static final String DELETE_TICKET = "delete from ticket where ID=?";
+    public static final String INCREMENT_ARCHIVED_VISITS = "insert into vehicle_archived_visit(VEHICLE_REG_NUMBER, NB_VISIT) values(?,?) on duplicate key update NB_VISIT = NB_VISIT + ?";
 }
@@ -3,4 +3,10 @@ package com.parkit.parkingsystem.constants;
 public class Fare {
     public static final double BIKE_RATE_PER_HOUR = 1.0;
     public static final double CAR_RATE_PER_HOUR = 1.5;
+
+    public static final long BIKE_RATE_PER_HOUR_IN_CENTS = 100;
+    public static final long CAR_RATE_PER_HOUR_IN_CENTS = 150;
+
+    public static final long FREE_PERIOD_IN_MINUTES = 30;
+    public static final long RECURRING_USER_DISCOUNT_PERCENT = 5;
 }
@@ -0,0 +1,19 @@
+package com.parkit.parkingsystem.constants;
+
+public enum ParkingError {
+    INVALID_VEHICLE_REG_NUMBER("Invalid vehicle registration number"),
+    PARKING_FULL("No parking spot available for this type of vehicle"),
+    NO_OPEN_TICKET("No open ticket for this vehicle"),
+    INVALID_OUT_TIME("Out time is before the in time of the ticket"),
+    DATABASE_ERROR("Unable to update ticket information. Error occurred");
+
+    private final String description;
+
+    ParkingError(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
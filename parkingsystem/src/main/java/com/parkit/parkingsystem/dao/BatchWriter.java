@@ -0,0 +1,311 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write pipeline that queues ticket inserts, ticket updates and parking spot updates coming from
+ * many callers and flushes them as JDBC batches in a single transaction. A flush happens as soon as
+ * maxBatchSize writes are queued or flushWindowMillis after the first queued write, and each caller
+ * is acknowledged once the transaction holding its write has been committed. The ticket_rollup
+ * changes of a ticket write are made in the same transaction, when the ticket write succeeds.
+ */
+public class BatchWriter {
+
+    private static final Logger logger = LogManager.getLogger("BatchWriter");
+
+    private enum WriteType {
+        SAVE_TICKET,
+        UPDATE_TICKET,
+        UPDATE_PARKING
+    }
+
+    private static class PendingWrite {
+        private final WriteType type;
+        private final Ticket ticket;
+        private final ParkingSpot parkingSpot;
+        private final List<TicketRollups.Change> rollupChanges;
+        private final CompletableFuture<Boolean> acknowledgement = new CompletableFuture<>();
+
+        private PendingWrite(WriteType type, Ticket ticket, ParkingSpot parkingSpot, List<TicketRollups.Change> rollupChanges) {
+            this.type = type;
+            this.ticket = ticket;
+            this.parkingSpot = parkingSpot;
+            this.rollupChanges = rollupChanges;
+        }
+    }
+
+    private final DataBaseConfig dataBaseConfig;
+    private final int maxBatchSize;
+    private final long flushWindowMillis;
+    private final BlockingQueue<PendingWrite> queue;
+    private final Thread flusher;
+
+    private volatile boolean running = true;
+
+    public BatchWriter(DataBaseConfig dataBaseConfig, int maxBatchSize, long flushWindowMillis) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.dataBaseConfig = dataBaseConfig;
+        this.maxBatchSize = maxBatchSize;
+        this.flushWindowMillis = flushWindowMillis;
+        this.queue = new ArrayBlockingQueue<>(maxBatchSize * 16);
+        this.flusher = new Thread(this::flushLoop, "batch-writer");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    public CompletableFuture<Boolean> saveTicket(Ticket ticket) {
+        return saveTicket(ticket, null);
+    }
+
+    public CompletableFuture<Boolean> saveTicket(Ticket ticket, List<TicketRollups.Change> rollupChanges) {
+        return enqueue(new PendingWrite(WriteType.SAVE_TICKET, ticket, null, rollupChanges));
+    }
+
+    public CompletableFuture<Boolean> updateTicket(Ticket ticket) {
+        return updateTicket(ticket, null);
+    }
+
+    public CompletableFuture<Boolean> updateTicket(Ticket ticket, List<TicketRollups.Change> rollupChanges) {
+        return enqueue(new PendingWrite(WriteType.UPDATE_TICKET, ticket, null, rollupChanges));
+    }
+
+    public CompletableFuture<Boolean> updateParking(ParkingSpot parkingSpot) {
+        return enqueue(new PendingWrite(WriteType.UPDATE_PARKING, null, parkingSpot, null));
+    }
+
+    public void close() {
+        running = false;
+        flusher.interrupt();
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        //queued by callers that saw the writer still running after the flusher had stopped
+        List<PendingWrite> leftovers = new ArrayList<>();
+        queue.drainTo(leftovers);
+        for (PendingWrite write : leftovers) {
+            write.acknowledgement.completeExceptionally(new IllegalStateException("Batch writer is closed"));
+        }
+    }
+
+    private CompletableFuture<Boolean> enqueue(PendingWrite write) {
+        if (!running) {
+            write.acknowledgement.completeExceptionally(new IllegalStateException("Batch writer is closed"));
+            return write.acknowledgement;
+        }
+        try {
+            //blocks the caller when the database cannot keep up, until the writer is closed
+            while (!queue.offer(write, 100, TimeUnit.MILLISECONDS)) {
+                if (!running) {
+                    write.acknowledgement.completeExceptionally(new IllegalStateException("Batch writer is closed"));
+                    return write.acknowledgement;
+                }
+            }
+            //closed meanwhile: the flusher may be gone, fail the write unless it or close() already took it
+            if (!running && queue.remove(write)) {
+                write.acknowledgement.completeExceptionally(new IllegalStateException("Batch writer is closed"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            write.acknowledgement.completeExceptionally(e);
+        }
+        return write.acknowledgement;
+    }
+
+    private void flushLoop() {
+        List<PendingWrite> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = running ? queue.take() : queue.poll();
+                if (first == null) {
+                    break;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushWindowMillis);
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingWrite next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                //close() was called, drain what is left before stopping
+                queue.drainTo(batch, maxBatchSize - batch.size());
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            List<PendingWrite> savedTickets = new ArrayList<>();
+            List<PendingWrite> updatedTickets = new ArrayList<>();
+            List<PendingWrite> updatedSpots = new ArrayList<>();
+            for (PendingWrite write : batch) {
+                switch (write.type) {
+                    case SAVE_TICKET: savedTickets.add(write); break;
+                    case UPDATE_TICKET: updatedTickets.add(write); break;
+                    default: updatedSpots.add(write);
+                }
+            }
+            int[] saveCounts = executeSaveTickets(con, savedTickets);
+            executeIncrementVisits(con, savedTickets);
+            int[] updateCounts = executeUpdateTickets(con, updatedTickets);
+            int[] parkingCounts = executeUpdateParking(con, updatedSpots);
+            executeRollupChanges(con, savedTickets, saveCounts, true);
+            executeRollupChanges(con, updatedTickets, updateCounts, false);
+            con.commit();
+            acknowledge(savedTickets, saveCounts, true);
+            //a ticket closed by another exit is not updated again
+            acknowledge(updatedTickets, updateCounts, false);
+            acknowledge(updatedSpots, parkingCounts, true);
+            logger.debug("Flushed batch of " + batch.size() + " writes");
+        } catch (Exception ex) {
+            logger.error("Error flushing batch of " + batch.size() + " writes", ex);
+            dataBaseConfig.rollback(con);
+            for (PendingWrite write : batch) {
+                write.acknowledgement.complete(false);
+            }
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private int[] executeSaveTickets(Connection con, List<PendingWrite> writes) throws SQLException {
+        if (writes.isEmpty()) {
+            return new int[0];
+        }
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS)) {
+            for (PendingWrite write : writes) {
+                Ticket ticket = write.ticket;
+                ps.setInt(1, ticket.getParkingSpot().getId());
+                ps.setString(2, ticket.getVehicleRegNumber());
+                ps.setDouble(3, ticket.getPrice());
+                ps.setTimestamp(4, new Timestamp(ticket.getInTime().getTime()));
+                ps.setTimestamp(5, (ticket.getOutTime() == null) ? null : (new Timestamp(ticket.getOutTime().getTime())));
+                ps.addBatch();
+            }
+            int[] counts = ps.executeBatch();
+            //keys come back in insert order, the open ticket cache needs them to close the tickets later
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                for (PendingWrite write : writes) {
+                    if (!keys.next()) {
+                        break;
+                    }
+                    write.ticket.setId(keys.getInt(1));
+                }
+            }
+            return counts;
+        }
+    }
+
+    private void executeIncrementVisits(Connection con, List<PendingWrite> writes) throws SQLException {
+        if (writes.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.INCREMENT_VISIT)) {
+            for (PendingWrite write : writes) {
+                ps.setString(1, write.ticket.getVehicleRegNumber());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private int[] executeUpdateTickets(Connection con, List<PendingWrite> writes) throws SQLException {
+        if (writes.isEmpty()) {
+            return new int[0];
+        }
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_TICKET)) {
+            for (PendingWrite write : writes) {
+                Ticket ticket = write.ticket;
+                ps.setDouble(1, ticket.getPrice());
+                ps.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
+                ps.setInt(3, ticket.getId());
+                ps.addBatch();
+            }
+            return ps.executeBatch();
+        }
+    }
+
+    private int[] executeUpdateParking(Connection con, List<PendingWrite> writes) throws SQLException {
+        if (writes.isEmpty()) {
+            return new int[0];
+        }
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT)) {
+            for (PendingWrite write : writes) {
+                ps.setBoolean(1, write.parkingSpot.isAvailable());
+                ps.setInt(2, write.parkingSpot.getId());
+                ps.addBatch();
+            }
+            return ps.executeBatch();
+        }
+    }
+
+    /**
+     * Adds the rollup changes of the writes that changed their row.
+     */
+    private void executeRollupChanges(Connection con, List<PendingWrite> writes, int[] updateCounts, boolean allowNoInfo) throws SQLException {
+        List<TicketRollups.Change> changes = new ArrayList<>();
+        for (int i = 0; i < writes.size(); i++) {
+            PendingWrite write = writes.get(i);
+            if (write.rollupChanges != null && isWritten(updateCounts, i, allowNoInfo)) {
+                changes.addAll(write.rollupChanges);
+            }
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.ADD_TO_TICKET_ROLLUP)) {
+            for (TicketRollups.Change change : changes) {
+                TicketDAO.setRollupChange(ps, change);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /**
+     * Completes each write with whether it changed exactly one row. Rewritten inserts report
+     * SUCCESS_NO_INFO, accepted when allowNoInfo is set.
+     */
+    private void acknowledge(List<PendingWrite> writes, int[] updateCounts, boolean allowNoInfo) {
+        for (int i = 0; i < writes.size(); i++) {
+            writes.get(i).acknowledgement.complete(isWritten(updateCounts, i, allowNoInfo));
+        }
+    }
+
+    private static boolean isWritten(int[] updateCounts, int index, boolean allowNoInfo) {
+        int updateCount = index < updateCounts.length ? updateCounts[index] : Statement.EXECUTE_FAILED;
+        return updateCount == 1 || (allowNoInfo && updateCount == Statement.SUCCESS_NO_INFO);
+    }
+}
@@ -0,0 +1,61 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * ParkingSpotDAO backed by an InMemoryParkingStore instead of the database.
+ */
+public class InMemoryParkingSpotDAO extends ParkingSpotDAO {
+
+    private static final Logger logger = LogManager.getLogger("InMemoryParkingSpotDAO");
+
+    private final InMemoryParkingStore store;
+
+    public InMemoryParkingSpotDAO(InMemoryParkingStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public boolean loadAvailabilityIndex() {
+        //the store keeps its own index up to date
+        return true;
+    }
+
+    @Override
+    public int getNextAvailableSlot(ParkingType parkingType) {
+        return store.getLowestAvailable(parkingType);
+    }
+
+    @Override
+    public int countAvailableSlots(ParkingType parkingType) {
+        return store.countAvailable(parkingType);
+    }
+
+    @Override
+    public OccupancyCounters getOccupancy() {
+        return store.getOccupancy();
+    }
+
+    @Override
+    public int claimNextAvailableSlot(ParkingType parkingType) {
+        try {
+            return store.claimLowestAvailable(parkingType);
+        } catch (Exception ex) {
+            logger.error("Error claiming next available slot", ex);
+            return -1;
+        }
+    }
+
+    @Override
+    public boolean updateParking(ParkingSpot parkingSpot) {
+        try {
+            return store.updateParking(parkingSpot.getId(), parkingSpot.isAvailable());
+        } catch (Exception ex) {
+            logger.error("Error updating parking info", ex);
+            return false;
+        }
+    }
+}
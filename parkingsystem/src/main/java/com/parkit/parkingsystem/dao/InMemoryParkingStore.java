@@ -0,0 +1,537 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Parking spots and tickets of a single site held in memory, for gate controllers without a
+ * database server. Tickets are stored column by column in primitive arrays indexed by ticket ID.
+ *
+ * Every change is appended to a WriteAheadLog and forced to disk before the caller gets its result,
+ * and the whole state is written to snapshot.dat every snapshotIntervalMillis. On open, the latest
+ * snapshot is loaded and the log written since is replayed, so recovery replays at most one
+ * snapshot interval of changes.
+ *
+ * A change is applied in memory when it is appended, so that the log can be forced for many gates at
+ * once outside the lock. If an append or a force fails, memory may hold a change the log does not:
+ * the store then refuses every further write and snapshot, and has to be reopened from disk.
+ */
+public class InMemoryParkingStore implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger("InMemoryParkingStore");
+
+    private static final int SNAPSHOT_MAGIC = 0x504b5331;
+    private static final String SNAPSHOT_FILE = "snapshot.dat";
+
+    private static final byte SAVE_TICKET = 1;
+    private static final byte UPDATE_TICKET = 2;
+    private static final byte UPDATE_PARKING = 3;
+
+    private static final long NO_OUT_TIME = Long.MIN_VALUE;
+
+    private final Path directory;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    //parking spots by parking number, null type where there is no spot
+    private ParkingType[] spotTypes;
+    private boolean[] spotAvailable;
+    private SpotAvailabilityIndex availabilityIndex;
+    private final OccupancyCounters occupancy = new OccupancyCounters();
+
+    //ticket ID - 1 is the index in the arrays
+    private int ticketCount;
+    private int[] ticketParkingNumbers = new int[1024];
+    private String[] ticketVehicleRegNumbers = new String[1024];
+    private double[] ticketPrices = new double[1024];
+    private long[] ticketInTimes = new long[1024];
+    private long[] ticketOutTimes = new long[1024];
+    //latest ticket of each vehicle, as GET_TICKET orders by IN_TIME
+    private final HashMap<String, Integer> latestTickets = new HashMap<>();
+    private VisitCounterStore visitCounters = new VisitCounterStore(1024);
+
+    private WriteAheadLog writeAheadLog;
+    //first append or sync failure, after which the store refuses writes
+    private volatile IOException failure;
+    private volatile long snapshotBytes;
+    private ScheduledExecutorService snapshotter;
+
+    private InMemoryParkingStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Opens the store kept in directory, creating it with nbCarSpots car spots followed by
+     * nbBikeSpots bike spots when the directory holds no snapshot yet.
+     */
+    public static InMemoryParkingStore open(Path directory, int nbCarSpots, int nbBikeSpots, long snapshotIntervalMillis) throws IOException {
+        Files.createDirectories(directory);
+        InMemoryParkingStore store = new InMemoryParkingStore(directory);
+        long start = System.currentTimeMillis();
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        long generation = 0;
+        if (Files.exists(snapshot)) {
+            generation = store.loadSnapshot(snapshot);
+        } else {
+            store.createSpots(nbCarSpots, nbBikeSpots);
+        }
+        long nextGeneration = WriteAheadLog.replay(directory, generation, store::replay);
+        store.writeAheadLog = WriteAheadLog.open(directory, nextGeneration);
+        logger.info("Recovered " + store.ticketCount + " tickets in " + (System.currentTimeMillis() - start) + " ms");
+        store.occupancy.setCapacity(store.countSpots());
+        store.snapshot();
+        if (snapshotIntervalMillis > 0) {
+            store.snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "parking-store-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            store.snapshotter.scheduleWithFixedDelay(store::snapshotIfChanged, snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        return store;
+    }
+
+    /**
+     * Store configured with -Dparkit.memory.dir (data/memory), -Dparkit.memory.spots, the number of car
+     * and bike spots of a new store (3,2), and -Dparkit.memory.snapshotMillis (60000).
+     */
+    public static InMemoryParkingStore openFromConfiguration() throws IOException {
+        String[] spots = System.getProperty("parkit.memory.spots", "3,2").split(",");
+        return open(Path.of(System.getProperty("parkit.memory.dir", "data/memory")),
+                Integer.parseInt(spots[0].trim()), Integer.parseInt(spots[1].trim()),
+                Long.getLong("parkit.memory.snapshotMillis", 60000));
+    }
+
+    private void createSpots(int nbCarSpots, int nbBikeSpots) {
+        int maxParkingNumber = nbCarSpots + nbBikeSpots;
+        initSpots(maxParkingNumber);
+        for (int parkingNumber = 1; parkingNumber <= maxParkingNumber; parkingNumber++) {
+            setSpot(parkingNumber, parkingNumber <= nbCarSpots ? ParkingType.CAR : ParkingType.BIKE, true);
+        }
+    }
+
+    private void initSpots(int maxParkingNumber) {
+        spotTypes = new ParkingType[maxParkingNumber + 1];
+        spotAvailable = new boolean[maxParkingNumber + 1];
+        occupancy.reset();
+        availabilityIndex = new SpotAvailabilityIndex(maxParkingNumber, occupancy);
+    }
+
+    private void setSpot(int parkingNumber, ParkingType parkingType, boolean available) {
+        spotTypes[parkingNumber] = parkingType;
+        spotAvailable[parkingNumber] = available;
+        availabilityIndex.setAvailable(parkingNumber, parkingType, available);
+    }
+
+    private Map<ParkingType, Integer> countSpots() {
+        Map<ParkingType, Integer> spotsByType = new EnumMap<>(ParkingType.class);
+        for (ParkingType parkingType : spotTypes) {
+            if (parkingType != null) {
+                spotsByType.merge(parkingType, 1, Integer::sum);
+            }
+        }
+        return spotsByType;
+    }
+
+    public OccupancyCounters getOccupancy() {
+        return occupancy;
+    }
+
+    public int getLowestAvailable(ParkingType parkingType) {
+        return availabilityIndex.getLowestAvailable(parkingType);
+    }
+
+    public int countAvailable(ParkingType parkingType) {
+        return availabilityIndex.countAvailable(parkingType);
+    }
+
+    /**
+     * Marks the lowest available spot of the type as taken and returns its number, 0 if none is available.
+     */
+    public int claimLowestAvailable(ParkingType parkingType) throws IOException {
+        long position;
+        int parkingNumber;
+        lock.lock();
+        try {
+            parkingNumber = availabilityIndex.getLowestAvailable(parkingType);
+            if (parkingNumber <= 0) {
+                return 0;
+            }
+            position = append(updateParkingRecord(parkingNumber, false));
+            applyUpdateParking(parkingNumber, false);
+        } finally {
+            lock.unlock();
+        }
+        sync(position);
+        return parkingNumber;
+    }
+
+    public boolean updateParking(int parkingNumber, boolean available) throws IOException {
+        long position;
+        lock.lock();
+        try {
+            if (!isSpot(parkingNumber)) {
+                return false;
+            }
+            position = append(updateParkingRecord(parkingNumber, available));
+            applyUpdateParking(parkingNumber, available);
+        } finally {
+            lock.unlock();
+        }
+        sync(position);
+        return true;
+    }
+
+    /**
+     * Saves the ticket, counts the visit of its vehicle and returns the ID given to the ticket.
+     */
+    public int saveTicket(int parkingNumber, String vehicleRegNumber, double price, long inTime, long outTime) throws IOException {
+        long position;
+        int id;
+        lock.lock();
+        try {
+            if (!isSpot(parkingNumber)) {
+                throw new IllegalArgumentException("Unknown parking spot:" + parkingNumber);
+            }
+            id = ticketCount + 1;
+            position = append(saveTicketRecord(id, parkingNumber, vehicleRegNumber, price, inTime, outTime));
+            applySaveTicket(id, parkingNumber, vehicleRegNumber, price, inTime, outTime);
+        } finally {
+            lock.unlock();
+        }
+        sync(position);
+        return id;
+    }
+
+    public boolean updateTicket(int id, double price, long outTime) throws IOException {
+        long position;
+        lock.lock();
+        try {
+            //already closed by another exit
+            if (id <= 0 || id > ticketCount || ticketOutTimes[id - 1] != NO_OUT_TIME) {
+                return false;
+            }
+            position = append(updateTicketRecord(id, price, outTime));
+            applyUpdateTicket(id, price, outTime);
+        } finally {
+            lock.unlock();
+        }
+        sync(position);
+        return true;
+    }
+
+    public boolean isFailed() {
+        return failure != null;
+    }
+
+    private long append(byte[] record) throws IOException {
+        checkNotFailed();
+        try {
+            return writeAheadLog.append(record);
+        } catch (IOException e) {
+            fail(e);
+            throw e;
+        }
+    }
+
+    private void sync(long position) throws IOException {
+        try {
+            writeAheadLog.sync(position);
+        } catch (IOException e) {
+            fail(e);
+            throw e;
+        }
+    }
+
+    private void fail(IOException e) {
+        if (failure == null) {
+            failure = e;
+            logger.error("Parking store log failed, refusing writes until the store is reopened", e);
+        }
+    }
+
+    private void checkNotFailed() throws IOException {
+        IOException cause = failure;
+        if (cause != null) {
+            throw new IOException("Parking store refuses writes after a log failure", cause);
+        }
+    }
+
+    /**
+     * Latest ticket of the vehicle, or null if it never parked.
+     */
+    public Ticket getLatestTicket(String vehicleRegNumber) {
+        lock.lock();
+        try {
+            Integer index = latestTickets.get(vehicleRegNumber);
+            if (index == null) {
+                return null;
+            }
+            Ticket ticket = new Ticket();
+            ticket.setId(index + 1);
+            int parkingNumber = ticketParkingNumbers[index];
+            ticket.setParkingSpot(new ParkingSpot(parkingNumber, spotTypes[parkingNumber], false));
+            ticket.setVehicleRegNumber(vehicleRegNumber);
+            ticket.setPrice(ticketPrices[index]);
+            ticket.setInTime(new Date(ticketInTimes[index]));
+            ticket.setOutTime(ticketOutTimes[index] == NO_OUT_TIME ? null : new Date(ticketOutTimes[index]));
+            //the current visit is already counted
+            ticket.setPreviousVisits(Math.max(0, visitCounters.getVisitCount(vehicleRegNumber) - 1));
+            return ticket;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getVisitCount(String vehicleRegNumber) {
+        return visitCounters.getVisitCount(vehicleRegNumber);
+    }
+
+    public int getTicketCount() {
+        lock.lock();
+        try {
+            return ticketCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isSpot(int parkingNumber) {
+        return parkingNumber > 0 && parkingNumber < spotTypes.length && spotTypes[parkingNumber] != null;
+    }
+
+    private void applyUpdateParking(int parkingNumber, boolean available) {
+        setSpot(parkingNumber, spotTypes[parkingNumber], available);
+    }
+
+    private void applySaveTicket(int id, int parkingNumber, String vehicleRegNumber, double price, long inTime, long outTime) {
+        int index = id - 1;
+        if (index == ticketParkingNumbers.length) {
+            int capacity = ticketParkingNumbers.length * 2;
+            ticketParkingNumbers = Arrays.copyOf(ticketParkingNumbers, capacity);
+            ticketVehicleRegNumbers = Arrays.copyOf(ticketVehicleRegNumbers, capacity);
+            ticketPrices = Arrays.copyOf(ticketPrices, capacity);
+            ticketInTimes = Arrays.copyOf(ticketInTimes, capacity);
+            ticketOutTimes = Arrays.copyOf(ticketOutTimes, capacity);
+        }
+        ticketParkingNumbers[index] = parkingNumber;
+        ticketVehicleRegNumbers[index] = vehicleRegNumber;
+        ticketPrices[index] = price;
+        ticketInTimes[index] = inTime;
+        ticketOutTimes[index] = outTime;
+        ticketCount = id;
+        Integer latest = latestTickets.get(vehicleRegNumber);
+        if (latest == null || inTime >= ticketInTimes[latest]) {
+            latestTickets.put(vehicleRegNumber, index);
+        }
+        visitCounters.increment(vehicleRegNumber);
+    }
+
+    private void applyUpdateTicket(int id, double price, long outTime) {
+        ticketPrices[id - 1] = price;
+        ticketOutTimes[id - 1] = outTime;
+    }
+
+    private void replay(DataInputStream record) throws IOException {
+        byte type = record.readByte();
+        switch (type) {
+            case SAVE_TICKET: {
+                int id = record.readInt();
+                if (id != ticketCount + 1) {
+                    throw new IOException("Write-ahead log out of sequence, ticket " + id + " after ticket " + ticketCount);
+                }
+                applySaveTicket(id, record.readInt(), record.readUTF(), record.readDouble(), record.readLong(), record.readLong());
+                break;
+            }
+            case UPDATE_TICKET:
+                applyUpdateTicket(record.readInt(), record.readDouble(), record.readLong());
+                break;
+            case UPDATE_PARKING:
+                applyUpdateParking(record.readInt(), record.readBoolean());
+                break;
+            default:
+                throw new IOException("Unknown write-ahead log record type:" + type);
+        }
+    }
+
+    private static byte[] saveTicketRecord(int id, int parkingNumber, String vehicleRegNumber, double price, long inTime, long outTime) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(SAVE_TICKET);
+        out.writeInt(id);
+        out.writeInt(parkingNumber);
+        out.writeUTF(vehicleRegNumber);
+        out.writeDouble(price);
+        out.writeLong(inTime);
+        out.writeLong(outTime);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] updateTicketRecord(int id, double price, long outTime) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(21);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(UPDATE_TICKET);
+        out.writeInt(id);
+        out.writeDouble(price);
+        out.writeLong(outTime);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] updateParkingRecord(int parkingNumber, boolean available) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(6);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(UPDATE_PARKING);
+        out.writeInt(parkingNumber);
+        out.writeBoolean(available);
+        return bytes.toByteArray();
+    }
+
+    public static long toOutTime(Date outTime) {
+        return outTime == null ? NO_OUT_TIME : outTime.getTime();
+    }
+
+    private void snapshotIfChanged() {
+        try {
+            if (failure == null && writeAheadLog.getAppendedBytes() != snapshotBytes) {
+                snapshot();
+            }
+        } catch (Exception e) {
+            logger.error("Error writing the parking store snapshot", e);
+        }
+    }
+
+    /**
+     * Writes the whole state to the snapshot file and deletes the log it makes obsolete. The state is
+     * copied under the lock, then written while the gates go on.
+     */
+    public void snapshot() throws IOException {
+        long generation;
+        ParkingType[] types;
+        boolean[] available;
+        int count;
+        int[] parkingNumbers;
+        String[] vehicleRegNumbers;
+        double[] prices;
+        long[] inTimes;
+        long[] outTimes;
+        lock.lock();
+        try {
+            //memory may hold changes the log lost
+            checkNotFailed();
+            generation = writeAheadLog.roll();
+            snapshotBytes = writeAheadLog.getAppendedBytes();
+            types = spotTypes.clone();
+            available = spotAvailable.clone();
+            count = ticketCount;
+            parkingNumbers = Arrays.copyOf(ticketParkingNumbers, count);
+            vehicleRegNumbers = Arrays.copyOf(ticketVehicleRegNumbers, count);
+            prices = Arrays.copyOf(ticketPrices, count);
+            inTimes = Arrays.copyOf(ticketInTimes, count);
+            outTimes = Arrays.copyOf(ticketOutTimes, count);
+        } finally {
+            lock.unlock();
+        }
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream stream = Channels.newOutputStream(channel);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(generation);
+            out.writeInt(types.length - 1);
+            for (int parkingNumber = 1; parkingNumber < types.length; parkingNumber++) {
+                out.writeByte(types[parkingNumber] == null ? -1 : types[parkingNumber].ordinal());
+                out.writeBoolean(available[parkingNumber]);
+            }
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                out.writeInt(parkingNumbers[i]);
+                out.writeUTF(vehicleRegNumbers[i]);
+                out.writeDouble(prices[i]);
+                out.writeLong(inTimes[i]);
+                out.writeLong(outTimes[i]);
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        writeAheadLog.deleteBefore(generation);
+        logger.debug("Wrote snapshot of " + count + " tickets");
+    }
+
+    private long loadSnapshot(Path snapshot) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot), 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a parking store snapshot:" + snapshot);
+            }
+            long generation = in.readLong();
+            int maxParkingNumber = in.readInt();
+            initSpots(maxParkingNumber);
+            for (int parkingNumber = 1; parkingNumber <= maxParkingNumber; parkingNumber++) {
+                byte type = in.readByte();
+                boolean available = in.readBoolean();
+                if (type >= 0) {
+                    setSpot(parkingNumber, ParkingType.values()[type], available);
+                }
+            }
+            int count = in.readInt();
+            visitCounters = new VisitCounterStore(count);
+            for (int id = 1; id <= count; id++) {
+                applySaveTicket(id, in.readInt(), in.readUTF(), in.readDouble(), in.readLong(), in.readLong());
+            }
+            return generation;
+        }
+    }
+
+    /**
+     * Writes a last snapshot, so the next open has no log to replay, and closes the log.
+     */
+    @Override
+    public void close() throws IOException {
+        if (snapshotter != null) {
+            snapshotter.shutdown();
+            try {
+                snapshotter.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (failure != null) {
+            //the log on disk is what the next open recovers
+            try {
+                writeAheadLog.close();
+            } catch (IOException e) {
+                logger.error("Error closing the failed parking store log", e);
+            }
+            return;
+        }
+        snapshot();
+        writeAheadLog.close();
+    }
+}
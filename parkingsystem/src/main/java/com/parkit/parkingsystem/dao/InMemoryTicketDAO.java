@@ -0,0 +1,80 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * TicketDAO backed by an InMemoryParkingStore instead of the database.
+ */
+public class InMemoryTicketDAO extends TicketDAO {
+
+    private static final Logger logger = LogManager.getLogger("InMemoryTicketDAO");
+
+    private final InMemoryParkingStore store;
+
+    public InMemoryTicketDAO(InMemoryParkingStore store) {
+        this.store = store;
+    }
+
+    //open tickets and visit counts are always in memory, there is nothing to load or rebuild
+
+    @Override
+    public boolean loadOpenTickets() {
+        return true;
+    }
+
+    @Override
+    public boolean loadVisitCounters() {
+        return true;
+    }
+
+    @Override
+    public boolean rebuildVisitCounters() {
+        return true;
+    }
+
+    @Override
+    public boolean loadRollups() {
+        logger.error("Rollups are only kept for the database backend");
+        return false;
+    }
+
+    @Override
+    public boolean saveTicket(Ticket ticket) {
+        try {
+            ticket.setId(store.saveTicket(ticket.getParkingSpot().getId(), ticket.getVehicleRegNumber(), ticket.getPrice(),
+                    ticket.getInTime().getTime(), InMemoryParkingStore.toOutTime(ticket.getOutTime())));
+            return true;
+        } catch (Exception ex) {
+            logger.error("Error saving ticket info", ex);
+            return false;
+        }
+    }
+
+    @Override
+    public Ticket getTicket(String vehicleRegNumber) {
+        return store.getLatestTicket(vehicleRegNumber);
+    }
+
+    @Override
+    public Ticket getTicketForExit(String vehicleRegNumber) {
+        Ticket ticket = store.getLatestTicket(vehicleRegNumber);
+        return ticket != null && ticket.getOutTime() == null ? ticket : null;
+    }
+
+    @Override
+    public boolean updateTicket(Ticket ticket) {
+        try {
+            return store.updateTicket(ticket.getId(), ticket.getPrice(), InMemoryParkingStore.toOutTime(ticket.getOutTime()));
+        } catch (Exception ex) {
+            logger.error("Error saving ticket info", ex);
+            return false;
+        }
+    }
+
+    @Override
+    public int getNbTicket(String vehicleRegNumber) {
+        return store.getVisitCount(vehicleRegNumber);
+    }
+}
@@ -0,0 +1,124 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.OccupancySnapshot;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Number of free spots of each parking type, kept up to date by the SpotAvailabilityIndex each time
+ * a spot actually changes state, so that entrance signs never query the parking table.
+ * The counts are striped LongAdders, so gates updating them concurrently do not contend; readers
+ * get an immutable snapshot, rebuilt at most once per change and shared by every reader until the
+ * next one. Subscribers wait for the version after the one they last saw with onChange.
+ */
+public class OccupancyCounters {
+
+    private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+
+    private final LongAdder[] available = new LongAdder[PARKING_TYPES.length];
+    private volatile int[] capacity = new int[PARKING_TYPES.length];
+    private final AtomicLong version = new AtomicLong();
+    private volatile OccupancySnapshot snapshot;
+    //completed, then replaced, on each change
+    private final AtomicReference<CompletableFuture<Void>> nextChange = new AtomicReference<>(new CompletableFuture<>());
+
+    public OccupancyCounters() {
+        for (int i = 0; i < available.length; i++) {
+            available[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Starts over with no free spot, before a new availability index is filled.
+     */
+    public void reset() {
+        for (LongAdder counter : available) {
+            counter.reset();
+        }
+        changed();
+    }
+
+    public void setCapacity(Map<ParkingType, Integer> spotsByType) {
+        int[] newCapacity = new int[PARKING_TYPES.length];
+        for (Map.Entry<ParkingType, Integer> spots : spotsByType.entrySet()) {
+            newCapacity[spots.getKey().ordinal()] = spots.getValue();
+        }
+        capacity = newCapacity;
+        changed();
+    }
+
+    void spotChanged(ParkingType parkingType, boolean available) {
+        if (available) {
+            this.available[parkingType.ordinal()].increment();
+        } else {
+            this.available[parkingType.ordinal()].decrement();
+        }
+        changed();
+    }
+
+    private void changed() {
+        version.incrementAndGet();
+        nextChange.getAndSet(new CompletableFuture<>()).complete(null);
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Current counts, without taking any lock.
+     */
+    public OccupancySnapshot snapshot() {
+        OccupancySnapshot current = snapshot;
+        long currentVersion = version.get();
+        if (current != null && current.getVersion() == currentVersion) {
+            return current;
+        }
+        int[] currentCapacity = capacity;
+        int[] counts = new int[PARKING_TYPES.length];
+        for (int i = 0; i < counts.length; i++) {
+            //a sum taken while a spot is claimed and another released may be one short for a moment
+            counts[i] = (int) Math.max(0, available[i].sum());
+        }
+        //the counts read are at least as recent as currentVersion
+        current = new OccupancySnapshot(currentVersion, counts, currentCapacity);
+        snapshot = current;
+        return current;
+    }
+
+    /**
+     * Completes once the counters are past the given version, at once if they already are.
+     * The future is completed by the thread changing a spot, so callers should not run long
+     * dependent actions on it.
+     */
+    public CompletableFuture<Void> onChange(long afterVersion) {
+        //read before the version: a change after this read completes it
+        CompletableFuture<Void> next = nextChange.get();
+        if (version.get() > afterVersion) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return next;
+    }
+
+    /**
+     * Waits up to timeoutMillis for a change after the given version and returns the counts then.
+     */
+    public OccupancySnapshot awaitChange(long afterVersion, long timeoutMillis) throws InterruptedException {
+        try {
+            onChange(afterVersion).get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            //nothing changed, the boards keep the counts they have
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+        return snapshot();
+    }
+}
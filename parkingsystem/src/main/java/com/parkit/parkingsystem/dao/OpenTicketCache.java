@@ -0,0 +1,68 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tickets of the vehicles currently parked, that is the tickets without out time, keyed by vehicle
+ * registration number. Entries are immutable and every lookup returns a new Ticket, so callers can
+ * price and close the ticket they get without changing the cached one.
+ */
+public class OpenTicketCache {
+
+    private static final class OpenTicket {
+        private final int id;
+        private final int parkingNumber;
+        private final ParkingType parkingType;
+        private final double price;
+        private final long inTimeMillis;
+        private final int previousVisits;
+
+        private OpenTicket(Ticket ticket) {
+            this.id = ticket.getId();
+            this.parkingNumber = ticket.getParkingSpot().getId();
+            this.parkingType = ticket.getParkingSpot().getParkingType();
+            this.price = ticket.getPrice();
+            this.inTimeMillis = ticket.getInTime().getTime();
+            this.previousVisits = ticket.getPreviousVisits();
+        }
+    }
+
+    private final ConcurrentHashMap<String, OpenTicket> tickets = new ConcurrentHashMap<>();
+
+    public void put(Ticket ticket) {
+        OpenTicket openTicket = new OpenTicket(ticket);
+        //a vehicle has a single open ticket, the latest entry wins like in GET_TICKET_FOR_EXIT
+        tickets.merge(ticket.getVehicleRegNumber(), openTicket,
+                (current, added) -> added.inTimeMillis >= current.inTimeMillis ? added : current);
+    }
+
+    public Ticket get(String vehicleRegNumber) {
+        OpenTicket openTicket = tickets.get(vehicleRegNumber);
+        if (openTicket == null) {
+            return null;
+        }
+        Ticket ticket = new Ticket();
+        ticket.setId(openTicket.id);
+        ticket.setParkingSpot(new ParkingSpot(openTicket.parkingNumber, openTicket.parkingType, false));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setPrice(openTicket.price);
+        ticket.setInTime(new Date(openTicket.inTimeMillis));
+        ticket.setOutTime(null);
+        ticket.setPreviousVisits(openTicket.previousVisits);
+        return ticket;
+    }
+
+    public void remove(Ticket ticket) {
+        tickets.computeIfPresent(ticket.getVehicleRegNumber(),
+                (vehicleRegNumber, current) -> current.id == ticket.getId() ? null : current);
+    }
+
+    public int size() {
+        return tickets.size();
+    }
+}
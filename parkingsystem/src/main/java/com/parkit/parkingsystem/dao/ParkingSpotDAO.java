@@ -3,6 +3,8 @@ package com.parkit.parkingsystem.dao;
 import com.parkit.parkingsystem.config.DataBaseConfig;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -10,50 +12,200 @@ import org.apache.logging.log4j.Logger;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class ParkingSpotDAO {
     private static final Logger logger = LogManager.getLogger("ParkingSpotDAO");
 
+    private static final OperationMetrics LOAD_AVAILABILITY_INDEX_METRICS = Metrics.operation("ParkingSpotDAO.loadAvailabilityIndex");
+    private static final OperationMetrics GET_NEXT_AVAILABLE_SLOT_METRICS = Metrics.operation("ParkingSpotDAO.getNextAvailableSlot");
+    private static final OperationMetrics COUNT_AVAILABLE_SLOTS_METRICS = Metrics.operation("ParkingSpotDAO.countAvailableSlots");
+    private static final OperationMetrics CLAIM_NEXT_AVAILABLE_SLOT_METRICS = Metrics.operation("ParkingSpotDAO.claimNextAvailableSlot");
+    private static final OperationMetrics UPDATE_PARKING_METRICS = Metrics.operation("ParkingSpotDAO.updateParking");
+
     public DataBaseConfig dataBaseConfig = new DataBaseConfig();
 
+    public BatchWriter batchWriter;
+
+    private volatile SpotAvailabilityIndex availabilityIndex;
+
+    //kept across reloads of the index so that subscribers stay registered
+    private final OccupancyCounters occupancy = new OccupancyCounters();
+
+    //held while the index is loaded from the DB
+    private final ReentrantLock availabilityIndexLock = new ReentrantLock();
+
+    public boolean loadAvailabilityIndex(){
+        long start = System.nanoTime();
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            List<ParkingSpot> parkingSpots = new ArrayList<>();
+            Map<ParkingType, Integer> spotsByType = new EnumMap<>(ParkingType.class);
+            int maxParkingNumber = 0;
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_PARKING_SPOTS);
+                 ResultSet rs = ps.executeQuery()) {
+                while(rs.next()){
+                    ParkingSpot parkingSpot = new ParkingSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(3)), rs.getBoolean(2));
+                    parkingSpots.add(parkingSpot);
+                    maxParkingNumber = Math.max(maxParkingNumber, parkingSpot.getId());
+                    spotsByType.merge(parkingSpot.getParkingType(), 1, Integer::sum);
+                }
+            }
+            occupancy.reset();
+            SpotAvailabilityIndex index = new SpotAvailabilityIndex(maxParkingNumber, occupancy);
+            for(ParkingSpot parkingSpot : parkingSpots){
+                index.setAvailable(parkingSpot.getId(), parkingSpot.getParkingType(), parkingSpot.isAvailable());
+            }
+            occupancy.setCapacity(spotsByType);
+            availabilityIndex = index;
+            return true;
+        }catch (Exception ex){
+            LOAD_AVAILABILITY_INDEX_METRICS.error();
+            logger.error("Error loading parking spot availability",ex);
+            return false;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            LOAD_AVAILABILITY_INDEX_METRICS.record(start);
+        }
+    }
+
     public int getNextAvailableSlot(ParkingType parkingType){
+        long start = System.nanoTime();
+        try {
+            SpotAvailabilityIndex index = getAvailabilityIndex();
+            if(index == null){
+                return -1;
+            }
+            return index.getLowestAvailable(parkingType);
+        } finally {
+            GET_NEXT_AVAILABLE_SLOT_METRICS.record(start);
+        }
+    }
+
+    public int countAvailableSlots(ParkingType parkingType){
+        long start = System.nanoTime();
+        try {
+            SpotAvailabilityIndex index = getAvailabilityIndex();
+            if(index == null){
+                return -1;
+            }
+            return index.countAvailable(parkingType);
+        } finally {
+            COUNT_AVAILABLE_SLOTS_METRICS.record(start);
+        }
+    }
+
+    /**
+     * Free spot counters, updated with the availability index: reading or subscribing to them
+     * never queries the parking table.
+     */
+    public OccupancyCounters getOccupancy(){
+        getAvailabilityIndex();
+        return occupancy;
+    }
+
+    public int claimNextAvailableSlot(ParkingType parkingType){
+        long start = System.nanoTime();
+        SpotAvailabilityIndex index = getAvailabilityIndex();
+        if(index == null){
+            CLAIM_NEXT_AVAILABLE_SLOT_METRICS.record(start);
+            return -1;
+        }
         Connection con = null;
-        int result=-1;
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.GET_NEXT_PARKING_SPOT);
-            ps.setString(1, parkingType.toString());
-            ResultSet rs = ps.executeQuery();
-            if(rs.next()){
-                result = rs.getInt(1);
-            }
-            dataBaseConfig.closeResultSet(rs);
-            dataBaseConfig.closePreparedStatement(ps);
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.CLAIM_PARKING_SPOT)) {
+                int parkingNumber;
+                while((parkingNumber = index.claimLowestAvailable(parkingType)) > 0){
+                    ps.setInt(1, parkingNumber);
+                    try {
+                        if(ps.executeUpdate() == 1){
+                            return parkingNumber;
+                        }
+                    }catch (Exception ex){
+                        index.setAvailable(parkingNumber, parkingType, true);
+                        throw ex;
+                    }
+                    //spot already taken in DB by another process, keep it unavailable and try the next one
+                    logger.warn("Parking spot " + parkingNumber + " was already taken, trying the next one");
+                }
+                return 0;
+            }
         }catch (Exception ex){
-            logger.error("Error fetching next available slot",ex);
+            CLAIM_NEXT_AVAILABLE_SLOT_METRICS.error();
+            logger.error("Error claiming next available slot",ex);
+            return -1;
         }finally {
             dataBaseConfig.closeConnection(con);
+            CLAIM_NEXT_AVAILABLE_SLOT_METRICS.record(start);
         }
-        return result;
     }
 
     public boolean updateParking(ParkingSpot parkingSpot){
+        long start = System.nanoTime();
         //update the availability fo that parking slot
+        if(batchWriter != null){
+            try {
+                boolean updated = batchWriter.updateParking(parkingSpot).get();
+                if(updated){
+                    updateAvailabilityIndex(parkingSpot);
+                }
+                return updated;
+            }catch (Exception ex){
+                UPDATE_PARKING_METRICS.error();
+                logger.error("Error updating parking info",ex);
+                return false;
+            }finally {
+                UPDATE_PARKING_METRICS.record(start);
+            }
+        }
         Connection con = null;
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT);
-            ps.setBoolean(1, parkingSpot.isAvailable());
-            ps.setInt(2, parkingSpot.getId());
-            int updateRowCount = ps.executeUpdate();
-            dataBaseConfig.closePreparedStatement(ps);
+            int updateRowCount;
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT)) {
+                ps.setBoolean(1, parkingSpot.isAvailable());
+                ps.setInt(2, parkingSpot.getId());
+                updateRowCount = ps.executeUpdate();
+            }
+            if(updateRowCount == 1){
+                updateAvailabilityIndex(parkingSpot);
+            }
             return (updateRowCount == 1);
         }catch (Exception ex){
+            UPDATE_PARKING_METRICS.error();
             logger.error("Error updating parking info",ex);
             return false;
         }finally {
             dataBaseConfig.closeConnection(con);
+            UPDATE_PARKING_METRICS.record(start);
+        }
+    }
+
+    private void updateAvailabilityIndex(ParkingSpot parkingSpot){
+        SpotAvailabilityIndex index = getAvailabilityIndex();
+        if(index != null){
+            index.setAvailable(parkingSpot.getId(), parkingSpot.getParkingType(), parkingSpot.isAvailable());
+        }
+    }
+
+    private SpotAvailabilityIndex getAvailabilityIndex(){
+        if(availabilityIndex == null){
+            availabilityIndexLock.lock();
+            try {
+                if(availabilityIndex == null){
+                    loadAvailabilityIndex();
+                }
+            } finally {
+                availabilityIndexLock.unlock();
+            }
         }
+        return availabilityIndex;
     }
 
 }
@@ -0,0 +1,89 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory view of the free spots of the parking table, one bitset per parking type
+ * where a set bit means the spot with that number is available. Bits are flipped with
+ * compare-and-set so that a spot can only be claimed by one gate at a time. Each bit that
+ * actually flips is also counted in the OccupancyCounters.
+ */
+public class SpotAvailabilityIndex {
+
+    private final int maxParkingNumber;
+    private final Map<ParkingType, AtomicLongArray> availableSpots = new EnumMap<>(ParkingType.class);
+    private final OccupancyCounters occupancy;
+
+    public SpotAvailabilityIndex(int maxParkingNumber) {
+        this(maxParkingNumber, new OccupancyCounters());
+    }
+
+    public SpotAvailabilityIndex(int maxParkingNumber, OccupancyCounters occupancy) {
+        this.maxParkingNumber = maxParkingNumber;
+        this.occupancy = occupancy;
+        for (ParkingType parkingType : ParkingType.values()) {
+            availableSpots.put(parkingType, new AtomicLongArray((maxParkingNumber >> 6) + 1));
+        }
+    }
+
+    public int getLowestAvailable(ParkingType parkingType) {
+        AtomicLongArray words = availableSpots.get(parkingType);
+        for (int i = 0; i < words.length(); i++) {
+            long word = words.get(i);
+            if (word != 0) {
+                return (i << 6) + Long.numberOfTrailingZeros(word);
+            }
+        }
+        return 0;
+    }
+
+    public int claimLowestAvailable(ParkingType parkingType) {
+        AtomicLongArray words = availableSpots.get(parkingType);
+        for (int i = 0; i < words.length(); i++) {
+            long word = words.get(i);
+            while (word != 0) {
+                long lowestBit = Long.lowestOneBit(word);
+                if (words.compareAndSet(i, word, word & ~lowestBit)) {
+                    occupancy.spotChanged(parkingType, false);
+                    return (i << 6) + Long.numberOfTrailingZeros(lowestBit);
+                }
+                word = words.get(i);
+            }
+        }
+        return 0;
+    }
+
+    public void setAvailable(int parkingNumber, ParkingType parkingType, boolean available) {
+        if (parkingNumber <= 0 || parkingNumber > maxParkingNumber) {
+            throw new IllegalArgumentException("Unknown parking number:" + parkingNumber);
+        }
+        AtomicLongArray words = availableSpots.get(parkingType);
+        int i = parkingNumber >> 6;
+        long bit = 1L << (parkingNumber & 63);
+        long word;
+        do {
+            word = words.get(i);
+            if (((word & bit) != 0) == available) {
+                return;
+            }
+        } while (!words.compareAndSet(i, word, available ? (word | bit) : (word & ~bit)));
+        occupancy.spotChanged(parkingType, available);
+    }
+
+    public OccupancyCounters getOccupancy() {
+        return occupancy;
+    }
+
+    public int countAvailable(ParkingType parkingType) {
+        AtomicLongArray words = availableSpots.get(parkingType);
+        int count = 0;
+        for (int i = 0; i < words.length(); i++) {
+            count += Long.bitCount(words.get(i));
+        }
+        return count;
+    }
+}
@@ -3,6 +3,8 @@ package com.parkit.parkingsystem.dao;
 import com.parkit.parkingsystem.config.DataBaseConfig;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
 import org.apache.logging.log4j.LogManager;
@@ -11,103 +13,606 @@ import org.apache.logging.log4j.Logger;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class TicketDAO {
 
     private static final Logger logger = LogManager.getLogger("TicketDAO");
 
+    private static final OperationMetrics LOAD_VISIT_COUNTERS_METRICS = Metrics.operation("TicketDAO.loadVisitCounters");
+    private static final OperationMetrics REBUILD_VISIT_COUNTERS_METRICS = Metrics.operation("TicketDAO.rebuildVisitCounters");
+    private static final OperationMetrics LOAD_OPEN_TICKETS_METRICS = Metrics.operation("TicketDAO.loadOpenTickets");
+    private static final OperationMetrics LOAD_ROLLUPS_METRICS = Metrics.operation("TicketDAO.loadRollups");
+    private static final OperationMetrics SAVE_TICKET_METRICS = Metrics.operation("TicketDAO.saveTicket");
+    private static final OperationMetrics GET_TICKET_METRICS = Metrics.operation("TicketDAO.getTicket");
+    private static final OperationMetrics GET_TICKET_FOR_EXIT_METRICS = Metrics.operation("TicketDAO.getTicketForExit");
+    private static final OperationMetrics UPDATE_TICKET_METRICS = Metrics.operation("TicketDAO.updateTicket");
+    private static final OperationMetrics GET_NB_TICKET_METRICS = Metrics.operation("TicketDAO.getNbTicket");
+
     public DataBaseConfig dataBaseConfig = new DataBaseConfig();
 
-    public boolean saveTicket(Ticket ticket){
+    public BatchWriter batchWriter;
+
+    //assumes this DAO is the only writer of tickets once loaded
+    private volatile OpenTicketCache openTicketCache;
+
+    private final ReentrantLock openTicketCacheLock = new ReentrantLock();
+
+    private volatile VisitCounterStore visitCounterStore;
+
+    //shared by the ticket saves, exclusive for a load of the counters, so that no increment is made to a store being replaced
+    private final ReentrantReadWriteLock visitCounterStoreLock = new ReentrantReadWriteLock();
+
+    //only kept once loaded, the first load backfills ticket_rollup from the whole ticket table
+    private volatile TicketRollups ticketRollups;
+
+    public boolean loadVisitCounters(){
+        long start = System.nanoTime();
         Connection con = null;
+        visitCounterStoreLock.writeLock().lock();
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET);
-            //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
-            //ps.setInt(1,ticket.getId());
-            ps.setInt(1,ticket.getParkingSpot().getId());
-            ps.setString(2, ticket.getVehicleRegNumber());
-            ps.setDouble(3, ticket.getPrice());
-            ps.setTimestamp(4, new Timestamp(ticket.getInTime().getTime()));
-            ps.setTimestamp(5, (ticket.getOutTime() == null)?null: (new Timestamp(ticket.getOutTime().getTime())) );
-            return ps.execute();
+            int expectedSize = 0;
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.COUNT_VISIT_COUNTS);
+                 ResultSet rs = ps.executeQuery()) {
+                if(rs.next()){
+                    expectedSize = rs.getInt(1);
+                }
+            }
+            VisitCounterStore store = new VisitCounterStore(expectedSize);
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_VISIT_COUNTS, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(1000);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while(rs.next()){
+                        store.put(rs.getString(1), rs.getInt(2));
+                    }
+                }
+            }
+            visitCounterStore = store;
+            logger.info("Loaded visit counters of " + store.size() + " vehicles");
+            return true;
         }catch (Exception ex){
-            logger.error("Error fetching next available slot",ex);
+            LOAD_VISIT_COUNTERS_METRICS.error();
+            logger.error("Error loading visit counters",ex);
+            return false;
         }finally {
+            visitCounterStoreLock.writeLock().unlock();
             dataBaseConfig.closeConnection(con);
+            LOAD_VISIT_COUNTERS_METRICS.record(start);
+        }
+    }
+
+    /**
+     * Recomputes vehicle_visit from the whole ticket history, then reloads the counters in memory.
+     */
+    public boolean rebuildVisitCounters(){
+        long start = System.nanoTime();
+        visitCounterStoreLock.writeLock().lock();
+        try {
+            Connection con = null;
+            try {
+                con = dataBaseConfig.getConnection();
+                con.setAutoCommit(false);
+                try (PreparedStatement ps = con.prepareStatement(DBConstants.CLEAR_VISIT_COUNTS)) {
+                    ps.executeUpdate();
+                }
+                try (PreparedStatement ps = con.prepareStatement(DBConstants.REBUILD_VISIT_COUNTS)) {
+                    logger.info("Rebuilt visit counters of " + ps.executeUpdate() + " vehicles");
+                }
+                con.commit();
+            }catch (Exception ex){
+                REBUILD_VISIT_COUNTERS_METRICS.error();
+                logger.error("Error rebuilding visit counters",ex);
+                dataBaseConfig.rollback(con);
+                return false;
+            }finally {
+                dataBaseConfig.closeConnection(con);
+            }
+            return loadVisitCounters();
+        } finally {
+            visitCounterStoreLock.writeLock().unlock();
+            REBUILD_VISIT_COUNTERS_METRICS.record(start);
+        }
+    }
+
+    public boolean loadOpenTickets(){
+        long start = System.nanoTime();
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            OpenTicketCache cache = new OpenTicketCache();
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_OPEN_TICKETS);
+                 ResultSet rs = ps.executeQuery()) {
+                while(rs.next()){
+                    Ticket ticket = new Ticket();
+                    ticket.setParkingSpot(new ParkingSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(6)),false));
+                    ticket.setId(rs.getInt(2));
+                    ticket.setPrice(rs.getDouble(3));
+                    ticket.setInTime(rs.getTimestamp(4));
+                    ticket.setVehicleRegNumber(rs.getString(5));
+                    //the current visit is already counted
+                    ticket.setPreviousVisits(Math.max(0, rs.getInt(7) - 1));
+                    cache.put(ticket);
+                }
+            }
+            openTicketCache = cache;
+            logger.info("Loaded " + cache.size() + " open tickets");
+            return true;
+        }catch (Exception ex){
+            LOAD_OPEN_TICKETS_METRICS.error();
+            logger.error("Error loading open tickets",ex);
             return false;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            LOAD_OPEN_TICKETS_METRICS.record(start);
+        }
+    }
+
+    /**
+     * Loads the hourly and daily rollups from the ticket_rollup table, then keeps them and the table up to
+     * date with the tickets saved and closed by this DAO. The first load backfills the table from the
+     * whole ticket history, replayed in time order. TicketRepricingJob only changes the table, its price
+     * changes are loaded by the next call.
+     */
+    public boolean loadRollups(){
+        long start = System.nanoTime();
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            int nbBucket = 0;
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.COUNT_TICKET_ROLLUPS);
+                 ResultSet rs = ps.executeQuery()) {
+                if(rs.next()){
+                    nbBucket = rs.getInt(1);
+                }
+            }
+            TicketRollups rollups = nbBucket > 0 ? readRollups(con) : backfillRollups(con);
+            ticketRollups = rollups;
+            return true;
+        }catch (Exception ex){
+            LOAD_ROLLUPS_METRICS.error();
+            logger.error("Error loading rollups",ex);
+            dataBaseConfig.rollback(con);
+            return false;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            LOAD_ROLLUPS_METRICS.record(start);
+        }
+    }
+
+    private TicketRollups readRollups(Connection con) throws SQLException {
+        TicketRollups rollups = new TicketRollups();
+        int nbBucket = 0;
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKET_ROLLUPS, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(1000);
+            try (ResultSet rs = ps.executeQuery()) {
+                while(rs.next()){
+                    rollups.put(TicketRollups.Period.valueOf(rs.getString(1)), rs.getTimestamp(2).toLocalDateTime(),
+                            ParkingType.valueOf(rs.getString(3)), rs.getLong(4), rs.getLong(5), rs.getLong(6), rs.getInt(7));
+                    nbBucket++;
+                }
+            }
+        }
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.COUNT_OPEN_TICKETS_BY_TYPE);
+             ResultSet rs = ps.executeQuery()) {
+            while(rs.next()){
+                rollups.setOccupied(ParkingType.valueOf(rs.getString(1)), rs.getInt(2));
+            }
+        }
+        logger.info("Loaded " + nbBucket + " rollup buckets");
+        return rollups;
+    }
+
+    private TicketRollups backfillRollups(Connection con) throws SQLException {
+        TicketRollups rollups = new TicketRollups();
+        //tickets entered but not exited yet at the time of the row being read
+        PriorityQueue<Ticket> parked = new PriorityQueue<>(Comparator.comparingLong(ticket -> ticket.getOutTime().getTime()));
+        long nbTicket = 0;
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKETS_FOR_ROLLUPS, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(1000);
+            try (ResultSet rs = ps.executeQuery()) {
+                while(rs.next()){
+                    Ticket ticket = new Ticket();
+                    ticket.setInTime(rs.getTimestamp(1));
+                    ticket.setOutTime(rs.getTimestamp(2));
+                    ticket.setPrice(rs.getDouble(3));
+                    ticket.setParkingSpot(new ParkingSpot(0, ParkingType.valueOf(rs.getString(4)), false));
+                    while(!parked.isEmpty() && parked.peek().getOutTime().getTime() <= ticket.getInTime().getTime()){
+                        recordExit(rollups, parked.poll());
+                    }
+                    recordEntry(rollups, ticket);
+                    if(ticket.getOutTime() != null){
+                        parked.add(ticket);
+                    }
+                    nbTicket++;
+                }
+            }
+        }
+        while(!parked.isEmpty()){
+            recordExit(rollups, parked.poll());
+        }
+        con.setAutoCommit(false);
+        executeRollupChanges(con, rollups.getBuckets());
+        con.commit();
+        logger.info("Backfilled rollups of " + nbTicket + " tickets");
+        return rollups;
+    }
+
+    /**
+     * Hourly and daily rollups of the tickets, or null until loadRollups has been called.
+     */
+    public TicketRollups getRollups(){
+        return ticketRollups;
+    }
+
+    public boolean saveTicket(Ticket ticket){
+        getVisitCounterStore();
+        //a load of the counters waits until the ticket is saved and its visit counted in memory
+        visitCounterStoreLock.readLock().lock();
+        try {
+            return saveTicket(ticket, visitCounterStore);
+        } finally {
+            visitCounterStoreLock.readLock().unlock();
+        }
+    }
+
+    private boolean saveTicket(Ticket ticket, VisitCounterStore store){
+        long start = System.nanoTime();
+        TicketRollups rollups = ticketRollups;
+        //counted before the write so that concurrent entries each persist the occupancy they reached
+        List<TicketRollups.Change> rollupChanges = recordEntry(rollups, ticket);
+        if(batchWriter != null){
+            try {
+                boolean saved = batchWriter.saveTicket(ticket, rollupChanges).get();
+                if(saved){
+                    countVisit(store, ticket);
+                    cacheOpenTicket(ticket);
+                }else{
+                    revertEntry(rollups, rollupChanges);
+                }
+                return saved;
+            }catch (Exception ex){
+                revertEntry(rollups, rollupChanges);
+                SAVE_TICKET_METRICS.error();
+                logger.error("Error saving ticket info",ex);
+                return false;
+            }finally {
+                SAVE_TICKET_METRICS.record(start);
+            }
+        }
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            //the ticket and the visit counter of the vehicle are written in the same transaction
+            con.setAutoCommit(false);
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS)) {
+                //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
+                //ps.setInt(1,ticket.getId());
+                ps.setInt(1,ticket.getParkingSpot().getId());
+                ps.setString(2, ticket.getVehicleRegNumber());
+                ps.setDouble(3, ticket.getPrice());
+                ps.setTimestamp(4, new Timestamp(ticket.getInTime().getTime()));
+                ps.setTimestamp(5, (ticket.getOutTime() == null)?null: (new Timestamp(ticket.getOutTime().getTime())) );
+                ps.executeUpdate();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    if(keys.next()){
+                        ticket.setId(keys.getInt(1));
+                    }
+                }
+            }
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.INCREMENT_VISIT)) {
+                ps.setString(1, ticket.getVehicleRegNumber());
+                ps.executeUpdate();
+            }
+            executeRollupChanges(con, rollupChanges);
+            con.commit();
+            countVisit(store, ticket);
+            cacheOpenTicket(ticket);
+            return true;
+        }catch (Exception ex){
+            revertEntry(rollups, rollupChanges);
+            SAVE_TICKET_METRICS.error();
+            logger.error("Error saving ticket info",ex);
+            dataBaseConfig.rollback(con);
+            return false;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            SAVE_TICKET_METRICS.record(start);
         }
     }
 
     public Ticket getTicket(String vehicleRegNumber) {
+        long start = System.nanoTime();
         Connection con = null;
-        Ticket ticket = null;
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKET);
-            //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
-            ps.setString(1,vehicleRegNumber);
-            ResultSet rs = ps.executeQuery();
-            if(rs.next()){
-                ticket = new Ticket();
-                ParkingSpot parkingSpot = new ParkingSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(6)),false);
-                ticket.setParkingSpot(parkingSpot);
-                ticket.setId(rs.getInt(2));
-                ticket.setVehicleRegNumber(vehicleRegNumber);
-                ticket.setPrice(rs.getDouble(3));
-                ticket.setInTime(rs.getTimestamp(4));
-                ticket.setOutTime(rs.getTimestamp(5));
-            }
-            dataBaseConfig.closeResultSet(rs);
-            dataBaseConfig.closePreparedStatement(ps);
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKET)) {
+                //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
+                ps.setString(1,vehicleRegNumber);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if(!rs.next()){
+                        return null;
+                    }
+                    Ticket ticket = new Ticket();
+                    ParkingSpot parkingSpot = new ParkingSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(6)),false);
+                    ticket.setParkingSpot(parkingSpot);
+                    ticket.setId(rs.getInt(2));
+                    ticket.setVehicleRegNumber(vehicleRegNumber);
+                    ticket.setPrice(rs.getDouble(3));
+                    ticket.setInTime(rs.getTimestamp(4));
+                    ticket.setOutTime(rs.getTimestamp(5));
+                    return ticket;
+                }
+            }
         }catch (Exception ex){
+            GET_TICKET_METRICS.error();
             logger.error("Error fetching next available slot",ex);
+            return null;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            GET_TICKET_METRICS.record(start);
+        }
+    }
+
+    public Ticket getTicketForExit(String vehicleRegNumber) {
+        long start = System.nanoTime();
+        OpenTicketCache cache = getOpenTicketCache();
+        if(cache != null){
+            Ticket ticket = cache.get(vehicleRegNumber);
+            if(ticket != null){
+                GET_TICKET_FOR_EXIT_METRICS.record(start);
+                return ticket;
+            }
+        }
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKET_FOR_EXIT)) {
+                ps.setString(1,vehicleRegNumber);
+                try (ResultSet rs = ps.executeQuery()) {
+                    //only the latest ticket of the vehicle is read, and it is only returned while still open
+                    if(!rs.next() || rs.getTimestamp(5) != null){
+                        return null;
+                    }
+                    Ticket ticket = new Ticket();
+                    ParkingSpot parkingSpot = new ParkingSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(6)),false);
+                    ticket.setParkingSpot(parkingSpot);
+                    ticket.setId(rs.getInt(2));
+                    ticket.setVehicleRegNumber(vehicleRegNumber);
+                    ticket.setPrice(rs.getDouble(3));
+                    ticket.setInTime(rs.getTimestamp(4));
+                    ticket.setOutTime(null);
+                    //the current visit is already counted
+                    ticket.setPreviousVisits(Math.max(0, rs.getInt(7) - 1));
+                    if(cache != null){
+                        cache.put(ticket);
+                    }
+                    return ticket;
+                }
+            }
+        }catch (Exception ex){
+            GET_TICKET_FOR_EXIT_METRICS.error();
+            logger.error("Error fetching ticket for exiting vehicle",ex);
+            return null;
         }finally {
             dataBaseConfig.closeConnection(con);
-            return ticket;
+            GET_TICKET_FOR_EXIT_METRICS.record(start);
         }
     }
 
     public boolean updateTicket(Ticket ticket) {
+        long start = System.nanoTime();
+        TicketRollups rollups = ticketRollups;
+        List<TicketRollups.Change> rollupChanges = recordExit(rollups, ticket);
+        if(batchWriter != null){
+            try {
+                boolean updated = batchWriter.updateTicket(ticket, rollupChanges).get();
+                if(updated){
+                    evictClosedTicket(ticket);
+                }else{
+                    revertExit(rollups, rollupChanges);
+                }
+                return updated;
+            }catch (Exception ex){
+                revertExit(rollups, rollupChanges);
+                UPDATE_TICKET_METRICS.error();
+                logger.error("Error saving ticket info",ex);
+                return false;
+            }finally {
+                UPDATE_TICKET_METRICS.record(start);
+            }
+        }
         Connection con = null;
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_TICKET);
-            ps.setDouble(1, ticket.getPrice());
-            ps.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
-            ps.setInt(3,ticket.getId());
-            ps.execute();
+            //the ticket and its rollups are written in the same transaction
+            con.setAutoCommit(false);
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_TICKET)) {
+                ps.setDouble(1, ticket.getPrice());
+                ps.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
+                ps.setInt(3,ticket.getId());
+                //0 when another exit closed the ticket first
+                boolean updated = ps.executeUpdate() == 1;
+                evictClosedTicket(ticket);
+                if(!updated){
+                    logger.error("Ticket " + ticket.getId() + " is already closed");
+                    dataBaseConfig.rollback(con);
+                    revertExit(rollups, rollupChanges);
+                    return false;
+                }
+            }
+            executeRollupChanges(con, rollupChanges);
+            con.commit();
             return true;
         }catch (Exception ex){
+            revertExit(rollups, rollupChanges);
+            UPDATE_TICKET_METRICS.error();
             logger.error("Error saving ticket info",ex);
+            dataBaseConfig.rollback(con);
+            return false;
         }finally {
             dataBaseConfig.closeConnection(con);
+            UPDATE_TICKET_METRICS.record(start);
         }
-        return false;
     }
 
     public int getNbTicket(String vehicleRegNumber){
+        long start = System.nanoTime();
+        VisitCounterStore store = getVisitCounterStore();
+        if(store != null){
+            int nbTicket = store.getVisitCount(vehicleRegNumber);
+            GET_NB_TICKET_METRICS.record(start);
+            return nbTicket;
+        }
         Connection con = null;
-        int nbTicket = 0;
+        try {
+            con = dataBaseConfig.getConnection();
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_NBTICKET)) {
+                ps.setString(1,vehicleRegNumber);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getInt(1) : 0;
+                }
+            }
+        }catch (Exception ex){
+            GET_NB_TICKET_METRICS.error();
+            logger.error("Error fetching number of tickets from recurring vehicule",ex);
+            return 0;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            GET_NB_TICKET_METRICS.record(start);
+        }
+    }
+
+    private void cacheOpenTicket(Ticket ticket){
+        OpenTicketCache cache = getOpenTicketCache();
+        if(cache != null && ticket.getOutTime() == null){
+            cache.put(ticket);
+        }
+    }
 
+    private void evictClosedTicket(Ticket ticket){
+        OpenTicketCache cache = openTicketCache;
+        if(cache != null && ticket.getOutTime() != null){
+            cache.remove(ticket);
+        }
+    }
+
+    /**
+     * Counts the visit of a saved ticket in memory and sets its previous visits from the new count, as
+     * getTicketForExit and loadOpenTickets do from vehicle_visit, whatever the caller had set.
+     */
+    private void countVisit(VisitCounterStore store, Ticket ticket){
+        int nbVisit = store != null ? store.increment(ticket.getVehicleRegNumber()) : readVisitCount(ticket.getVehicleRegNumber());
+        //the visit just saved is counted
+        ticket.setPreviousVisits(Math.max(0, nbVisit - 1));
+    }
+
+    private int readVisitCount(String vehicleRegNumber){
+        Connection con = null;
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.GET_NBTICKET);
-            ps.setString(1,vehicleRegNumber);
-            
-            ResultSet rs = ps.executeQuery();
-            if(rs.next()){
-                nbTicket = rs.getInt(1);
-            }
-            
-            dataBaseConfig.closeResultSet(rs);
-            dataBaseConfig.closePreparedStatement(ps);
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_NBTICKET)) {
+                ps.setString(1, vehicleRegNumber);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getInt(1) : 0;
+                }
+            }
         }catch (Exception ex){
             logger.error("Error fetching number of tickets from recurring vehicule",ex);
+            return 0;
         }finally {
             dataBaseConfig.closeConnection(con);
-            return nbTicket;
         }
     }
+
+    private static void executeRollupChanges(Connection con, List<TicketRollups.Change> changes) throws SQLException {
+        if(changes == null || changes.isEmpty()){
+            return;
+        }
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.ADD_TO_TICKET_ROLLUP)) {
+            for(TicketRollups.Change change : changes){
+                setRollupChange(ps, change);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /**
+     * Binds the parameters of ADD_TO_TICKET_ROLLUP.
+     */
+    public static void setRollupChange(PreparedStatement ps, TicketRollups.Change change) throws SQLException {
+        ps.setString(1, change.period.name());
+        ps.setTimestamp(2, Timestamp.valueOf(change.start));
+        ps.setString(3, change.parkingType.name());
+        ps.setLong(4, change.ticketCount);
+        ps.setLong(5, change.revenueCents);
+        ps.setLong(6, change.totalDurationMillis);
+        ps.setInt(7, change.peakOccupied);
+        ps.setLong(8, change.ticketCount);
+        ps.setLong(9, change.revenueCents);
+        ps.setLong(10, change.totalDurationMillis);
+        ps.setInt(11, change.peakOccupied);
+    }
+
+    private static List<TicketRollups.Change> recordEntry(TicketRollups rollups, Ticket ticket){
+        if(rollups == null){
+            return null;
+        }
+        return rollups.vehicleEntered(ticket.getParkingSpot().getParkingType(), ticket.getInTime());
+    }
+
+    private static List<TicketRollups.Change> recordExit(TicketRollups rollups, Ticket ticket){
+        if(rollups == null || ticket.getOutTime() == null){
+            return null;
+        }
+        return rollups.vehicleExited(ticket.getParkingSpot().getParkingType(), ticket.getInTime(), ticket.getOutTime(), ticket.getPrice());
+    }
+
+    private static void revertEntry(TicketRollups rollups, List<TicketRollups.Change> changes){
+        if(changes != null){
+            rollups.revertEntry(changes);
+        }
+    }
+
+    private static void revertExit(TicketRollups rollups, List<TicketRollups.Change> changes){
+        if(changes != null){
+            rollups.revertExit(changes);
+        }
+    }
+
+    private VisitCounterStore getVisitCounterStore(){
+        if(visitCounterStore == null){
+            visitCounterStoreLock.writeLock().lock();
+            try {
+                if(visitCounterStore == null){
+                    loadVisitCounters();
+                }
+            } finally {
+                visitCounterStoreLock.writeLock().unlock();
+            }
+        }
+        return visitCounterStore;
+    }
+
+    private OpenTicketCache getOpenTicketCache(){
+        if(openTicketCache == null){
+            openTicketCacheLock.lock();
+            try {
+                if(openTicketCache == null){
+                    loadOpenTickets();
+                }
+            } finally {
+                openTicketCacheLock.unlock();
+            }
+        }
+        return openTicketCache;
+    }
 }
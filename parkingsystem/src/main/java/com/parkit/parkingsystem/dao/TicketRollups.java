@@ -0,0 +1,276 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.TicketRollup;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-hour and per-day totals of each parking type, kept up to date as vehicles enter and exit so
+ * that a report reads a few buckets instead of scanning the ticket table. A closed ticket counts,
+ * with its price, summed in cents, and duration, in the hour and the day of its OUT_TIME. The peak occupancy of a
+ * period is the most vehicles of the type parked at once at an entry or an exit within it; periods
+ * without any entry or exit have no bucket.
+ *
+ * Buckets are found by hashing the hour or day number with the type, so a lookup does not depend on
+ * how much history is kept. Hours and days are those of the default time zone, like the times
+ * stored in the ticket table.
+ *
+ * The buckets are also kept in the ticket_rollup table: TicketDAO writes the changes returned by
+ * vehicleEntered and vehicleExited with the ticket, takes them back with revertEntry and revertExit
+ * when the ticket is not written, and loads the table back with put at startup.
+ */
+public class TicketRollups {
+
+    private static final int NB_TYPES = ParkingType.values().length;
+    private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+
+    public enum Period {
+        HOUR,
+        DAY
+    }
+
+    /**
+     * Amounts to add to one bucket, and the occupancy to raise its peak to.
+     */
+    public static final class Change {
+        final Period period;
+        final LocalDateTime start;
+        final ParkingType parkingType;
+        final long ticketCount;
+        final long revenueCents;
+        final long totalDurationMillis;
+        final int peakOccupied;
+
+        private Change(Period period, LocalDateTime start, ParkingType parkingType, long ticketCount, long revenueCents,
+                       long totalDurationMillis, int peakOccupied) {
+            this.period = period;
+            this.start = start;
+            this.parkingType = parkingType;
+            this.ticketCount = ticketCount;
+            this.revenueCents = revenueCents;
+            this.totalDurationMillis = totalDurationMillis;
+            this.peakOccupied = peakOccupied;
+        }
+    }
+
+    private static final class Bucket {
+        private long ticketCount;
+        private long revenueCents;
+        private long totalDurationMillis;
+        private int peakOccupied;
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Long, Bucket> hours = new HashMap<>();
+    private final Map<Long, Bucket> days = new HashMap<>();
+    //vehicles of each type parked right now, read as 0 while exits not matched by an entry bring it below
+    private final int[] occupied = new int[NB_TYPES];
+
+    /**
+     * Counts an entry and returns the changes it made to its hour and day buckets, to persist with the ticket.
+     */
+    public List<Change> vehicleEntered(ParkingType parkingType, Date inTime) {
+        LocalDateTime time = toLocalDateTime(inTime);
+        lock.lock();
+        try {
+            int current = ++occupied[parkingType.ordinal()];
+            raisePeak(getBucket(hours, hourNumber(time), parkingType), current);
+            raisePeak(getBucket(days, time.toLocalDate().toEpochDay(), parkingType), current);
+            return changes(time, parkingType, 0, 0, 0, current);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Counts an exit and returns the changes it made to its hour and day buckets, to persist with the ticket.
+     */
+    public List<Change> vehicleExited(ParkingType parkingType, Date inTime, Date outTime, double price) {
+        LocalDateTime time = toLocalDateTime(outTime);
+        long durationMillis = Math.max(0, outTime.getTime() - inTime.getTime());
+        long priceCents = Math.round(price * 100);
+        lock.lock();
+        try {
+            //the vehicle is still parked until its exit
+            int current = occupied[parkingType.ordinal()];
+            addTicket(getBucket(hours, hourNumber(time), parkingType), current, 1, priceCents, durationMillis);
+            addTicket(getBucket(days, time.toLocalDate().toEpochDay(), parkingType), current, 1, priceCents, durationMillis);
+            occupied[parkingType.ordinal()] = current - 1;
+            return changes(time, parkingType, 1, priceCents, durationMillis, current);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Changes of the hour and day buckets of a closed ticket whose price changed by priceDeltaCents,
+     * for a writer of ticket_rollup that does not keep the rollups in memory.
+     */
+    public static List<Change> getPriceChanges(ParkingType parkingType, Date outTime, long priceDeltaCents) {
+        return changes(toLocalDateTime(outTime), parkingType, 0, priceDeltaCents, 0, 0);
+    }
+
+    /**
+     * Takes back an entry whose ticket was not saved. The peaks it raised are kept.
+     */
+    public void revertEntry(List<Change> changes) {
+        lock.lock();
+        try {
+            occupied[changes.get(0).parkingType.ordinal()]--;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes back an exit whose ticket was not closed. The peaks it raised are kept.
+     */
+    public void revertExit(List<Change> changes) {
+        lock.lock();
+        try {
+            for (Change change : changes) {
+                Bucket bucket = change.period == Period.HOUR
+                        ? getBucket(hours, hourNumber(change.start), change.parkingType)
+                        : getBucket(days, change.start.toLocalDate().toEpochDay(), change.parkingType);
+                addTicket(bucket, 0, -change.ticketCount, -change.revenueCents, -change.totalDurationMillis);
+            }
+            occupied[changes.get(0).parkingType.ordinal()]++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Restores a bucket read from the ticket_rollup table.
+     */
+    public void put(Period period, LocalDateTime start, ParkingType parkingType, long ticketCount, long revenueCents,
+                    long totalDurationMillis, int peakOccupied) {
+        lock.lock();
+        try {
+            Bucket bucket = period == Period.HOUR
+                    ? getBucket(hours, hourNumber(start), parkingType)
+                    : getBucket(days, start.toLocalDate().toEpochDay(), parkingType);
+            bucket.ticketCount = ticketCount;
+            bucket.revenueCents = revenueCents;
+            bucket.totalDurationMillis = totalDurationMillis;
+            bucket.peakOccupied = peakOccupied;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void setOccupied(ParkingType parkingType, int count) {
+        lock.lock();
+        try {
+            occupied[parkingType.ordinal()] = count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Every bucket, as the change that creates it in an empty ticket_rollup table.
+     */
+    public List<Change> getBuckets() {
+        lock.lock();
+        try {
+            List<Change> buckets = new ArrayList<>(hours.size() + days.size());
+            for (Map.Entry<Long, Bucket> hour : hours.entrySet()) {
+                long number = Math.floorDiv(hour.getKey(), NB_TYPES);
+                LocalDateTime start = LocalDate.ofEpochDay(Math.floorDiv(number, 24)).atTime(Math.floorMod(number, 24), 0);
+                buckets.add(toChange(Period.HOUR, start, hour.getKey(), hour.getValue()));
+            }
+            for (Map.Entry<Long, Bucket> day : days.entrySet()) {
+                LocalDateTime start = LocalDate.ofEpochDay(Math.floorDiv(day.getKey(), NB_TYPES)).atStartOfDay();
+                buckets.add(toChange(Period.DAY, start, day.getKey(), day.getValue()));
+            }
+            return buckets;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Totals of the hour starting at the given time, truncated to the hour.
+     */
+    public TicketRollup getHour(LocalDateTime hour, ParkingType parkingType) {
+        LocalDateTime start = hour.withMinute(0).withSecond(0).withNano(0);
+        return get(hours, hourNumber(start), start, parkingType);
+    }
+
+    public TicketRollup getDay(LocalDate day, ParkingType parkingType) {
+        return get(days, day.toEpochDay(), day.atStartOfDay(), parkingType);
+    }
+
+    public int getOccupied(ParkingType parkingType) {
+        lock.lock();
+        try {
+            return Math.max(0, occupied[parkingType.ordinal()]);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private TicketRollup get(Map<Long, Bucket> buckets, long number, LocalDateTime start, ParkingType parkingType) {
+        lock.lock();
+        try {
+            Bucket bucket = buckets.get(key(number, parkingType));
+            if (bucket == null) {
+                return new TicketRollup(start, parkingType, 0, 0, 0, 0);
+            }
+            return new TicketRollup(start, parkingType, bucket.ticketCount, bucket.revenueCents,
+                    bucket.totalDurationMillis, bucket.peakOccupied);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static List<Change> changes(LocalDateTime time, ParkingType parkingType, long ticketCount, long revenueCents,
+                                        long totalDurationMillis, int peakOccupied) {
+        return Arrays.asList(
+                new Change(Period.HOUR, time.withMinute(0).withSecond(0).withNano(0), parkingType, ticketCount, revenueCents, totalDurationMillis, peakOccupied),
+                new Change(Period.DAY, time.toLocalDate().atStartOfDay(), parkingType, ticketCount, revenueCents, totalDurationMillis, peakOccupied));
+    }
+
+    private static Change toChange(Period period, LocalDateTime start, long key, Bucket bucket) {
+        return new Change(period, start, PARKING_TYPES[Math.floorMod(key, NB_TYPES)], bucket.ticketCount,
+                bucket.revenueCents, bucket.totalDurationMillis, bucket.peakOccupied);
+    }
+
+    private static Bucket getBucket(Map<Long, Bucket> buckets, long number, ParkingType parkingType) {
+        return buckets.computeIfAbsent(key(number, parkingType), k -> new Bucket());
+    }
+
+    private static void raisePeak(Bucket bucket, int occupied) {
+        bucket.peakOccupied = Math.max(bucket.peakOccupied, occupied);
+    }
+
+    private static void addTicket(Bucket bucket, int occupied, long ticketCount, long priceCents, long durationMillis) {
+        raisePeak(bucket, occupied);
+        bucket.ticketCount += ticketCount;
+        bucket.revenueCents += priceCents;
+        bucket.totalDurationMillis += durationMillis;
+    }
+
+    private static long key(long number, ParkingType parkingType) {
+        return number * NB_TYPES + parkingType.ordinal();
+    }
+
+    private static long hourNumber(LocalDateTime time) {
+        return time.toLocalDate().toEpochDay() * 24 + time.getHour();
+    }
+
+    private static LocalDateTime toLocalDateTime(Date date) {
+        return LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
+    }
+}
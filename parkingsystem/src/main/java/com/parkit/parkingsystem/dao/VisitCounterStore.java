@@ -0,0 +1,138 @@
+package com.parkit.parkingsystem.dao;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * In-memory copy of the vehicle_visit table: the number of visits of each vehicle registration
+ * number, in an open addressing hash table of parallel String and int arrays so a lookup costs a
+ * hash and a few array reads, without boxing. Lookups are optimistic and only take the read lock
+ * when they overlap a write.
+ */
+public class VisitCounterStore {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private static final class Table {
+        private final String[] keys;
+        private final int[] counts;
+
+        private Table(int capacity) {
+            this.keys = new String[capacity];
+            this.counts = new int[capacity];
+        }
+    }
+
+    private final StampedLock lock = new StampedLock();
+    private Table table;
+    private int size;
+
+    public VisitCounterStore(int expectedSize) {
+        //the table is kept at most half full so that probe sequences stay short
+        this.table = new Table(Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, expectedSize) * 2 - 1) << 1));
+    }
+
+    public int getVisitCount(String vehicleRegNumber) {
+        long stamp = lock.tryOptimisticRead();
+        int count = find(table, vehicleRegNumber);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                count = find(table, vehicleRegNumber);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return count;
+    }
+
+    public int increment(String vehicleRegNumber) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = slot(table, vehicleRegNumber);
+            if (table.keys[slot] == null) {
+                return insert(vehicleRegNumber, 1);
+            }
+            return ++table.counts[slot];
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void put(String vehicleRegNumber, int count) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = slot(table, vehicleRegNumber);
+            if (table.keys[slot] == null) {
+                insert(vehicleRegNumber, count);
+            } else {
+                table.counts[slot] = count;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private int insert(String vehicleRegNumber, int count) {
+        if ((size + 1) * 2 > table.keys.length) {
+            resize(table.keys.length * 2);
+        }
+        int slot = slot(table, vehicleRegNumber);
+        //the count is written first so an optimistic reader never sees the key with a missing count
+        table.counts[slot] = count;
+        table.keys[slot] = vehicleRegNumber;
+        size++;
+        return count;
+    }
+
+    private void resize(int capacity) {
+        Table resized = new Table(capacity);
+        for (int i = 0; i < table.keys.length; i++) {
+            String key = table.keys[i];
+            if (key != null) {
+                int slot = slot(resized, key);
+                resized.counts[slot] = table.counts[i];
+                resized.keys[slot] = key;
+            }
+        }
+        table = resized;
+    }
+
+    private static int find(Table table, String vehicleRegNumber) {
+        String[] keys = table.keys;
+        int mask = keys.length - 1;
+        for (int i = hash(vehicleRegNumber) & mask, probes = 0; probes < keys.length; i = (i + 1) & mask, probes++) {
+            String key = keys[i];
+            if (key == null) {
+                return 0;
+            }
+            if (key.equals(vehicleRegNumber)) {
+                return table.counts[i];
+            }
+        }
+        return 0;
+    }
+
+    private static int slot(Table table, String vehicleRegNumber) {
+        String[] keys = table.keys;
+        int mask = keys.length - 1;
+        int i = hash(vehicleRegNumber) & mask;
+        while (keys[i] != null && !keys[i].equals(vehicleRegNumber)) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private static int hash(String vehicleRegNumber) {
+        int h = vehicleRegNumber.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,257 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the changes of an InMemoryParkingStore, in files wal-&lt;generation&gt;.log.
+ * Each record is its length, its CRC32 and its payload, so a record torn by a crash is detected and
+ * dropped on replay. Appending only writes to the file; sync then forces it to disk, and a single
+ * fsync covers every record appended before it, so concurrent callers share their fsyncs.
+ * A snapshot rolls the log to a new generation, after which the older files can be deleted.
+ */
+public class WriteAheadLog implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger("WriteAheadLog");
+
+    private static final OperationMetrics SYNC_METRICS = Metrics.operation("WriteAheadLog.sync");
+
+    private static final int HEADER_SIZE = 8;
+
+    public interface RecordHandler {
+        void handle(DataInputStream record) throws IOException;
+    }
+
+    private final Path directory;
+
+    //held while appending to or rolling the current file
+    private final ReentrantLock appendLock = new ReentrantLock();
+    //held while forcing the log to disk, taken before appendLock
+    private final ReentrantLock syncLock = new ReentrantLock();
+
+    private FileChannel channel;
+    private long generation;
+    private long appendedBytes;
+    private volatile long durableBytes;
+
+    private WriteAheadLog(Path directory, long generation) throws IOException {
+        this.directory = directory;
+        this.generation = generation;
+        this.channel = openFile(directory, generation);
+    }
+
+    public static WriteAheadLog open(Path directory, long generation) throws IOException {
+        Files.createDirectories(directory);
+        return new WriteAheadLog(directory, generation);
+    }
+
+    private static FileChannel openFile(Path directory, long generation) throws IOException {
+        return FileChannel.open(fileOf(directory, generation),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static Path fileOf(Path directory, long generation) {
+        return directory.resolve("wal-" + generation + ".log");
+    }
+
+    /**
+     * Writes the record after the previous ones and returns the log position to pass to sync.
+     */
+    public long append(byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        appendLock.lock();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            appendedBytes += buffer.capacity();
+            return appendedBytes;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Returns once the log is on disk up to position, forcing it unless a concurrent sync already did.
+     */
+    public void sync(long position) throws IOException {
+        if (durableBytes >= position) {
+            return;
+        }
+        long start = System.nanoTime();
+        syncLock.lock();
+        try {
+            if (durableBytes >= position) {
+                return;
+            }
+            long target;
+            FileChannel current;
+            appendLock.lock();
+            try {
+                target = appendedBytes;
+                current = channel;
+            } finally {
+                appendLock.unlock();
+            }
+            //appends go on while the file is forced, they are covered by the next sync
+            current.force(false);
+            durableBytes = target;
+        } finally {
+            syncLock.unlock();
+            SYNC_METRICS.record(start);
+        }
+    }
+
+    public long getAppendedBytes() {
+        appendLock.lock();
+        try {
+            return appendedBytes;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Forces the current file and continues in a new one, whose generation is returned.
+     */
+    public long roll() throws IOException {
+        syncLock.lock();
+        appendLock.lock();
+        try {
+            channel.force(false);
+            channel.close();
+            durableBytes = appendedBytes;
+            generation++;
+            channel = openFile(directory, generation);
+            return generation;
+        } finally {
+            appendLock.unlock();
+            syncLock.unlock();
+        }
+    }
+
+    public void deleteBefore(long generation) throws IOException {
+        for (long fileGeneration : listGenerations(directory)) {
+            if (fileGeneration < generation) {
+                Files.deleteIfExists(fileOf(directory, fileGeneration));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        syncLock.lock();
+        appendLock.lock();
+        try {
+            channel.force(false);
+            channel.close();
+            durableBytes = appendedBytes;
+        } finally {
+            appendLock.unlock();
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Passes the records of the files from the given generation on to the handler, in order, and
+     * returns the generation a new log must start at. A file ending with a torn or corrupt record is
+     * truncated before it.
+     */
+    public static long replay(Path directory, long fromGeneration, RecordHandler handler) throws IOException {
+        return replay(directory, fromGeneration, handler, true);
+    }
+
+    /**
+     * Passes the complete records from the given generation on to the handler without changing the
+     * files, so that a log still being appended to can be read.
+     */
+    public static void read(Path directory, long fromGeneration, RecordHandler handler) throws IOException {
+        replay(directory, fromGeneration, handler, false);
+    }
+
+    private static long replay(Path directory, long fromGeneration, RecordHandler handler, boolean repair) throws IOException {
+        long nextGeneration = fromGeneration;
+        if (!Files.isDirectory(directory)) {
+            return nextGeneration;
+        }
+        for (long generation : listGenerations(directory)) {
+            if (generation < fromGeneration) {
+                continue;
+            }
+            replayFile(fileOf(directory, generation), handler, repair);
+            nextGeneration = generation + 1;
+        }
+        return nextGeneration;
+    }
+
+    private static void replayFile(Path file, RecordHandler handler, boolean repair) throws IOException {
+        try (FileChannel in = repair ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            long position = 0;
+            long size = in.size();
+            while (position < size) {
+                header.clear();
+                if (in.read(header, position) < HEADER_SIZE) {
+                    break;
+                }
+                header.flip();
+                int length = header.getInt();
+                int expectedCrc = header.getInt();
+                if (length < 0 || position + HEADER_SIZE + length > size) {
+                    break;
+                }
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                while (payload.hasRemaining()) {
+                    if (in.read(payload, position + HEADER_SIZE + payload.position()) < 0) {
+                        break;
+                    }
+                }
+                CRC32 crc = new CRC32();
+                crc.update(payload.array());
+                if ((int) crc.getValue() != expectedCrc) {
+                    break;
+                }
+                handler.handle(new DataInputStream(new ByteArrayInputStream(payload.array())));
+                position += HEADER_SIZE + length;
+            }
+            if (repair && position < size) {
+                logger.warn("Dropping " + (size - position) + " bytes of incomplete records at the end of " + file);
+                in.truncate(position);
+            }
+        }
+    }
+
+    private static List<Long> listGenerations(Path directory) throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "wal-*.log")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                generations.add(Long.parseLong(name.substring("wal-".length(), name.length() - ".log".length())));
+            }
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+}
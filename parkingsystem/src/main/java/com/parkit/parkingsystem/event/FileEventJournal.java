@@ -0,0 +1,183 @@
+package com.parkit.parkingsystem.event;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.WriteAheadLog;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Durable subscriber writing every event to files in a directory, in the record format of the
+ * WriteAheadLog, and forcing them to disk once per batch. Consumers that were stopped catch up
+ * with replay from the sequence they last handled, then follow the bus.
+ * Sequences skipped in the journal are events the bus dropped before any subscriber saw them.
+ * Files are rolled every maxFileBytes and kept; removing old ones is left to the operators.
+ */
+public class FileEventJournal implements ParkingEventSubscriber, Closeable {
+
+    private static final Logger logger = LogManager.getLogger("FileEventJournal");
+
+    private static final byte VEHICLE_ENTERED = 1;
+    private static final byte VEHICLE_EXITED = 2;
+    private static final byte SPOT_RELEASED = 3;
+
+    private static final long DEFAULT_MAX_FILE_BYTES = 64L << 20;
+
+    private final WriteAheadLog log;
+    private final long maxFileBytes;
+    private long lastSequence;
+    private long fileStartBytes;
+
+    private FileEventJournal(WriteAheadLog log, long maxFileBytes, long lastSequence) {
+        this.log = log;
+        this.maxFileBytes = maxFileBytes;
+        this.lastSequence = lastSequence;
+    }
+
+    public static FileEventJournal open(Path directory) throws IOException {
+        return open(directory, DEFAULT_MAX_FILE_BYTES);
+    }
+
+    /**
+     * Opens the journal kept in directory, dropping a record torn by a crash at its end.
+     */
+    public static FileEventJournal open(Path directory, long maxFileBytes) throws IOException {
+        long[] lastSequence = new long[1];
+        long nextGeneration = WriteAheadLog.replay(directory, 0, record -> lastSequence[0] = decode(record).getSequence());
+        FileEventJournal journal = new FileEventJournal(WriteAheadLog.open(directory, nextGeneration), maxFileBytes, lastSequence[0]);
+        logger.info("Opened event journal " + directory + " at sequence " + lastSequence[0]);
+        return journal;
+    }
+
+    /**
+     * Sequence of the last event written, 0 for a new journal.
+     */
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    @Override
+    public boolean isDurable() {
+        return true;
+    }
+
+    @Override
+    public void onEvents(List<ParkingEvent> events) throws IOException {
+        long position = 0;
+        for (ParkingEvent event : events) {
+            //already written, when the bus was not started after getLastSequence()
+            if (event.getSequence() <= lastSequence) {
+                continue;
+            }
+            position = log.append(encode(event));
+            lastSequence = event.getSequence();
+        }
+        if (position > 0) {
+            log.sync(position);
+            if (position - fileStartBytes >= maxFileBytes) {
+                log.roll();
+                fileStartBytes = log.getAppendedBytes();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+
+    /**
+     * Hands the events of the journal after the given sequence to the subscriber, in batches of up to
+     * batchSize events. The journal may be written to meanwhile: replay stops at the last complete record.
+     */
+    public static void replay(Path directory, long afterSequence, int batchSize, ParkingEventSubscriber subscriber) throws Exception {
+        List<ParkingEvent> batch = new ArrayList<>(batchSize);
+        Exception[] failure = new Exception[1];
+        WriteAheadLog.read(directory, 0, record -> {
+            ParkingEvent event = decode(record);
+            if (event.getSequence() <= afterSequence || failure[0] != null) {
+                return;
+            }
+            batch.add(event);
+            if (batch.size() == batchSize) {
+                try {
+                    subscriber.onEvents(new ArrayList<>(batch));
+                } catch (Exception e) {
+                    failure[0] = e;
+                }
+                batch.clear();
+            }
+        });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        if (!batch.isEmpty()) {
+            subscriber.onEvents(batch);
+        }
+    }
+
+    private static byte[] encode(ParkingEvent event) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        if (event instanceof VehicleEntered) {
+            out.writeByte(VEHICLE_ENTERED);
+        } else if (event instanceof VehicleExited) {
+            out.writeByte(VEHICLE_EXITED);
+        } else if (event instanceof SpotReleased) {
+            out.writeByte(SPOT_RELEASED);
+        } else {
+            throw new IllegalArgumentException("Unknown event type:" + event.getClass().getName());
+        }
+        out.writeLong(event.getSequence());
+        out.writeLong(event.getTime().toEpochMilli());
+        out.writeInt(event.getParkingNumber());
+        out.writeByte(event.getParkingType().ordinal());
+        if (event instanceof VehicleEntered) {
+            VehicleEntered entered = (VehicleEntered) event;
+            out.writeInt(entered.getTicketId());
+            out.writeUTF(entered.getVehicleRegNumber());
+        } else if (event instanceof VehicleExited) {
+            VehicleExited exited = (VehicleExited) event;
+            out.writeInt(exited.getTicketId());
+            out.writeUTF(exited.getVehicleRegNumber());
+            out.writeLong(exited.getInTime().toEpochMilli());
+            out.writeDouble(exited.getPrice());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static ParkingEvent decode(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        long sequence = in.readLong();
+        Instant time = Instant.ofEpochMilli(in.readLong());
+        int parkingNumber = in.readInt();
+        ParkingType parkingType = ParkingType.values()[in.readByte()];
+        ParkingEvent event;
+        switch (type) {
+            case VEHICLE_ENTERED:
+                event = new VehicleEntered(time, parkingNumber, parkingType, in.readInt(), in.readUTF());
+                break;
+            case VEHICLE_EXITED:
+                event = new VehicleExited(time, parkingNumber, parkingType, in.readInt(), in.readUTF(),
+                        Instant.ofEpochMilli(in.readLong()), in.readDouble());
+                break;
+            case SPOT_RELEASED:
+                event = new SpotReleased(time, parkingNumber, parkingType);
+                break;
+            default:
+                throw new IOException("Unknown event type:" + type);
+        }
+        event.setSequence(sequence);
+        return event;
+    }
+}
@@ -0,0 +1,44 @@
+package com.parkit.parkingsystem.event;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.time.Instant;
+
+/**
+ * Something that happened at a parking spot, published by ParkingService once it is saved.
+ * The sequence is given by the ParkingEventBus when the event is published: it increases by one
+ * from each event to the next, across restarts when the bus follows a FileEventJournal.
+ */
+public abstract class ParkingEvent {
+
+    private final Instant time;
+    private final int parkingNumber;
+    private final ParkingType parkingType;
+    private long sequence;
+
+    protected ParkingEvent(Instant time, int parkingNumber, ParkingType parkingType) {
+        this.time = time;
+        this.parkingNumber = parkingNumber;
+        this.parkingType = parkingType;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public Instant getTime() {
+        return time;
+    }
+
+    public int getParkingNumber() {
+        return parkingNumber;
+    }
+
+    public ParkingType getParkingType() {
+        return parkingType;
+    }
+}
@@ -0,0 +1,284 @@
+package com.parkit.parkingsystem.event;
+
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process stream of the parking events. Publishers write the events into a bounded ring buffer
+ * and return; a single dispatcher thread takes every event published since its last pass and hands
+ * them as one batch to each subscriber, so subscribers see the events within microseconds and in
+ * sequence order without polling the tables.
+ *
+ * Each event takes the next sequence when it is published, and events enter the ring in sequence
+ * order. When the subscribers fall behind by the capacity of the ring, publishers wait for room up
+ * to publishTimeoutMillis, then the event is dropped and counted, so that a stuck subscriber slows
+ * the gates down but never stops them. A dropped event keeps its sequence, so subscribers see the
+ * gap. While a durable subscriber (such as FileEventJournal) is subscribed, publishers wait for room
+ * as long as it takes and nothing is dropped.
+ *
+ * Delivery is at most once: events are held in memory until dispatched, so those accepted but not
+ * yet handed to the subscribers are lost on a crash, although their tickets are already committed.
+ * Consumers that must account for every ticket reconcile with the ticket table.
+ */
+public class ParkingEventBus implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger("ParkingEventBus");
+
+    private static final OperationMetrics PUBLISH_METRICS = Metrics.operation("ParkingEventBus.publish");
+    private static final OperationMetrics DISPATCH_METRICS = Metrics.operation("ParkingEventBus.dispatch");
+
+    private final ParkingEvent[] ring;
+    private final int mask;
+    private final int maxBatchSize;
+    private final long publishTimeoutNanos;
+    private final List<ParkingEventSubscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final LongAdder dropped = new LongAdder();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    //number of events written, only changed by publishers under the lock
+    private long published;
+    //number of events delivered, only changed by the dispatcher under the lock
+    private long dispatched;
+    //sequence given to the next event published
+    private long nextSequence;
+    //sequence of the only publisher allowed to write into the ring or to drop its event
+    private long nextToWrite;
+    //sequence of the last event delivered
+    private long dispatchedSequence;
+    private boolean running = true;
+
+    private final Thread dispatcher;
+
+    /**
+     * @param capacity number of events the subscribers may lag behind, rounded up to a power of two
+     * @param firstSequence sequence of the first event published
+     */
+    public ParkingEventBus(int capacity, int maxBatchSize, long publishTimeoutMillis, long firstSequence) {
+        if (capacity <= 0 || maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Capacity and batch size must be positive");
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.ring = new ParkingEvent[Math.max(size, 1)];
+        this.mask = ring.length - 1;
+        this.maxBatchSize = maxBatchSize;
+        this.publishTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(publishTimeoutMillis);
+        this.nextSequence = firstSequence;
+        this.nextToWrite = firstSequence;
+        this.dispatchedSequence = firstSequence - 1;
+        this.dispatcher = new Thread(this::dispatchLoop, "parking-event-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Bus configured with -Dparkit.events.capacity (4096) and -Dparkit.events.publishTimeoutMillis (50),
+     * whose events are kept in the journal at -Dparkit.events.journal, or null when no journal is
+     * configured. The journal is durable, so the timeout only applies once it is unsubscribed.
+     */
+    public static ParkingEventBus openFromConfiguration() throws IOException {
+        String journalDirectory = System.getProperty("parkit.events.journal");
+        if (journalDirectory == null) {
+            return null;
+        }
+        FileEventJournal journal = FileEventJournal.open(Path.of(journalDirectory));
+        ParkingEventBus eventBus = new ParkingEventBus(Integer.getInteger("parkit.events.capacity", 4096), 1024,
+                Long.getLong("parkit.events.publishTimeoutMillis", 50), journal.getLastSequence() + 1);
+        eventBus.subscribe(journal);
+        return eventBus;
+    }
+
+    /**
+     * Adds a subscriber, which gets the events published from now on. Subscribers that are
+     * Closeable are closed with the bus.
+     */
+    public void subscribe(ParkingEventSubscriber subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public void unsubscribe(ParkingEventSubscriber subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    /**
+     * Gives the event its sequence and queues it for the subscribers. Returns false when the event
+     * was dropped, because the bus is closed or the subscribers stayed behind for too long.
+     */
+    public boolean publish(ParkingEvent event) {
+        long start = System.nanoTime();
+        long deadline = start + publishTimeoutNanos;
+        lock.lock();
+        try {
+            if (!running) {
+                dropped.increment();
+                return false;
+            }
+            long sequence = nextSequence++;
+            event.setSequence(sequence);
+            boolean durable = hasDurableSubscriber();
+            //publishers take their turn in sequence order, each one either writes its event or drops it
+            while (running && (sequence != nextToWrite || published - dispatched == ring.length)) {
+                if (sequence != nextToWrite || durable) {
+                    notFull.awaitUninterruptibly();
+                    continue;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    drop(event, "Event bus full");
+                    return false;
+                }
+                try {
+                    notFull.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    drop(event, "Interrupted");
+                    return false;
+                }
+            }
+            if (!running) {
+                dropped.increment();
+                return false;
+            }
+            ring[(int) (published & mask)] = event;
+            published++;
+            nextToWrite = sequence + 1;
+            notEmpty.signal();
+            notFull.signalAll();
+            return true;
+        } finally {
+            lock.unlock();
+            PUBLISH_METRICS.record(start);
+        }
+    }
+
+    private void drop(ParkingEvent event, String reason) {
+        dropped.increment();
+        PUBLISH_METRICS.error();
+        logger.error(reason + ", dropping " + event.getClass().getSimpleName() + " " + event.getSequence() + " of spot " + event.getParkingNumber());
+        nextToWrite = event.getSequence() + 1;
+        notFull.signalAll();
+    }
+
+    private boolean hasDurableSubscriber() {
+        for (ParkingEventSubscriber subscriber : subscribers) {
+            if (subscriber.isDurable()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Sequence of the last event handed to the subscribers, firstSequence - 1 if none was.
+     */
+    public long getDispatchedSequence() {
+        lock.lock();
+        try {
+            return dispatchedSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void dispatchLoop() {
+        while (true) {
+            List<ParkingEvent> batch;
+            long from;
+            lock.lock();
+            try {
+                while (running && published == dispatched) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (published == dispatched) {
+                    return;
+                }
+                from = dispatched;
+                int count = (int) Math.min(maxBatchSize, published - dispatched);
+                ParkingEvent[] events = new ParkingEvent[count];
+                for (int i = 0; i < count; i++) {
+                    events[i] = ring[(int) ((from + i) & mask)];
+                }
+                batch = Collections.unmodifiableList(Arrays.asList(events));
+            } finally {
+                lock.unlock();
+            }
+            deliver(batch);
+            lock.lock();
+            try {
+                for (long sequence = from; sequence < from + batch.size(); sequence++) {
+                    ring[(int) (sequence & mask)] = null;
+                }
+                dispatched = from + batch.size();
+                dispatchedSequence = batch.get(batch.size() - 1).getSequence();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void deliver(List<ParkingEvent> batch) {
+        long start = System.nanoTime();
+        for (ParkingEventSubscriber subscriber : subscribers) {
+            try {
+                subscriber.onEvents(batch);
+            } catch (Exception e) {
+                DISPATCH_METRICS.error();
+                logger.error("Error delivering " + batch.size() + " events to " + subscriber.getClass().getSimpleName(), e);
+            }
+        }
+        DISPATCH_METRICS.record(start);
+    }
+
+    /**
+     * Delivers the events already published, stops the dispatcher and closes the subscribers.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+            notEmpty.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            dispatcher.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (ParkingEventSubscriber subscriber : new ArrayList<>(subscribers)) {
+            if (subscriber instanceof Closeable) {
+                try {
+                    ((Closeable) subscriber).close();
+                } catch (IOException e) {
+                    logger.error("Error closing " + subscriber.getClass().getSimpleName(), e);
+                }
+            }
+        }
+    }
+}
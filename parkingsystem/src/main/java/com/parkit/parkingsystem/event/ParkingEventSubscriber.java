@@ -0,0 +1,21 @@
+package com.parkit.parkingsystem.event;
+
+import java.util.List;
+
+/**
+ * Receives the events of a ParkingEventBus, in sequence order, in batches of the events published
+ * since the previous call. All subscribers are called on the dispatcher thread of the bus, one
+ * after the other, so a subscriber doing slow work should hand it over to its own thread.
+ */
+public interface ParkingEventSubscriber {
+
+    void onEvents(List<ParkingEvent> events) throws Exception;
+
+    /**
+     * A durable subscriber must see every event: while one is subscribed, publishers wait for room in
+     * the bus instead of dropping events.
+     */
+    default boolean isDurable() {
+        return false;
+    }
+}
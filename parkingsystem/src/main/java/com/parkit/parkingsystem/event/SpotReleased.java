@@ -0,0 +1,15 @@
+package com.parkit.parkingsystem.event;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.time.Instant;
+
+/**
+ * A spot became available again after the vehicle parked on it left.
+ */
+public final class SpotReleased extends ParkingEvent {
+
+    public SpotReleased(Instant time, int parkingNumber, ParkingType parkingType) {
+        super(time, parkingNumber, parkingType);
+    }
+}
@@ -0,0 +1,28 @@
+package com.parkit.parkingsystem.event;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.time.Instant;
+
+/**
+ * A vehicle was given a spot and a ticket; the time is the in time of the ticket.
+ */
+public final class VehicleEntered extends ParkingEvent {
+
+    private final int ticketId;
+    private final String vehicleRegNumber;
+
+    public VehicleEntered(Instant inTime, int parkingNumber, ParkingType parkingType, int ticketId, String vehicleRegNumber) {
+        super(inTime, parkingNumber, parkingType);
+        this.ticketId = ticketId;
+        this.vehicleRegNumber = vehicleRegNumber;
+    }
+
+    public int getTicketId() {
+        return ticketId;
+    }
+
+    public String getVehicleRegNumber() {
+        return vehicleRegNumber;
+    }
+}
@@ -0,0 +1,41 @@
+package com.parkit.parkingsystem.event;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.time.Instant;
+
+/**
+ * A vehicle left and its ticket was closed at the price charged; the time is the out time.
+ */
+public final class VehicleExited extends ParkingEvent {
+
+    private final int ticketId;
+    private final String vehicleRegNumber;
+    private final Instant inTime;
+    private final double price;
+
+    public VehicleExited(Instant outTime, int parkingNumber, ParkingType parkingType, int ticketId, String vehicleRegNumber,
+                         Instant inTime, double price) {
+        super(outTime, parkingNumber, parkingType);
+        this.ticketId = ticketId;
+        this.vehicleRegNumber = vehicleRegNumber;
+        this.inTime = inTime;
+        this.price = price;
+    }
+
+    public int getTicketId() {
+        return ticketId;
+    }
+
+    public String getVehicleRegNumber() {
+        return vehicleRegNumber;
+    }
+
+    public Instant getInTime() {
+        return inTime;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+}
@@ -0,0 +1,79 @@
+package com.parkit.parkingsystem.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the operation metrics of the application. Each operation is registered once, usually
+ * in a static field of the instrumented class, and published as the JMX bean
+ * com.parkit.parkingsystem:type=Operation,name=&lt;operation&gt;. writeText renders all of them in
+ * the Prometheus text format for the /api/metrics endpoint.
+ */
+public final class Metrics {
+
+    private static final Logger logger = LogManager.getLogger("Metrics");
+
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    private static final ConcurrentHashMap<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    public static OperationMetrics operation(String name) {
+        return operations.computeIfAbsent(name, Metrics::register);
+    }
+
+    private static OperationMetrics register(String name) {
+        OperationMetrics metrics = new OperationMetrics(name);
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics,
+                    new ObjectName("com.parkit.parkingsystem:type=Operation,name=" + ObjectName.quote(name)));
+        } catch (Exception e) {
+            logger.error("Unable to publish the metrics of " + name + " over JMX", e);
+        }
+        return metrics;
+    }
+
+    public static List<OperationMetrics> getOperations() {
+        List<OperationMetrics> sorted = new ArrayList<>(operations.values());
+        sorted.sort(Comparator.comparing(OperationMetrics::getName));
+        return sorted;
+    }
+
+    public static String writeText() {
+        StringBuilder text = new StringBuilder();
+        List<OperationMetrics> sorted = getOperations();
+        text.append("# TYPE parkit_operation_latency_seconds summary\n");
+        for (OperationMetrics metrics : sorted) {
+            String label = "operation=\"" + metrics.getName() + "\"";
+            LatencyHistogram latency = metrics.getLatency();
+            for (double quantile : QUANTILES) {
+                text.append("parkit_operation_latency_seconds{").append(label).append(",quantile=\"").append(quantile).append("\"} ")
+                        .append(seconds(latency.getValueAtPercentile(quantile * 100))).append('\n');
+            }
+            text.append("parkit_operation_latency_seconds_sum{").append(label).append("} ")
+                    .append(seconds(latency.getTotalNanos())).append('\n');
+            text.append("parkit_operation_latency_seconds_count{").append(label).append("} ")
+                    .append(latency.getCount()).append('\n');
+        }
+        text.append("# TYPE parkit_operation_errors_total counter\n");
+        for (OperationMetrics metrics : sorted) {
+            text.append("parkit_operation_errors_total{operation=\"").append(metrics.getName()).append("\"} ")
+                    .append(metrics.getErrors()).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+}
@@ -0,0 +1,23 @@
+package com.parkit.parkingsystem.metrics;
+
+/**
+ * JMX view of an OperationMetrics, latencies in microseconds.
+ */
+public interface OperationMetricsMBean {
+
+    String getName();
+
+    long getCount();
+
+    long getErrors();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+}
@@ -0,0 +1,37 @@
+package com.parkit.parkingsystem.model;
+
+import com.parkit.parkingsystem.constants.ParkingError;
+
+/**
+ * Outcome of a vehicle entry: the saved ticket, or the reason why no ticket was created.
+ */
+public final class EntryResult {
+
+    private final Ticket ticket;
+    private final ParkingError error;
+
+    private EntryResult(Ticket ticket, ParkingError error) {
+        this.ticket = ticket;
+        this.error = error;
+    }
+
+    public static EntryResult entered(Ticket ticket) {
+        return new EntryResult(ticket, null);
+    }
+
+    public static EntryResult failed(ParkingError error) {
+        return new EntryResult(null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    public Ticket getTicket() {
+        return ticket;
+    }
+
+    public ParkingError getError() {
+        return error;
+    }
+}
@@ -0,0 +1,41 @@
+package com.parkit.parkingsystem.model;
+
+import com.parkit.parkingsystem.constants.ParkingError;
+
+/**
+ * Outcome of a vehicle exit or fare quote: the priced ticket, or the reason why it could not be priced.
+ */
+public final class ExitResult {
+
+    private final Ticket ticket;
+    private final ParkingError error;
+
+    private ExitResult(Ticket ticket, ParkingError error) {
+        this.ticket = ticket;
+        this.error = error;
+    }
+
+    public static ExitResult priced(Ticket ticket) {
+        return new ExitResult(ticket, null);
+    }
+
+    public static ExitResult failed(ParkingError error) {
+        return new ExitResult(null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    public Ticket getTicket() {
+        return ticket;
+    }
+
+    public double getPrice() {
+        return ticket.getPrice();
+    }
+
+    public ParkingError getError() {
+        return error;
+    }
+}
@@ -0,0 +1,36 @@
+package com.parkit.parkingsystem.model;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+/**
+ * Immutable count of the spots of each parking type at a given version of the occupancy counters.
+ * A later snapshot has a higher version.
+ */
+public final class OccupancySnapshot {
+
+    private final long version;
+    private final int[] available;
+    private final int[] capacity;
+
+    public OccupancySnapshot(long version, int[] available, int[] capacity) {
+        this.version = version;
+        this.available = available.clone();
+        this.capacity = capacity.clone();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getAvailable(ParkingType parkingType) {
+        return available[parkingType.ordinal()];
+    }
+
+    public int getCapacity(ParkingType parkingType) {
+        return capacity[parkingType.ordinal()];
+    }
+
+    public int getOccupied(ParkingType parkingType) {
+        return getCapacity(parkingType) - getAvailable(parkingType);
+    }
+}
@@ -0,0 +1,53 @@
+package com.parkit.parkingsystem.model;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+/**
+ * Immutable price list of a site, pre-indexed in arrays so that pricing a ticket is a few array
+ * lookups: the hourly rate by parking type, the discount by number of previous visits and the
+ * rate multiplier by hour of day of the entry.
+ */
+public final class Tariff {
+
+    private static final long MILLIS_PER_HOUR = 60 * 60 * 1000;
+
+    private final long[] ratePerHourInCents;
+    private final long freePeriodInMinutes;
+    private final long[] discountPercentByPreviousVisits;
+    private final long[] ratePercentByHourOfDay;
+    private final long zoneOffsetMillis;
+
+    public Tariff(long[] ratePerHourInCents, long freePeriodInMinutes, long[] discountPercentByPreviousVisits,
+                  long[] ratePercentByHourOfDay, long zoneOffsetMillis) {
+        if (ratePerHourInCents.length != ParkingType.values().length) {
+            throw new IllegalArgumentException("One hourly rate is expected per parking type");
+        }
+        if (discountPercentByPreviousVisits.length == 0) {
+            throw new IllegalArgumentException("At least one discount tier is expected");
+        }
+        if (ratePercentByHourOfDay.length != 24) {
+            throw new IllegalArgumentException("One rate percentage is expected per hour of day");
+        }
+        this.ratePerHourInCents = ratePerHourInCents.clone();
+        this.freePeriodInMinutes = freePeriodInMinutes;
+        this.discountPercentByPreviousVisits = discountPercentByPreviousVisits.clone();
+        this.ratePercentByHourOfDay = ratePercentByHourOfDay.clone();
+        this.zoneOffsetMillis = zoneOffsetMillis;
+    }
+
+    public long getRatePerHourInCents(ParkingType parkingType) {
+        return ratePerHourInCents[parkingType.ordinal()];
+    }
+
+    public long getFreePeriodInMinutes() {
+        return freePeriodInMinutes;
+    }
+
+    public long getDiscountPercent(int previousVisits) {
+        return discountPercentByPreviousVisits[Math.min(previousVisits, discountPercentByPreviousVisits.length - 1)];
+    }
+
+    public long getRatePercent(long epochMillis) {
+        return ratePercentByHourOfDay[(int) Math.floorMod(Math.floorDiv(epochMillis + zoneOffsetMillis, MILLIS_PER_HOUR), 24L)];
+    }
+}
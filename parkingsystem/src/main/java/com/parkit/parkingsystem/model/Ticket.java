@@ -10,6 +10,8 @@ public class Ticket {
     private double price;
     private Date inTime;
     private Date outTime;
+    //visits of the vehicle before this one
+    private int previousVisits;
 
     public int getId() {
         return id;
@@ -58,4 +60,28 @@ public class Ticket {
     public void setOutTime(Date outTime) {
         this.outTime = outTime;
     }
+
+    public boolean isRecurringUser() {
+        return previousVisits > 0;
+    }
+
+    /**
+     * Counts one previous visit for a recurring user, unless more are already known.
+     *
+     * @deprecated the discount depends on the number of previous visits, use {@link #setPreviousVisits(int)}
+     */
+    @Deprecated
+    public void setRecurringUser(boolean recurringUser) {
+        if (recurringUser != isRecurringUser()) {
+            this.previousVisits = recurringUser ? 1 : 0;
+        }
+    }
+
+    public int getPreviousVisits() {
+        return previousVisits;
+    }
+
+    public void setPreviousVisits(int previousVisits) {
+        this.previousVisits = previousVisits;
+    }
 }
@@ -0,0 +1,64 @@
+package com.parkit.parkingsystem.model;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.time.LocalDateTime;
+
+/**
+ * Immutable totals of one hour or one day for one parking type: the tickets closed in it, what they
+ * paid and how long they stayed, and the most vehicles of that type parked at the same time.
+ */
+public final class TicketRollup {
+
+    private final LocalDateTime start;
+    private final ParkingType parkingType;
+    private final long ticketCount;
+    private final long revenueCents;
+    private final long totalDurationMillis;
+    private final int peakOccupied;
+
+    public TicketRollup(LocalDateTime start, ParkingType parkingType, long ticketCount, long revenueCents,
+                        long totalDurationMillis, int peakOccupied) {
+        this.start = start;
+        this.parkingType = parkingType;
+        this.ticketCount = ticketCount;
+        this.revenueCents = revenueCents;
+        this.totalDurationMillis = totalDurationMillis;
+        this.peakOccupied = peakOccupied;
+    }
+
+    public LocalDateTime getStart() {
+        return start;
+    }
+
+    public ParkingType getParkingType() {
+        return parkingType;
+    }
+
+    public long getTicketCount() {
+        return ticketCount;
+    }
+
+    public long getRevenueCents() {
+        return revenueCents;
+    }
+
+    public double getRevenue() {
+        return revenueCents / 100.0;
+    }
+
+    public long getTotalDurationMillis() {
+        return totalDurationMillis;
+    }
+
+    /**
+     * Average time parked of the tickets closed in the period, 0 when none was.
+     */
+    public double getAverageDurationMinutes() {
+        return ticketCount == 0 ? 0 : totalDurationMillis / 60000.0 / ticketCount;
+    }
+
+    public int getPeakOccupied() {
+        return peakOccupied;
+    }
+}
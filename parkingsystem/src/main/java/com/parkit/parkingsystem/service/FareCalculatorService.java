@@ -1,7 +1,5 @@
 package com.parkit.parkingsystem.service;
 
-
-import com.parkit.parkingsystem.constants.Fare;
 import com.parkit.parkingsystem.model.Ticket;
 
 public class FareCalculatorService {
@@ -11,34 +9,19 @@ public class FareCalculatorService {
     }
 
     public void calculateFare(Ticket ticket, boolean discount){
-        if( (ticket.getOutTime() == null) || (ticket.getOutTime().before(ticket.getInTime())) ){
-            throw new IllegalArgumentException("Out time provided is incorrect:"+ticket.getOutTime().toString());
-        }
-
-        long inHour = ticket.getInTime().getTime();
-        long outHour = ticket.getOutTime().getTime();
-        double duration = ((outHour - inHour) / 1000 / 60);
-
-        if(duration < 30) {
-            ticket.setPrice(0);
-            return;
-        }
-
-        switch (ticket.getParkingSpot().getParkingType()){
-          case CAR: {
-            ticket.setPrice(duration * (Fare.CAR_RATE_PER_HOUR) / 60);
-            break;
-          }
-          case BIKE: {
-            ticket.setPrice(duration * (Fare.BIKE_RATE_PER_HOUR) / 60);
-            break;
-          }
-          default: throw new IllegalArgumentException("Unkown Parking Type");
-        }
+        this.calculateFare(ticket, discount ? 1 : 0);
+    }
 
-        if(discount){
-          ticket.setPrice(ticket.getPrice() * 0.95);
+    /**
+     * Prices the ticket with the discount tier of the given number of previous visits of the vehicle.
+     */
+    public void calculateFare(Ticket ticket, int previousVisits){
+        if( (ticket.getOutTime() == null) || (ticket.getOutTime().before(ticket.getInTime())) ){
+            throw new IllegalArgumentException("Out time provided is incorrect:"+ticket.getOutTime());
         }
 
+        long priceInCents = FareEngine.calculatePriceInCents(ticket.getInTime().getTime(), ticket.getOutTime().getTime(),
+                ticket.getParkingSpot().getParkingType(), previousVisits);
+        ticket.setPrice(priceInCents / 100.0);
     }
-}
\ No newline at end of file
+}
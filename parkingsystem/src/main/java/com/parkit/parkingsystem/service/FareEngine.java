@@ -0,0 +1,42 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.TariffConfig;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.Tariff;
+
+/**
+ * Fare computation on primitive values only: times are epoch millis and prices are whole cents,
+ * rounded half up once at the end, so repricing many tickets creates no garbage and no rounding drift.
+ */
+public final class FareEngine {
+
+    private static final long MILLIS_PER_MINUTE = 60 * 1000;
+    private static final long MINUTES_PER_HOUR = 60;
+    private static final long PERCENT = 100;
+    private static final long DIVISOR = MINUTES_PER_HOUR * PERCENT * PERCENT;
+
+    private FareEngine() {
+    }
+
+    public static long calculatePriceInCents(long inTimeMillis, long outTimeMillis, ParkingType parkingType, boolean discount) {
+        return calculatePriceInCents(inTimeMillis, outTimeMillis, parkingType, discount ? 1 : 0);
+    }
+
+    public static long calculatePriceInCents(long inTimeMillis, long outTimeMillis, ParkingType parkingType, int previousVisits) {
+        return calculatePriceInCents(TariffConfig.getTariff(), inTimeMillis, outTimeMillis, parkingType, previousVisits);
+    }
+
+    public static long calculatePriceInCents(Tariff tariff, long inTimeMillis, long outTimeMillis, ParkingType parkingType, int previousVisits) {
+        if (outTimeMillis < inTimeMillis) {
+            throw new IllegalArgumentException("Out time provided is incorrect:" + outTimeMillis);
+        }
+        long ratePerHourInCents = tariff.getRatePerHourInCents(parkingType);
+        long durationInMinutes = (outTimeMillis - inTimeMillis) / MILLIS_PER_MINUTE;
+        if (durationInMinutes < tariff.getFreePeriodInMinutes()) {
+            return 0;
+        }
+        long ratePercent = tariff.getRatePercent(inTimeMillis);
+        long percentToPay = PERCENT - tariff.getDiscountPercent(previousVisits);
+        return (durationInMinutes * ratePerHourInCents * ratePercent * percentToPay + DIVISOR / 2) / DIVISOR;
+    }
+}
@@ -1,39 +1,77 @@
 package com.parkit.parkingsystem.service;
 
-import com.parkit.parkingsystem.dao.ParkingSpotDAO;
-import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.config.TariffConfig;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.time.Instant;
+
+/**
+ * Console front end: reads the operator input, calls ParkingService and prints the outcome.
+ */
 public class InteractiveShell {
 
     private static final Logger logger = LogManager.getLogger("InteractiveShell");
 
+    private InputReaderUtil inputReaderUtil;
+    private ParkingService parkingService;
+
+    public InteractiveShell(InputReaderUtil inputReaderUtil, ParkingService parkingService){
+        this.inputReaderUtil = inputReaderUtil;
+        this.parkingService = parkingService;
+    }
+
     public static void loadInterface(){
         logger.info("App initialized!!!");
         System.out.println("Welcome to Parking System!");
 
         boolean continueApp = true;
         InputReaderUtil inputReaderUtil = new InputReaderUtil();
-        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
-        TicketDAO ticketDAO = new TicketDAO();
-        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+        ParkingApplication application;
+        try {
+            application = ParkingApplication.start();
+        } catch (Exception e) {
+            logger.error("Unable to open the parking store", e);
+            return;
+        }
+        ParkingService parkingService = application.getParkingService();
+        InteractiveShell shell = new InteractiveShell(inputReaderUtil, parkingService);
+        //gate terminals share the DAOs, and so the spot availability index, with the shell
+        ParkingHttpServer httpServer = null;
+        Integer httpPort = Integer.getInteger("parkit.http.port");
+        if(httpPort != null){
+            try {
+                httpServer = new ParkingHttpServer(parkingService, httpPort, ParkingHttpServer.newExecutor());
+                httpServer.start();
+            } catch (Exception e) {
+                logger.error("Unable to start the HTTP API", e);
+            }
+        }
 
         while(continueApp){
             loadMenu();
             int option = inputReaderUtil.readSelection();
             switch(option){
                 case 1: {
-                    parkingService.processIncomingVehicle();
+                    shell.processIncomingVehicle();
                     break;
                 }
                 case 2: {
-                    parkingService.processExitingVehicle();
+                    shell.processExitingVehicle();
                     break;
                 }
                 case 3: {
                     System.out.println("Exiting from the system!");
+                    if(httpServer != null){
+                        httpServer.stop();
+                    }
+                    application.close();
                     continueApp = false;
                     break;
                 }
@@ -49,4 +87,73 @@ public class InteractiveShell {
         System.out.println("3 Shutdown System");
     }
 
+    public void processIncomingVehicle() {
+        try{
+            ParkingType parkingType = getVehichleType();
+            String vehicleRegNumber = getVehichleRegNumber();
+            EntryResult result = parkingService.enter(vehicleRegNumber, parkingType);
+            if(!result.isSuccess()){
+                System.out.println(result.getError().getDescription());
+                return;
+            }
+            Ticket ticket = result.getTicket();
+            long discountPercent = TariffConfig.getTariff().getDiscountPercent(ticket.getPreviousVisits());
+            if(ticket.isRecurringUser() && discountPercent > 0){
+                System.out.println("Heureux de vous revoir ! En tant qu’utilisateur régulier de notre parking, vous allez obtenir une remise de "+discountPercent+"%");
+            }
+            System.out.println("Generated Ticket and saved in DB");
+            System.out.println("Please park your vehicle in spot number:"+ticket.getParkingSpot().getId());
+            System.out.println("Recorded in-time for vehicle number:"+vehicleRegNumber+" is:"+ticket.getInTime());
+        }catch(Exception e){
+            logger.error("Unable to process incoming vehicle",e);
+        }
+    }
+
+    public void processExitingVehicle() {
+        try{
+            String vehicleRegNumber = getVehichleRegNumber();
+            ExitResult result = parkingService.exit(vehicleRegNumber, Instant.now());
+            if(result.isSuccess()) {
+                System.out.println("Please pay the parking fare:" + result.getPrice());
+                System.out.println("Recorded out-time for vehicle number:" + vehicleRegNumber + " is:" + result.getTicket().getOutTime());
+            }else{
+                System.out.println(result.getError().getDescription());
+            }
+        }catch(Exception e){
+            logger.error("Unable to process exiting vehicle",e);
+        }
+    }
+
+    public ParkingSpot getNextParkingNumberIfAvailable(){
+        try{
+            return parkingService.getNextParkingSpotIfAvailable(getVehichleType());
+        }catch(IllegalArgumentException ie){
+            logger.error("Error parsing user input for type of vehicle", ie);
+            return null;
+        }
+    }
+
+    private String getVehichleRegNumber() throws Exception {
+        System.out.println("Please type the vehicle registration number and press enter key");
+        return inputReaderUtil.readVehicleRegistrationNumber();
+    }
+
+    private ParkingType getVehichleType(){
+        System.out.println("Please select vehicle type from menu");
+        System.out.println("1 CAR");
+        System.out.println("2 BIKE");
+        int input = inputReaderUtil.readSelection();
+        switch(input){
+            case 1: {
+                return ParkingType.CAR;
+            }
+            case 2: {
+                return ParkingType.BIKE;
+            }
+            default: {
+                System.out.println("Incorrect input provided");
+                throw new IllegalArgumentException("Entered input is invalid");
+            }
+        }
+    }
 }
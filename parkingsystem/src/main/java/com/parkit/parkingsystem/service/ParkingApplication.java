@@ -0,0 +1,87 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.StorageBackend;
+import com.parkit.parkingsystem.config.TariffConfig;
+import com.parkit.parkingsystem.dao.BatchWriter;
+import com.parkit.parkingsystem.dao.InMemoryParkingSpotDAO;
+import com.parkit.parkingsystem.dao.InMemoryParkingStore;
+import com.parkit.parkingsystem.dao.InMemoryTicketDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.event.ParkingEventBus;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+
+/**
+ * ParkingService wired from the system properties, the same way for the console and the HTTP API:
+ * tariff file watcher, storage backend, DAOs with their in-memory state loaded, batch writer and
+ * event bus.
+ */
+public class ParkingApplication {
+
+    private static final Logger logger = LogManager.getLogger("ParkingApplication");
+
+    private final InMemoryParkingStore memoryStore;
+    private final BatchWriter batchWriter;
+    private final ParkingService parkingService;
+
+    private ParkingApplication(InMemoryParkingStore memoryStore, BatchWriter batchWriter, ParkingService parkingService) {
+        this.memoryStore = memoryStore;
+        this.batchWriter = batchWriter;
+        this.parkingService = parkingService;
+    }
+
+    public static ParkingApplication start() throws IOException {
+        TariffConfig.watch(Long.getLong("parkit.tariff.reloadMillis", 10000));
+        InMemoryParkingStore memoryStore = StorageBackend.isInMemory() ? InMemoryParkingStore.openFromConfiguration() : null;
+        ParkingSpotDAO parkingSpotDAO = memoryStore != null ? new InMemoryParkingSpotDAO(memoryStore) : new ParkingSpotDAO();
+        parkingSpotDAO.loadAvailabilityIndex();
+        TicketDAO ticketDAO = memoryStore != null ? new InMemoryTicketDAO(memoryStore) : new TicketDAO();
+        ticketDAO.loadOpenTickets();
+        ticketDAO.loadVisitCounters();
+        //always kept once ticket_rollup exists, a run without them would leave its tickets out
+        if (memoryStore == null) {
+            ticketDAO.loadRollups();
+        }
+        BatchWriter batchWriter = null;
+        if (memoryStore == null && Boolean.getBoolean("parkit.db.batch.enabled")) {
+            batchWriter = new BatchWriter(new DataBaseConfig(),
+                    Integer.getInteger("parkit.db.batch.size", 100), Long.getLong("parkit.db.batch.windowMillis", 5));
+            parkingSpotDAO.batchWriter = batchWriter;
+            ticketDAO.batchWriter = batchWriter;
+        }
+        ParkingService parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+        try {
+            parkingService.eventBus = ParkingEventBus.openFromConfiguration();
+        } catch (Exception e) {
+            logger.error("Unable to open the event journal", e);
+        }
+        return new ParkingApplication(memoryStore, batchWriter, parkingService);
+    }
+
+    public ParkingService getParkingService() {
+        return parkingService;
+    }
+
+    /**
+     * Closes the event bus, the batch writer and the in-memory store. The connection pool is left to the caller.
+     */
+    public void close() {
+        if (parkingService.eventBus != null) {
+            parkingService.eventBus.close();
+        }
+        if (batchWriter != null) {
+            batchWriter.close();
+        }
+        if (memoryStore != null) {
+            try {
+                memoryStore.close();
+            } catch (IOException e) {
+                logger.error("Error closing the parking store", e);
+            }
+        }
+    }
+}
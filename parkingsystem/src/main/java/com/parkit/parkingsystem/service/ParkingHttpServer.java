@@ -0,0 +1,316 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.ParkingError;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.OccupancyCounters;
+import com.parkit.parkingsystem.dao.TicketRollups;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.OccupancySnapshot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.TicketRollup;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * HTTP API for the gate terminals, on top of the same ParkingService as the interactive shell.
+ * Connections are multiplexed by the selector thread of the JDK server and each request runs on the
+ * executor, by default one virtual thread per request so that blocking database calls do not cap
+ * the number of requests in progress; the connection pool alone bounds the load on the database.
+ *
+ * POST /api/entries?vehicleRegNumber=ABCDEF&amp;parkingType=CAR
+ * POST /api/exits?vehicleRegNumber=ABCDEF
+ * GET  /api/quotes?vehicleRegNumber=ABCDEF[&amp;at=2023-01-01T10:00:00Z]
+ * GET  /api/occupancy[?since=&lt;version&gt;[&amp;waitMillis=30000]]
+ *                       free, occupied and total spots by type, from the in-memory counters; with since,
+ *                       held until the counters are past that version or waitMillis have passed
+ * GET  /api/rollups?day=2023-01-01[&amp;parkingType=CAR]
+ *                       tickets closed, revenue, average duration and peak occupancy of the day and of each
+ *                       of its hours, by type, from the in-memory rollups
+ * GET  /api/metrics     latency and errors of each operation, in the Prometheus text format
+ */
+public class ParkingHttpServer {
+
+    private static final Logger logger = LogManager.getLogger("ParkingHttpServer");
+
+    private static final long MAX_OCCUPANCY_WAIT_MILLIS = 60000;
+
+    private final ParkingService parkingService;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public ParkingHttpServer(ParkingService parkingService, int port, ExecutorService executor) throws IOException {
+        this.parkingService = parkingService;
+        this.executor = executor;
+        this.server = HttpServer.create(new InetSocketAddress(port), Integer.getInteger("parkit.http.backlog", 1024));
+        server.createContext("/api/entries", handler("POST", this::enter));
+        server.createContext("/api/exits", handler("POST", this::exit));
+        server.createContext("/api/quotes", handler("GET", this::quote));
+        server.createContext("/api/occupancy", handler("GET", this::occupancy));
+        server.createContext("/api/rollups", handler("GET", this::rollups));
+        server.createContext("/api/metrics", handler("GET", parameters ->
+                new Response(200, Metrics.writeText(), "text/plain; version=0.0.4; charset=utf-8")));
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+        logger.info("HTTP API listening on port " + getPort());
+    }
+
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private interface Operation {
+        Response handle(Map<String, String> parameters);
+    }
+
+    private static class Response {
+        private final int status;
+        private final String body;
+        private final String contentType;
+
+        private Response(int status, String body) {
+            this(status, body, "application/json; charset=utf-8");
+        }
+
+        private Response(int status, String body, String contentType) {
+            this.status = status;
+            this.body = body;
+            this.contentType = contentType;
+        }
+    }
+
+    private Response enter(Map<String, String> parameters) {
+        ParkingType parkingType = ParkingType.valueOf(getRequired(parameters, "parkingType").toUpperCase());
+        EntryResult result = parkingService.enter(parameters.get("vehicleRegNumber"), parkingType);
+        if (!result.isSuccess()) {
+            return error(result.getError());
+        }
+        Ticket ticket = result.getTicket();
+        return new Response(201, "{\"vehicleRegNumber\":" + jsonString(ticket.getVehicleRegNumber())
+                + ",\"parkingNumber\":" + ticket.getParkingSpot().getId()
+                + ",\"parkingType\":" + jsonString(parkingType.name())
+                + ",\"inTime\":" + jsonString(ticket.getInTime().toInstant().toString())
+                + ",\"recurringUser\":" + ticket.isRecurringUser() + "}");
+    }
+
+    private Response exit(Map<String, String> parameters) {
+        return priced(parkingService.exit(parameters.get("vehicleRegNumber"), Instant.now()));
+    }
+
+    private Response quote(Map<String, String> parameters) {
+        String at = parameters.get("at");
+        return priced(parkingService.quote(parameters.get("vehicleRegNumber"), at == null ? Instant.now() : Instant.parse(at)));
+    }
+
+    private static Response priced(ExitResult result) {
+        if (!result.isSuccess()) {
+            return error(result.getError());
+        }
+        Ticket ticket = result.getTicket();
+        return new Response(200, "{\"vehicleRegNumber\":" + jsonString(ticket.getVehicleRegNumber())
+                + ",\"parkingNumber\":" + ticket.getParkingSpot().getId()
+                + ",\"inTime\":" + jsonString(ticket.getInTime().toInstant().toString())
+                + ",\"outTime\":" + jsonString(ticket.getOutTime().toInstant().toString())
+                + ",\"price\":" + result.getPrice() + "}");
+    }
+
+    private Response occupancy(Map<String, String> parameters) {
+        OccupancyCounters occupancy = parkingService.getOccupancy();
+        String since = parameters.get("since");
+        OccupancySnapshot snapshot;
+        if (since == null) {
+            snapshot = occupancy.snapshot();
+        } else {
+            long waitMillis = Math.min(MAX_OCCUPANCY_WAIT_MILLIS, Long.parseLong(parameters.getOrDefault("waitMillis", "30000")));
+            try {
+                snapshot = occupancy.awaitChange(Long.parseLong(since), waitMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                snapshot = occupancy.snapshot();
+            }
+        }
+        StringBuilder json = new StringBuilder("{\"version\":").append(snapshot.getVersion());
+        for (ParkingType parkingType : ParkingType.values()) {
+            json.append(',').append(jsonString(parkingType.name()))
+                    .append(":{\"available\":").append(snapshot.getAvailable(parkingType))
+                    .append(",\"occupied\":").append(snapshot.getOccupied(parkingType))
+                    .append(",\"capacity\":").append(snapshot.getCapacity(parkingType)).append('}');
+        }
+        return new Response(200, json.append('}').toString());
+    }
+
+    private Response rollups(Map<String, String> parameters) {
+        TicketRollups rollups = parkingService.getRollups();
+        if (rollups == null) {
+            return error(503, "Rollups are not loaded");
+        }
+        LocalDate day = LocalDate.parse(getRequired(parameters, "day"));
+        String type = parameters.get("parkingType");
+        ParkingType[] parkingTypes = type == null ? ParkingType.values() : new ParkingType[]{ParkingType.valueOf(type.toUpperCase())};
+        StringBuilder json = new StringBuilder("{\"day\":").append(jsonString(day.toString()));
+        for (ParkingType parkingType : parkingTypes) {
+            json.append(',').append(jsonString(parkingType.name())).append(":{");
+            appendRollupFields(json, rollups.getDay(day, parkingType));
+            json.append(",\"hours\":[");
+            for (int hour = 0; hour < 24; hour++) {
+                json.append(hour > 0 ? ",{" : "{");
+                appendRollupFields(json, rollups.getHour(day.atTime(hour, 0), parkingType));
+                json.append('}');
+            }
+            json.append("]}");
+        }
+        return new Response(200, json.append('}').toString());
+    }
+
+    private static void appendRollupFields(StringBuilder json, TicketRollup rollup) {
+        json.append("\"start\":").append(jsonString(rollup.getStart().toString()))
+                .append(",\"tickets\":").append(rollup.getTicketCount())
+                .append(",\"revenue\":").append(rollup.getRevenue())
+                .append(",\"averageDurationMinutes\":").append(rollup.getAverageDurationMinutes())
+                .append(",\"peakOccupied\":").append(rollup.getPeakOccupied());
+    }
+
+    private HttpHandler handler(String method, Operation operation) {
+        return exchange -> {
+            Response response;
+            try {
+                if (!method.equals(exchange.getRequestMethod())) {
+                    response = error(405, "Method not allowed");
+                } else {
+                    response = operation.handle(parseQuery(exchange.getRequestURI().getRawQuery()));
+                }
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                response = error(400, e.getMessage());
+            } catch (Exception e) {
+                logger.error("Error processing " + exchange.getRequestMethod() + " " + exchange.getRequestURI(), e);
+                response = error(500, "Internal error");
+            }
+            send(exchange, response);
+        };
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", response.contentType);
+        exchange.sendResponseHeaders(response.status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    private static String getRequired(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException("Missing parameter " + name);
+        }
+        return value.trim();
+    }
+
+    private static Response error(ParkingError error) {
+        switch (error) {
+            case INVALID_VEHICLE_REG_NUMBER:
+            case INVALID_OUT_TIME:
+                return error(400, error.getDescription());
+            case NO_OPEN_TICKET:
+                return error(404, error.getDescription());
+            case PARKING_FULL:
+                return error(409, error.getDescription());
+            default:
+                return error(500, error.getDescription());
+        }
+    }
+
+    private static Response error(int status, String message) {
+        return new Response(status, "{\"error\":" + jsonString(message) + "}");
+    }
+
+    private static String jsonString(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    /**
+     * -Dparkit.http.executor=virtual (default) runs each request on its own virtual thread,
+     * -Dparkit.http.executor=fixed on a pool of -Dparkit.http.threads platform threads.
+     */
+    public static ExecutorService newExecutor() {
+        return newExecutor(System.getProperty("parkit.http.executor", "virtual"));
+    }
+
+    public static ExecutorService newExecutor(String mode) {
+        switch (mode) {
+            case "virtual":
+                return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-", 0).factory());
+            case "fixed":
+                return Executors.newFixedThreadPool(Integer.getInteger("parkit.http.threads", 64));
+            default:
+                throw new IllegalArgumentException("Unknown executor mode:" + mode);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        ParkingApplication application = ParkingApplication.start();
+        ParkingHttpServer server = new ParkingHttpServer(application.getParkingService(), Integer.getInteger("parkit.http.port", 8080), newExecutor());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            application.close();
+            DataBaseConfig.closeConnectionPool();
+        }));
+        //the server threads keep the JVM running until it is interrupted
+        server.start();
+    }
+}
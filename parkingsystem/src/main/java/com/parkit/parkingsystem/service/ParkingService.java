@@ -1,132 +1,200 @@
 package com.parkit.parkingsystem.service;
 
+import com.parkit.parkingsystem.constants.ParkingError;
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.OccupancyCounters;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketRollups;
+import com.parkit.parkingsystem.event.ParkingEventBus;
+import com.parkit.parkingsystem.event.SpotReleased;
+import com.parkit.parkingsystem.event.VehicleEntered;
+import com.parkit.parkingsystem.event.VehicleExited;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
-import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.time.Instant;
 import java.util.Date;
 
+/**
+ * Entry and exit of vehicles. The methods take their input as arguments and report the outcome
+ * in their result, so the same service backs the interactive shell, the HTTP API and bulk callers.
+ */
 public class ParkingService {
 
     private static final Logger logger = LogManager.getLogger("ParkingService");
 
+    private static final OperationMetrics ENTER_METRICS = Metrics.operation("ParkingService.enter");
+    private static final OperationMetrics EXIT_METRICS = Metrics.operation("ParkingService.exit");
+    private static final OperationMetrics QUOTE_METRICS = Metrics.operation("ParkingService.quote");
+
+    //size of the VEHICLE_REG_NUMBER column
+    public static final int MAX_VEHICLE_REG_NUMBER_LENGTH = 10;
+
     private static FareCalculatorService fareCalculatorService = new FareCalculatorService();
 
-    private InputReaderUtil inputReaderUtil;
     private ParkingSpotDAO parkingSpotDAO;
     private  TicketDAO ticketDAO;
 
-    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO){
-        this.inputReaderUtil = inputReaderUtil;
+    //entries and exits are published there once saved, when set
+    public ParkingEventBus eventBus;
+
+    public ParkingService(ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO){
         this.parkingSpotDAO = parkingSpotDAO;
         this.ticketDAO = ticketDAO;
     }
 
-    public void processIncomingVehicle() {
-        try{
-            ParkingSpot parkingSpot = getNextParkingNumberIfAvailable();
-            if(parkingSpot !=null && parkingSpot.getId() > 0){
-                String vehicleRegNumber = getVehichleRegNumber();
-                int nbTicket = ticketDAO.getNbTicket(vehicleRegNumber);
-                parkingSpot.setAvailable(false);
-                parkingSpotDAO.updateParking(parkingSpot);//allot this parking space and mark it's availability as false
-                
-                if(nbTicket > 0){
-                    System.out.println("Heureux de vous revoir ! En tant qu’utilisateur régulier de notre parking, vous allez obtenir une remise de 5%");
+    /**
+     * Allots a parking spot to the vehicle and saves its ticket.
+     */
+    public EntryResult enter(String vehicleRegNumber, ParkingType parkingType) {
+        long start = System.nanoTime();
+        try {
+            if(!isValidVehicleRegNumber(vehicleRegNumber) || parkingType == null){
+                return EntryResult.failed(ParkingError.INVALID_VEHICLE_REG_NUMBER);
+            }
+            try{
+                int parkingNumber = parkingSpotDAO.claimNextAvailableSlot(parkingType);
+                if(parkingNumber == 0){
+                    return EntryResult.failed(ParkingError.PARKING_FULL);
                 }
+                if(parkingNumber < 0){
+                    ENTER_METRICS.error();
+                    return EntryResult.failed(ParkingError.DATABASE_ERROR);
+                }
+                ParkingSpot parkingSpot = new ParkingSpot(parkingNumber, parkingType, false);//it is already marked as unavailable
+                int nbTicket = ticketDAO.getNbTicket(vehicleRegNumber);
 
-                Date inTime = new Date();
                 Ticket ticket = new Ticket();
                 //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
-                //ticket.setId(ticketID);
                 ticket.setParkingSpot(parkingSpot);
                 ticket.setVehicleRegNumber(vehicleRegNumber);
                 ticket.setPrice(0);
-                ticket.setInTime(inTime);
+                ticket.setInTime(new Date());
                 ticket.setOutTime(null);
-                ticketDAO.saveTicket(ticket);
-                System.out.println("Generated Ticket and saved in DB");
-                System.out.println("Please park your vehicle in spot number:"+parkingSpot.getId());
-                System.out.println("Recorded in-time for vehicle number:"+vehicleRegNumber+" is:"+inTime);
+                ticket.setPreviousVisits(nbTicket);
+                if(!ticketDAO.saveTicket(ticket)){
+                    //without its ticket the spot would never be released by an exit
+                    parkingSpot.setAvailable(true);
+                    if(!parkingSpotDAO.updateParking(parkingSpot)){
+                        logger.error("Unable to release parking spot " + parkingNumber + " after failing to save the ticket of " + vehicleRegNumber);
+                    }
+                    ENTER_METRICS.error();
+                    return EntryResult.failed(ParkingError.DATABASE_ERROR);
+                }
+                if(eventBus != null){
+                    eventBus.publish(new VehicleEntered(ticket.getInTime().toInstant(), parkingNumber, parkingType,
+                            ticket.getId(), vehicleRegNumber));
+                }
+                return EntryResult.entered(ticket);
+            }catch(Exception e){
+                logger.error("Unable to process incoming vehicle",e);
+                ENTER_METRICS.error();
+                return EntryResult.failed(ParkingError.DATABASE_ERROR);
             }
-        }catch(Exception e){
-            logger.error("Unable to process incoming vehicle",e);
+        } finally {
+            ENTER_METRICS.record(start);
         }
     }
 
-    private String getVehichleRegNumber() throws Exception {
-        System.out.println("Please type the vehicle registration number and press enter key");
-        return inputReaderUtil.readVehicleRegistrationNumber();
-    }
-
-    public ParkingSpot getNextParkingNumberIfAvailable(){
-        int parkingNumber=0;
-        ParkingSpot parkingSpot = null;
-        try{
-            ParkingType parkingType = getVehichleType();
-            parkingNumber = parkingSpotDAO.getNextAvailableSlot(parkingType);
-            if(parkingNumber > 0){
-                parkingSpot = new ParkingSpot(parkingNumber,parkingType, true);
-            }else{
-                throw new Exception("Error fetching parking number from DB. Parking slots might be full");
+    /**
+     * Closes the ticket of the vehicle at outTime, prices it and frees its parking spot.
+     */
+    public ExitResult exit(String vehicleRegNumber, Instant outTime) {
+        long start = System.nanoTime();
+        try {
+            ExitResult result = quote(vehicleRegNumber, outTime);
+            if(!result.isSuccess()){
+                return result;
+            }
+            try{
+                Ticket ticket = result.getTicket();
+                if(!ticketDAO.updateTicket(ticket)){
+                    EXIT_METRICS.error();
+                    return ExitResult.failed(ParkingError.DATABASE_ERROR);
+                }
+                ParkingSpot parkingSpot = ticket.getParkingSpot();
+                if(eventBus != null){
+                    eventBus.publish(new VehicleExited(outTime, parkingSpot.getId(), parkingSpot.getParkingType(), ticket.getId(),
+                            vehicleRegNumber, ticket.getInTime().toInstant(), result.getPrice()));
+                }
+                parkingSpot.setAvailable(true);
+                if(parkingSpotDAO.updateParking(parkingSpot) && eventBus != null){
+                    eventBus.publish(new SpotReleased(outTime, parkingSpot.getId(), parkingSpot.getParkingType()));
+                }
+                return result;
+            }catch(Exception e){
+                logger.error("Unable to process exiting vehicle",e);
+                EXIT_METRICS.error();
+                return ExitResult.failed(ParkingError.DATABASE_ERROR);
             }
-        }catch(IllegalArgumentException ie){
-            logger.error("Error parsing user input for type of vehicle", ie);
-        }catch(Exception e){
-            logger.error("Error fetching next available parking slot", e);
+        } finally {
+            EXIT_METRICS.record(start);
         }
-        return parkingSpot;
     }
 
-    private ParkingType getVehichleType(){
-        System.out.println("Please select vehicle type from menu");
-        System.out.println("1 CAR");
-        System.out.println("2 BIKE");
-        int input = inputReaderUtil.readSelection();
-        switch(input){
-            case 1: {
-                return ParkingType.CAR;
+    /**
+     * Prices the open ticket of the vehicle as if it left at outTime, without closing it.
+     */
+    public ExitResult quote(String vehicleRegNumber, Instant outTime) {
+        long start = System.nanoTime();
+        try {
+            if(!isValidVehicleRegNumber(vehicleRegNumber)){
+                return ExitResult.failed(ParkingError.INVALID_VEHICLE_REG_NUMBER);
             }
-            case 2: {
-                return ParkingType.BIKE;
-            }
-            default: {
-                System.out.println("Incorrect input provided");
-                throw new IllegalArgumentException("Entered input is invalid");
+            try{
+                Ticket ticket = ticketDAO.getTicketForExit(vehicleRegNumber);
+                if(ticket == null){
+                    return ExitResult.failed(ParkingError.NO_OPEN_TICKET);
+                }
+                if(outTime.toEpochMilli() < ticket.getInTime().getTime()){
+                    return ExitResult.failed(ParkingError.INVALID_OUT_TIME);
+                }
+                ticket.setOutTime(Date.from(outTime));
+                fareCalculatorService.calculateFare(ticket, ticket.getPreviousVisits());
+                return ExitResult.priced(ticket);
+            }catch(Exception e){
+                logger.error("Unable to price exiting vehicle",e);
+                QUOTE_METRICS.error();
+                return ExitResult.failed(ParkingError.DATABASE_ERROR);
             }
+        } finally {
+            QUOTE_METRICS.record(start);
         }
     }
 
-    public void processExitingVehicle() {
-        try{
-            String vehicleRegNumber = getVehichleRegNumber();
-            Ticket ticket = ticketDAO.getTicket(vehicleRegNumber);
-            int nbTicket = ticketDAO.getNbTicket(vehicleRegNumber);
-            Date outTime = new Date();
-            ticket.setOutTime(outTime);
-
-            if(nbTicket > 1){
-              fareCalculatorService.calculateFare(ticket, true);
-            } else {
-              fareCalculatorService.calculateFare(ticket);
-            }
-
-            if(ticketDAO.updateTicket(ticket)) {
-                ParkingSpot parkingSpot = ticket.getParkingSpot();
-                parkingSpot.setAvailable(true);
-                parkingSpotDAO.updateParking(parkingSpot);
-                System.out.println("Please pay the parking fare:" + ticket.getPrice());
-                System.out.println("Recorded out-time for vehicle number:" + ticket.getVehicleRegNumber() + " is:" + outTime);
-            }else{
-                System.out.println("Unable to update ticket information. Error occurred");
-            }
-        }catch(Exception e){
-            logger.error("Unable to process exiting vehicle",e);
+    public ParkingSpot getNextParkingSpotIfAvailable(ParkingType parkingType){
+        int parkingNumber = parkingSpotDAO.getNextAvailableSlot(parkingType);
+        if(parkingNumber > 0){
+            return new ParkingSpot(parkingNumber,parkingType, true);
         }
+        logger.error("Error fetching parking number from DB. Parking slots might be full");
+        return null;
+    }
+
+    public int getAvailableSlots(ParkingType parkingType) {
+        return parkingSpotDAO.countAvailableSlots(parkingType);
+    }
+
+    public OccupancyCounters getOccupancy() {
+        return parkingSpotDAO.getOccupancy();
+    }
+
+    /**
+     * Hourly and daily rollups of the tickets, or null when they are not loaded.
+     */
+    public TicketRollups getRollups() {
+        return ticketDAO.getRollups();
+    }
+
+    private static boolean isValidVehicleRegNumber(String vehicleRegNumber) {
+        return vehicleRegNumber != null && !vehicleRegNumber.trim().isEmpty()
+                && vehicleRegNumber.length() <= MAX_VEHICLE_REG_NUMBER_LENGTH;
     }
 }
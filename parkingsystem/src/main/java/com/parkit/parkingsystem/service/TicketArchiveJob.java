@@ -0,0 +1,225 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves the tickets closed before a retention window out of the ticket table, into one
+ * ticket_archive_&lt;yyyyMM&gt; table per month of their OUT_TIME, so that the ticket table only keeps
+ * the open and recent tickets and its indexes stay small.
+ *
+ * Tickets are moved in batches of batchSize, each in its own transaction, with a pause of pauseMillis
+ * between batches so that the gates are not held up by long locks. Visit counts served from
+ * vehicle_visit are not changed; the visits moved are added to vehicle_archived_visit, which
+ * REBUILD_VISIT_COUNTS adds back.
+ *
+ * Only the tickets TicketExportJob has exported are archived: those up to its watermark, and below
+ * the tickets it may have missed while they were being saved, that are not waiting in
+ * ticket_export_pending to be exported again.
+ */
+public class TicketArchiveJob {
+
+    private static final Logger logger = LogManager.getLogger("TicketArchiveJob");
+
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private final DataBaseConfig dataBaseConfig;
+    private final int batchSize;
+    private final long pauseMillis;
+
+    private volatile boolean stopRequested;
+    private long archivedCount;
+    //archive tables known to exist, so that each is only created once per run
+    private final Set<String> archiveMonths = new HashSet<>();
+
+    //one batch, reused between batches
+    private final int[] ids;
+    private final int[] parkingNumbers;
+    private final String[] vehicleRegNumbers;
+    private final double[] prices;
+    private final Timestamp[] inTimes;
+    private final Timestamp[] outTimes;
+
+    public TicketArchiveJob(DataBaseConfig dataBaseConfig, int batchSize, long pauseMillis) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.dataBaseConfig = dataBaseConfig;
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+        this.ids = new int[batchSize];
+        this.parkingNumbers = new int[batchSize];
+        this.vehicleRegNumbers = new String[batchSize];
+        this.prices = new double[batchSize];
+        this.inTimes = new Timestamp[batchSize];
+        this.outTimes = new Timestamp[batchSize];
+    }
+
+    /**
+     * Archives the tickets closed before the given time and exported, with an ID up to exportedUpToId,
+     * and returns true, or false when stopped before the end.
+     */
+    public boolean run(Timestamp closedBefore, long exportedUpToId) throws Exception {
+        stopRequested = false;
+        archivedCount = 0;
+        long startNanos = System.nanoTime();
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            int size;
+            while ((size = archiveBatch(con, closedBefore, exportedUpToId)) > 0) {
+                archivedCount += size;
+                logger.debug("Archived " + archivedCount + " tickets");
+                if (stopRequested) {
+                    logger.info("Archiving stopped after " + archivedCount + " tickets");
+                    return false;
+                }
+                if (size < batchSize) {
+                    break;
+                }
+                if (pauseMillis > 0) {
+                    Thread.sleep(pauseMillis);
+                }
+            }
+            logger.info(String.format("Archived %d tickets closed before %s and exported up to ID %d in %d ms", archivedCount, closedBefore, exportedUpToId,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)));
+            return true;
+        } finally {
+            dataBaseConfig.rollback(con);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    public void stop() {
+        stopRequested = true;
+    }
+
+    public long getArchivedCount() {
+        return archivedCount;
+    }
+
+    private int archiveBatch(Connection con, Timestamp closedBefore, long exportedUpToId) throws SQLException {
+        int size = 0;
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKETS_TO_ARCHIVE)) {
+            ps.setTimestamp(1, closedBefore);
+            ps.setLong(2, exportedUpToId);
+            ps.setInt(3, batchSize);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ids[size] = rs.getInt(1);
+                    parkingNumbers[size] = rs.getInt(2);
+                    vehicleRegNumbers[size] = rs.getString(3);
+                    prices[size] = rs.getDouble(4);
+                    inTimes[size] = rs.getTimestamp(5);
+                    outTimes[size] = rs.getTimestamp(6);
+                    size++;
+                }
+            }
+        }
+        if (size == 0) {
+            return 0;
+        }
+        try {
+            Map<String, PreparedStatement> inserts = new HashMap<>();
+            Map<String, Integer> visits = new HashMap<>();
+            try {
+                for (int i = 0; i < size; i++) {
+                    String month = outTimes[i].toLocalDateTime().format(MONTH_FORMAT);
+                    PreparedStatement insert = inserts.get(month);
+                    if (insert == null) {
+                        createArchiveTable(con, month);
+                        insert = con.prepareStatement(String.format(DBConstants.ARCHIVE_TICKET, month));
+                        inserts.put(month, insert);
+                    }
+                    insert.setInt(1, ids[i]);
+                    insert.setInt(2, parkingNumbers[i]);
+                    insert.setString(3, vehicleRegNumbers[i]);
+                    insert.setDouble(4, prices[i]);
+                    insert.setTimestamp(5, inTimes[i]);
+                    insert.setTimestamp(6, outTimes[i]);
+                    insert.addBatch();
+                    visits.merge(vehicleRegNumbers[i], 1, Integer::sum);
+                }
+                for (PreparedStatement insert : inserts.values()) {
+                    insert.executeBatch();
+                }
+            } finally {
+                for (PreparedStatement insert : inserts.values()) {
+                    insert.close();
+                }
+            }
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.INCREMENT_ARCHIVED_VISITS)) {
+                for (Map.Entry<String, Integer> visit : visits.entrySet()) {
+                    ps.setString(1, visit.getKey());
+                    ps.setInt(2, visit.getValue());
+                    ps.setInt(3, visit.getValue());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.DELETE_TICKET)) {
+                for (int i = 0; i < size; i++) {
+                    ps.setInt(1, ids[i]);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            con.commit();
+        } catch (SQLException e) {
+            dataBaseConfig.rollback(con);
+            throw e;
+        }
+        return size;
+    }
+
+    private void createArchiveTable(Connection con, String month) throws SQLException {
+        if (archiveMonths.contains(month)) {
+            return;
+        }
+        try (Statement statement = con.createStatement()) {
+            //DDL commits in MySQL, the table is created before the batch moved into it
+            statement.execute(String.format(DBConstants.CREATE_TICKET_ARCHIVE, month));
+        }
+        archiveMonths.add(month);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int retentionDays = args.length > 0 ? Integer.parseInt(args[0]) : 90;
+        long exportedUpToId = TicketExportJob.readExportedUpToId(Paths.get(System.getProperty("parkit.archive.exportDirectory", "export")));
+        TicketArchiveJob job = new TicketArchiveJob(new DataBaseConfig(),
+                Integer.getInteger("parkit.archive.batchSize", 1000),
+                Long.getLong("parkit.archive.pauseMillis", 100));
+        //Ctrl+C finishes the current batch
+        Thread mainThread = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            job.stop();
+            try {
+                mainThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        try {
+            job.run(new Timestamp(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays)), exportedUpToId);
+        } finally {
+            DataBaseConfig.closeConnectionPool();
+        }
+    }
+}
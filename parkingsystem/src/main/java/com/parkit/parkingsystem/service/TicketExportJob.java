@@ -0,0 +1,585 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Copies the closed tickets, with the type of their spot, to gzip compressed columnar files for the
+ * analytics, so that they stop querying the ticket table.
+ *
+ * Tickets are streamed by increasing ID with a forward-only cursor and buffered one row group at a
+ * time in primitive arrays, so memory does not grow with the table. Each run first exports the closed
+ * tickets after the ID of the last ticket it went past, a watermark saved in the export directory
+ * after each file, from which the next run (or an interrupted one) resumes. Tickets still open when
+ * the export goes past them are marked in ticket_export_pending instead, before the watermark moves;
+ * TicketRepricingJob marks the tickets it changes there too. The run then exports the marked tickets
+ * that are closed to updates files and clears their marks, unless they were marked again meanwhile.
+ *
+ * IDs are given at insert but the rows only show once committed, so a ticket still being saved can
+ * be missing when the export goes past a higher ID. The IDs skipped that way are kept with the
+ * watermark as holes: each run marks the tickets that appeared in them since, and forgets the holes
+ * older than holeTimeoutMillis, longer than any insert takes to commit (the others were rolled back).
+ * readExportedUpToId, the bound of TicketArchiveJob, stays below the first hole.
+ *
+ * New tickets go to files named tickets-&lt;first ID&gt;.tcol.gz, marked ones to updates-&lt;epoch millis&gt;.tcol.gz.
+ * A ticket can be in several files: its row in the updates file with the highest number replaces the
+ * others.
+ *
+ * A file holds, once uncompressed, the int magic TCOL, the int format
+ * version, then row groups each made of the int number of rows n followed by n values of each column:
+ * ID (int, delta from the previous ID of the group, the first from 0), PARKING_NUMBER (int),
+ * TYPE (byte, ParkingType ordinal), VEHICLE_REG_NUMBER (modified UTF-8), PRICE (long, cents),
+ * IN_TIME (long, epoch millis, delta from the previous one of the group, the first from 0) and
+ * OUT_TIME (long, millis after IN_TIME). A row group of 0 rows ends the file.
+ */
+public class TicketExportJob {
+
+    private static final Logger logger = LogManager.getLogger("TicketExportJob");
+
+    private static final int MAGIC = 0x54434f4c;
+    private static final int FORMAT_VERSION = 1;
+    private static final String WATERMARK_FILE = "watermark.properties";
+    private static final long DEFAULT_HOLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+
+    private final DataBaseConfig dataBaseConfig;
+    private final Path exportDirectory;
+    private final int fetchSize;
+    private final int rowsPerFile;
+    private final long holeTimeoutMillis;
+
+    private volatile boolean stopRequested;
+    private long exportedCount;
+    private long lastId;
+    //highest ID read by the current run, open tickets included
+    private long scannedId;
+    private long lastUpdatesFile;
+    //IDs skipped by the scans, in increasing order
+    private final List<Hole> holes = new ArrayList<>();
+    //open tickets read since the last watermark, to mark before it moves past them
+    private final List<Integer> openIds = new ArrayList<>();
+    //marks of the tickets written to the current updates file
+    private final List<Integer> markIds = new ArrayList<>();
+    private final List<Integer> markVersions = new ArrayList<>();
+
+    //one row group, reused between groups
+    private final int[] ids;
+    private final int[] parkingNumbers;
+    private final byte[] parkingTypes;
+    private final String[] vehicleRegNumbers;
+    private final long[] prices;
+    private final long[] inTimes;
+    private final long[] outTimes;
+    private final int[] versions;
+
+    /**
+     * IDs from..to missing from a scan when it read a higher one at seenAt.
+     */
+    private static final class Hole {
+        private final int from;
+        private final int to;
+        private final long seenAt;
+
+        private Hole(int from, int to, long seenAt) {
+            this.from = from;
+            this.to = to;
+            this.seenAt = seenAt;
+        }
+    }
+
+    public TicketExportJob(DataBaseConfig dataBaseConfig, Path exportDirectory, int rowGroupSize, int fetchSize, int rowsPerFile) {
+        this(dataBaseConfig, exportDirectory, rowGroupSize, fetchSize, rowsPerFile, DEFAULT_HOLE_TIMEOUT_MILLIS);
+    }
+
+    public TicketExportJob(DataBaseConfig dataBaseConfig, Path exportDirectory, int rowGroupSize, int fetchSize, int rowsPerFile,
+                           long holeTimeoutMillis) {
+        if (rowGroupSize <= 0 || rowsPerFile <= 0) {
+            throw new IllegalArgumentException("Row group size and rows per file must be positive");
+        }
+        this.dataBaseConfig = dataBaseConfig;
+        this.exportDirectory = exportDirectory;
+        this.fetchSize = fetchSize;
+        this.rowsPerFile = rowsPerFile;
+        this.holeTimeoutMillis = holeTimeoutMillis;
+        this.ids = new int[rowGroupSize];
+        this.parkingNumbers = new int[rowGroupSize];
+        this.parkingTypes = new byte[rowGroupSize];
+        this.vehicleRegNumbers = new String[rowGroupSize];
+        this.prices = new long[rowGroupSize];
+        this.inTimes = new long[rowGroupSize];
+        this.outTimes = new long[rowGroupSize];
+        this.versions = new int[rowGroupSize];
+    }
+
+    /**
+     * Exports the tickets closed or changed since the last run and returns true, or false when stopped before the end.
+     */
+    public boolean run() throws Exception {
+        stopRequested = false;
+        long startNanos = System.nanoTime();
+        exportedCount = 0;
+        Files.createDirectories(exportDirectory);
+        Properties watermark = loadWatermark(exportDirectory);
+        lastId = Long.parseLong(watermark.getProperty("lastId", "0"));
+        scannedId = lastId;
+        openIds.clear();
+        holes.clear();
+        holes.addAll(parseHoles(watermark.getProperty("holes", "")));
+        Connection con = null;
+        Connection markCon = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            //marks are written while the cursor is open, so they use their own connection
+            markCon = dataBaseConfig.getConnection();
+            checkHoles(con, markCon);
+            if (!exportNewTickets(con, markCon) || !exportMarkedTickets(con, markCon)) {
+                return false;
+            }
+            logger.info(String.format("Exported %d tickets up to ID %d in %d ms", exportedCount, lastId,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)));
+            return true;
+        } finally {
+            dataBaseConfig.closeConnection(markCon);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    public void stop() {
+        stopRequested = true;
+    }
+
+    public long getExportedCount() {
+        return exportedCount;
+    }
+
+    public long getLastId() {
+        return lastId;
+    }
+
+    private boolean exportNewTickets(Connection con, Connection markCon) throws Exception {
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKETS_TO_EXPORT,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(fetchSize);
+            ps.setLong(1, lastId);
+            try (ResultSet rs = ps.executeQuery()) {
+                ExportFile file = null;
+                try {
+                    int size;
+                    while ((size = readRowGroup(rs, false)) > 0) {
+                        if (file == null) {
+                            file = new ExportFile(exportDirectory.resolve("tickets-" + ids[0] + ".tcol.gz"));
+                        }
+                        file.writeRowGroup(size);
+                        //a stop request ends the current file early
+                        if (file.rows >= rowsPerFile || stopRequested) {
+                            finish(file);
+                            moveWatermark(markCon, file.lastId);
+                            file = null;
+                            if (stopRequested) {
+                                logger.info("Export stopped after ticket " + lastId);
+                                return false;
+                            }
+                        }
+                    }
+                    if (file != null) {
+                        finish(file);
+                        file = null;
+                    }
+                } finally {
+                    if (file != null) {
+                        file.abort();
+                    }
+                }
+            }
+        }
+        //past the last closed ticket, up to the open ones read after it
+        moveWatermark(markCon, scannedId);
+        return true;
+    }
+
+    /**
+     * Marks the tickets committed in the holes since the last run, exported with the other marked
+     * tickets once closed, and forgets the timed out holes.
+     */
+    private void checkHoles(Connection con, Connection markCon) throws SQLException, IOException {
+        if (holes.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<Hole> remaining = new ArrayList<>();
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKET_IDS_BETWEEN);
+             PreparedStatement markPs = markCon.prepareStatement(DBConstants.MARK_TICKET_FOR_EXPORT)) {
+            for (Hole hole : holes) {
+                int next = hole.from;
+                ps.setInt(1, hole.from);
+                ps.setInt(2, hole.to);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        int id = rs.getInt(1);
+                        markPs.setInt(1, id);
+                        markPs.addBatch();
+                        if (id > next) {
+                            remaining.add(new Hole(next, id - 1, hole.seenAt));
+                        }
+                        next = id + 1;
+                    }
+                }
+                if (next <= hole.to) {
+                    remaining.add(new Hole(next, hole.to, hole.seenAt));
+                }
+            }
+            markPs.executeBatch();
+        }
+        holes.clear();
+        for (Hole hole : remaining) {
+            if (now - hole.seenAt < holeTimeoutMillis) {
+                holes.add(hole);
+            } else {
+                logger.debug("Forgetting tickets " + hole.from + " to " + hole.to + ", never committed");
+            }
+        }
+        writeWatermark(lastId);
+    }
+
+    private boolean exportMarkedTickets(Connection con, Connection markCon) throws Exception {
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_PENDING_TICKETS_TO_EXPORT,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(fetchSize);
+            try (ResultSet rs = ps.executeQuery()) {
+                ExportFile file = null;
+                try {
+                    int size;
+                    while ((size = readRowGroup(rs, true)) > 0) {
+                        if (file == null) {
+                            lastUpdatesFile = Math.max(System.currentTimeMillis(), lastUpdatesFile + 1);
+                            file = new ExportFile(exportDirectory.resolve("updates-" + lastUpdatesFile + ".tcol.gz"));
+                        }
+                        file.writeRowGroup(size);
+                        for (int i = 0; i < size; i++) {
+                            markIds.add(ids[i]);
+                            markVersions.add(versions[i]);
+                        }
+                        if (file.rows >= rowsPerFile || stopRequested) {
+                            finish(file);
+                            clearMarks(markCon);
+                            file = null;
+                            if (stopRequested) {
+                                logger.info("Export of the updated tickets stopped");
+                                return false;
+                            }
+                        }
+                    }
+                    if (file != null) {
+                        finish(file);
+                        clearMarks(markCon);
+                        file = null;
+                    }
+                } finally {
+                    markIds.clear();
+                    markVersions.clear();
+                    if (file != null) {
+                        file.abort();
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private int readRowGroup(ResultSet rs, boolean marked) throws SQLException {
+        int size = 0;
+        while (size < ids.length && rs.next()) {
+            int id = rs.getInt(1);
+            if (!marked && id > scannedId + 1) {
+                holes.add(new Hole((int) scannedId + 1, id - 1, System.currentTimeMillis()));
+            }
+            scannedId = Math.max(scannedId, id);
+            Timestamp outTime = rs.getTimestamp(7);
+            if (outTime == null) {
+                openIds.add(id);
+                continue;
+            }
+            ids[size] = id;
+            parkingNumbers[size] = rs.getInt(2);
+            parkingTypes[size] = (byte) ParkingType.valueOf(rs.getString(3)).ordinal();
+            vehicleRegNumbers[size] = rs.getString(4);
+            prices[size] = Math.round(rs.getDouble(5) * 100);
+            inTimes[size] = rs.getTimestamp(6).getTime();
+            outTimes[size] = outTime.getTime();
+            if (marked) {
+                versions[size] = rs.getInt(8);
+            }
+            size++;
+        }
+        return size;
+    }
+
+    private void finish(ExportFile file) throws IOException {
+        file.close();
+        exportedCount += file.rows;
+        logger.info("Exported " + file.rows + " tickets to " + file.target.getFileName());
+    }
+
+    /**
+     * Marks the open tickets read so far, then saves the watermark past them.
+     */
+    private void moveWatermark(Connection markCon, long id) throws SQLException, IOException {
+        if (!openIds.isEmpty()) {
+            try (PreparedStatement ps = markCon.prepareStatement(DBConstants.MARK_TICKET_FOR_EXPORT)) {
+                for (int openId : openIds) {
+                    ps.setInt(1, openId);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            openIds.clear();
+        }
+        if (id > lastId) {
+            lastId = id;
+            writeWatermark(lastId);
+        }
+    }
+
+    private void clearMarks(Connection markCon) throws SQLException {
+        try (PreparedStatement ps = markCon.prepareStatement(DBConstants.CLEAR_TICKET_EXPORT_MARK)) {
+            for (int i = 0; i < markIds.size(); i++) {
+                ps.setInt(1, markIds.get(i));
+                ps.setInt(2, markVersions.get(i));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        markIds.clear();
+        markVersions.clear();
+    }
+
+    /**
+     * ID up to which every ticket was exported or marked by the export in that directory: the last one
+     * it went past, or the one before its first hole. 0 before the first export.
+     */
+    public static long readExportedUpToId(Path exportDirectory) throws IOException {
+        Properties watermark = loadWatermark(exportDirectory);
+        long exportedUpToId = Long.parseLong(watermark.getProperty("lastId", "0"));
+        for (Hole hole : parseHoles(watermark.getProperty("holes", ""))) {
+            exportedUpToId = Math.min(exportedUpToId, hole.from - 1);
+        }
+        return exportedUpToId;
+    }
+
+    private static Properties loadWatermark(Path exportDirectory) throws IOException {
+        Properties watermark = new Properties();
+        Path watermarkFile = exportDirectory.resolve(WATERMARK_FILE);
+        if (Files.exists(watermarkFile)) {
+            try (InputStream in = Files.newInputStream(watermarkFile)) {
+                watermark.load(in);
+            }
+        }
+        return watermark;
+    }
+
+    /**
+     * Reads holes written as from-to@seenAt, separated by commas.
+     */
+    private static List<Hole> parseHoles(String value) {
+        List<Hole> parsed = new ArrayList<>();
+        for (String hole : value.split(",")) {
+            if (hole.isEmpty()) {
+                continue;
+            }
+            int dash = hole.indexOf('-');
+            int at = hole.indexOf('@');
+            parsed.add(new Hole(Integer.parseInt(hole.substring(0, dash)), Integer.parseInt(hole.substring(dash + 1, at)),
+                    Long.parseLong(hole.substring(at + 1))));
+        }
+        return parsed;
+    }
+
+    private void writeWatermark(long id) throws IOException {
+        Properties watermark = new Properties();
+        watermark.setProperty("lastId", String.valueOf(id));
+        //holes past the watermark are scanned again by the next run
+        StringBuilder savedHoles = new StringBuilder();
+        for (Hole hole : holes) {
+            if (hole.from <= id) {
+                if (savedHoles.length() > 0) {
+                    savedHoles.append(',');
+                }
+                savedHoles.append(hole.from).append('-').append(Math.min(hole.to, id)).append('@').append(hole.seenAt);
+            }
+        }
+        watermark.setProperty("holes", savedHoles.toString());
+        Path watermarkFile = exportDirectory.resolve(WATERMARK_FILE);
+        Path tmp = watermarkFile.resolveSibling(WATERMARK_FILE + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            watermark.store(out, "Last ticket exported or marked");
+        }
+        Files.move(tmp, watermarkFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * File being written, under a temporary name until it is complete and on disk.
+     */
+    private class ExportFile {
+        private final Path target;
+        private final Path tmp;
+        private final DataOutputStream out;
+        private int rows;
+        private long lastId;
+
+        private ExportFile(Path target) throws IOException {
+            this.target = target;
+            this.tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            this.out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(tmp), 1 << 16), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+        }
+
+        private void writeRowGroup(int size) throws IOException {
+            out.writeInt(size);
+            int previousId = 0;
+            for (int i = 0; i < size; i++) {
+                out.writeInt(ids[i] - previousId);
+                previousId = ids[i];
+            }
+            for (int i = 0; i < size; i++) {
+                out.writeInt(parkingNumbers[i]);
+            }
+            out.write(parkingTypes, 0, size);
+            for (int i = 0; i < size; i++) {
+                out.writeUTF(vehicleRegNumbers[i]);
+            }
+            for (int i = 0; i < size; i++) {
+                out.writeLong(prices[i]);
+            }
+            long previousInTime = 0;
+            for (int i = 0; i < size; i++) {
+                out.writeLong(inTimes[i] - previousInTime);
+                previousInTime = inTimes[i];
+            }
+            for (int i = 0; i < size; i++) {
+                out.writeLong(outTimes[i] - inTimes[i]);
+            }
+            rows += size;
+            lastId = ids[size - 1];
+        }
+
+        private void close() throws IOException {
+            out.writeInt(0);
+            out.close();
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private void abort() {
+            try {
+                out.close();
+                Files.deleteIfExists(tmp);
+            } catch (IOException e) {
+                logger.error("Error removing " + tmp, e);
+            }
+        }
+    }
+
+    /**
+     * Reads back the tickets of an export file, in ID order.
+     */
+    public static void readFile(Path file, Consumer<Ticket> consumer) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file), 1 << 16), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Not a ticket export file:" + file);
+            }
+            int size;
+            while ((size = in.readInt()) > 0) {
+                Ticket[] tickets = new Ticket[size];
+                int id = 0;
+                for (int i = 0; i < size; i++) {
+                    id += in.readInt();
+                    tickets[i] = new Ticket();
+                    tickets[i].setId(id);
+                }
+                int[] parkingNumbers = new int[size];
+                for (int i = 0; i < size; i++) {
+                    parkingNumbers[i] = in.readInt();
+                }
+                for (int i = 0; i < size; i++) {
+                    tickets[i].setParkingSpot(new ParkingSpot(parkingNumbers[i], PARKING_TYPES[in.readByte()], false));
+                }
+                for (int i = 0; i < size; i++) {
+                    tickets[i].setVehicleRegNumber(in.readUTF());
+                }
+                for (int i = 0; i < size; i++) {
+                    tickets[i].setPrice(in.readLong() / 100.0);
+                }
+                long inTime = 0;
+                for (int i = 0; i < size; i++) {
+                    inTime += in.readLong();
+                    tickets[i].setInTime(new Date(inTime));
+                }
+                for (int i = 0; i < size; i++) {
+                    tickets[i].setOutTime(new Date(tickets[i].getInTime().getTime() + in.readLong()));
+                }
+                for (Ticket ticket : tickets) {
+                    consumer.accept(ticket);
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path exportDirectory = Paths.get(args.length > 0 ? args[0] : "export");
+        TicketExportJob job = new TicketExportJob(new DataBaseConfig(), exportDirectory,
+                Integer.getInteger("parkit.export.rowGroupSize", 10000),
+                Integer.getInteger("parkit.export.fetchSize", 1000),
+                Integer.getInteger("parkit.export.rowsPerFile", 1000000),
+                Long.getLong("parkit.export.holeTimeoutMillis", DEFAULT_HOLE_TIMEOUT_MILLIS));
+        //Ctrl+C finishes the current file and keeps the watermark
+        Thread mainThread = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            job.stop();
+            try {
+                mainThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        try {
+            job.run();
+        } finally {
+            DataBaseConfig.closeConnectionPool();
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.TariffConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketRollups;
+import com.parkit.parkingsystem.model.Tariff;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recomputes the price of every ticket closed in [from, to) with the current fare rules.
+ * Tickets are streamed by increasing ID with a forward-only cursor, priced in parallel chunk by chunk
+ * and only the tickets whose price changed are written back, in one batch per chunk, and marked
+ * in the same transaction for TicketExportJob to export them again. The price differences are added to
+ * the revenue of the ticket_rollup buckets in that transaction too, unless the table is not backfilled yet.
+ * The visits of a vehicle before a ticket are its archived visits and its tickets with a lower ID.
+ * The last committed ID is saved in a checkpoint file after each chunk so an interrupted run resumes there.
+ */
+public class TicketRepricingJob {
+
+    private static final Logger logger = LogManager.getLogger("TicketRepricingJob");
+
+    private static final int PRICING_THRESHOLD = 1024;
+    private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+
+    private final DataBaseConfig dataBaseConfig;
+    private final Path checkpointFile;
+    private final int chunkSize;
+    private final int fetchSize;
+    private final ForkJoinPool forkJoinPool;
+
+    private final AtomicLong processedCount = new AtomicLong();
+    private final AtomicLong updatedCount = new AtomicLong();
+    private final AtomicLong lastId = new AtomicLong();
+    private volatile boolean stopRequested;
+    private volatile long startNanos;
+
+    //one chunk of tickets, kept in primitive arrays and reused between chunks
+    private final int[] ids;
+    private final long[] inTimes;
+    private final long[] outTimes;
+    private final byte[] parkingTypes;
+    private final int[] previousVisits;
+    private final long[] oldPrices;
+    private final long[] newPrices;
+    //a chunk is priced with a single tariff even if it is reloaded meanwhile
+    private Tariff chunkTariff;
+
+    public TicketRepricingJob(DataBaseConfig dataBaseConfig, Path checkpointFile, int chunkSize, int fetchSize, ForkJoinPool forkJoinPool) {
+        this.dataBaseConfig = dataBaseConfig;
+        this.checkpointFile = checkpointFile;
+        this.chunkSize = chunkSize;
+        this.fetchSize = fetchSize;
+        this.forkJoinPool = forkJoinPool;
+        this.ids = new int[chunkSize];
+        this.inTimes = new long[chunkSize];
+        this.outTimes = new long[chunkSize];
+        this.parkingTypes = new byte[chunkSize];
+        this.previousVisits = new int[chunkSize];
+        this.oldPrices = new long[chunkSize];
+        this.newPrices = new long[chunkSize];
+    }
+
+    public boolean run(Date from, Date to) throws Exception {
+        stopRequested = false;
+        startNanos = System.nanoTime();
+        processedCount.set(0);
+        updatedCount.set(0);
+        lastId.set(readCheckpoint(from, to));
+        if (lastId.get() > 0) {
+            logger.info("Resuming repricing after ticket " + lastId.get());
+        }
+
+        Connection readCon = null;
+        Connection writeCon = null;
+        try {
+            readCon = dataBaseConfig.getConnection();
+            writeCon = dataBaseConfig.getConnection();
+            writeCon.setAutoCommit(false);
+            //an empty table is backfilled with the new prices by the next load of the rollups
+            boolean rollupsKept = countRollups(readCon) > 0;
+            //the cursor must stay open across chunk commits, so reads use their own connection
+            try (PreparedStatement readPs = readCon.prepareStatement(DBConstants.GET_CLOSED_TICKETS_TO_REPRICE,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                 PreparedStatement writePs = writeCon.prepareStatement(DBConstants.UPDATE_TICKET_PRICE);
+                 PreparedStatement markPs = writeCon.prepareStatement(DBConstants.MARK_TICKET_FOR_EXPORT);
+                 PreparedStatement rollupPs = rollupsKept ? writeCon.prepareStatement(DBConstants.ADD_TO_TICKET_ROLLUP) : null) {
+                readPs.setFetchSize(fetchSize);
+                readPs.setLong(1, lastId.get());
+                readPs.setTimestamp(2, new Timestamp(from.getTime()));
+                readPs.setTimestamp(3, new Timestamp(to.getTime()));
+                try (ResultSet rs = readPs.executeQuery()) {
+                    int size;
+                    while ((size = readChunk(rs)) > 0) {
+                        chunkTariff = TariffConfig.getTariff();
+                        forkJoinPool.invoke(new PricingTask(0, size));
+                        writeDiffs(writeCon, writePs, markPs, rollupPs, size);
+                        lastId.set(ids[size - 1]);
+                        processedCount.addAndGet(size);
+                        writeCheckpoint(from, to, lastId.get());
+                        logProgress();
+                        if (stopRequested) {
+                            logger.info("Repricing stopped after ticket " + lastId.get());
+                            return false;
+                        }
+                    }
+                }
+            }
+            logProgress();
+            Files.deleteIfExists(checkpointFile);
+            return true;
+        } finally {
+            dataBaseConfig.rollback(writeCon);
+            dataBaseConfig.closeConnection(writeCon);
+            dataBaseConfig.closeConnection(readCon);
+        }
+    }
+
+    public void stop() {
+        stopRequested = true;
+    }
+
+    public long getProcessedCount() {
+        return processedCount.get();
+    }
+
+    public long getUpdatedCount() {
+        return updatedCount.get();
+    }
+
+    public long getLastId() {
+        return lastId.get();
+    }
+
+    public double getThroughputPerSecond() {
+        long elapsed = System.nanoTime() - startNanos;
+        return elapsed <= 0 ? 0 : processedCount.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    private int readChunk(ResultSet rs) throws SQLException {
+        int size = 0;
+        while (size < chunkSize && rs.next()) {
+            ids[size] = rs.getInt(1);
+            inTimes[size] = rs.getTimestamp(2).getTime();
+            outTimes[size] = rs.getTimestamp(3).getTime();
+            oldPrices[size] = Math.round(rs.getDouble(4) * 100);
+            parkingTypes[size] = (byte) ParkingType.valueOf(rs.getString(5)).ordinal();
+            previousVisits[size] = rs.getInt(6);
+            size++;
+        }
+        return size;
+    }
+
+    private int countRollups(Connection con) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.COUNT_TICKET_ROLLUPS);
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private void writeDiffs(Connection writeCon, PreparedStatement writePs, PreparedStatement markPs, PreparedStatement rollupPs,
+                            int size) throws SQLException {
+        int diffs = 0;
+        for (int i = 0; i < size; i++) {
+            if (newPrices[i] != oldPrices[i]) {
+                writePs.setDouble(1, newPrices[i] / 100.0);
+                writePs.setInt(2, ids[i]);
+                writePs.addBatch();
+                markPs.setInt(1, ids[i]);
+                markPs.addBatch();
+                if (rollupPs != null) {
+                    for (TicketRollups.Change change : TicketRollups.getPriceChanges(PARKING_TYPES[parkingTypes[i]],
+                            new Date(outTimes[i]), newPrices[i] - oldPrices[i])) {
+                        TicketDAO.setRollupChange(rollupPs, change);
+                        rollupPs.addBatch();
+                    }
+                }
+                diffs++;
+            }
+        }
+        if (diffs > 0) {
+            writePs.executeBatch();
+            markPs.executeBatch();
+            if (rollupPs != null) {
+                rollupPs.executeBatch();
+            }
+        }
+        writeCon.commit();
+        updatedCount.addAndGet(diffs);
+    }
+
+    private void logProgress() {
+        logger.info(String.format("Repricing: %d tickets processed, %d updated, last ID %d, %.0f tickets/s",
+                processedCount.get(), updatedCount.get(), lastId.get(), getThroughputPerSecond()));
+    }
+
+    private long readCheckpoint(Date from, Date to) throws IOException {
+        if (!Files.exists(checkpointFile)) {
+            return 0;
+        }
+        Properties checkpoint = new Properties();
+        try (InputStream in = Files.newInputStream(checkpointFile)) {
+            checkpoint.load(in);
+        }
+        //a checkpoint left by a run over another range does not apply
+        if (!String.valueOf(from.getTime()).equals(checkpoint.getProperty("from"))
+                || !String.valueOf(to.getTime()).equals(checkpoint.getProperty("to"))) {
+            logger.warn("Ignoring checkpoint " + checkpointFile + " written for another date range");
+            return 0;
+        }
+        return Long.parseLong(checkpoint.getProperty("lastId", "0"));
+    }
+
+    private void writeCheckpoint(Date from, Date to, long id) throws IOException {
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty("from", String.valueOf(from.getTime()));
+        checkpoint.setProperty("to", String.valueOf(to.getTime()));
+        checkpoint.setProperty("lastId", String.valueOf(id));
+        Path tmp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            checkpoint.store(out, "Ticket repricing checkpoint");
+        }
+        Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private class PricingTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int start;
+        private final int end;
+
+        private PricingTask(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= PRICING_THRESHOLD) {
+                for (int i = start; i < end; i++) {
+                    newPrices[i] = FareEngine.calculatePriceInCents(chunkTariff, inTimes[i], outTimes[i], PARKING_TYPES[parkingTypes[i]], previousVisits[i]);
+                }
+            } else {
+                int middle = (start + end) >>> 1;
+                invokeAll(new PricingTask(start, middle), new PricingTask(middle, end));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: TicketRepricingJob <from yyyy-MM-dd> <to yyyy-MM-dd> [checkpoint file]");
+            return;
+        }
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        Date from = dateFormat.parse(args[0]);
+        Date to = dateFormat.parse(args[1]);
+        Path checkpointFile = Paths.get(args.length > 2 ? args[2] : "ticket-repricing.checkpoint");
+        TicketRepricingJob job = new TicketRepricingJob(new DataBaseConfig(), checkpointFile,
+                Integer.getInteger("parkit.repricing.chunkSize", 10000),
+                Integer.getInteger("parkit.repricing.fetchSize", 1000),
+                ForkJoinPool.commonPool());
+        //Ctrl+C finishes the current chunk and keeps the checkpoint
+        Thread mainThread = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            job.stop();
+            try {
+                mainThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        try {
+            job.run(from, to);
+        } finally {
+            DataBaseConfig.closeConnectionPool();
+        }
+    }
+}
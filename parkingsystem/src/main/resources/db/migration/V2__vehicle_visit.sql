@@ -0,0 +1,9 @@
+-- Per-vehicle visit counter, seeded from the existing ticket history
+create table if not exists vehicle_visit(
+ VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY,
+ NB_VISIT int NOT NULL);
+
+insert into vehicle_visit(VEHICLE_REG_NUMBER, NB_VISIT)
+ select t.VEHICLE_REG_NUMBER, count(*) from ticket t
+ where not exists (select 1 from vehicle_visit v where v.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER)
+ group by t.VEHICLE_REG_NUMBER;
@@ -0,0 +1,8 @@
+-- Latest ticket of a vehicle (GET_TICKET, GET_TICKET_FOR_EXIT)
+create index IDX_TICKET_VEHICLE_IN_TIME on ticket(VEHICLE_REG_NUMBER, IN_TIME desc);
+
+-- Open ticket of a vehicle, MySQL has no partial index so OUT_TIME is the second key part
+create index IDX_TICKET_VEHICLE_OUT_TIME on ticket(VEHICLE_REG_NUMBER, OUT_TIME);
+
+-- All open tickets (OUT_TIME is null) and closed tickets by date
+create index IDX_TICKET_OUT_TIME on ticket(OUT_TIME);
@@ -0,0 +1,4 @@
+-- Visits of the tickets moved to the ticket_archive_<yyyyMM> tables, so visit counts can still be rebuilt from ticket
+create table if not exists vehicle_archived_visit(
+ VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY,
+ NB_VISIT int NOT NULL);
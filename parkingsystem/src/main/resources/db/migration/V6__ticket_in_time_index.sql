@@ -0,0 +1,2 @@
+-- Whole ticket history in time order, for the backfill of the rollups (GET_TICKETS_FOR_ROLLUPS)
+create index IDX_TICKET_IN_TIME on ticket(IN_TIME);
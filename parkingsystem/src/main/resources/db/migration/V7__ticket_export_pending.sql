@@ -0,0 +1,5 @@
+-- Tickets TicketExportJob has to export again: still open when it passed them, or repriced since.
+-- VERSION is raised on each change so that an export only clears the mark of the version it wrote.
+create table if not exists ticket_export_pending(
+ TICKET_ID int PRIMARY KEY,
+ VERSION int NOT NULL);
@@ -0,0 +1,11 @@
+-- Hourly and daily totals of TicketRollups, updated with the tickets so that they are only backfilled once
+-- and keep the history of the archived tickets. PERIOD is HOUR or DAY.
+create table if not exists ticket_rollup(
+ PERIOD varchar(4) NOT NULL,
+ PERIOD_START DATETIME NOT NULL,
+ TYPE varchar(10) NOT NULL,
+ TICKET_COUNT bigint NOT NULL,
+ REVENUE_CENTS bigint NOT NULL,
+ TOTAL_DURATION_MILLIS bigint NOT NULL,
+ PEAK_OCCUPIED int NOT NULL,
+ PRIMARY KEY (PERIOD, PERIOD_START, TYPE));
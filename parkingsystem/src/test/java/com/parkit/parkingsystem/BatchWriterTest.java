@@ -0,0 +1,211 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.BatchWriter;
+import com.parkit.parkingsystem.dao.TicketRollups;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class BatchWriterTest {
+
+    private BatchWriter batchWriter;
+
+    @Mock
+    private DataBaseConfig dataBaseConfig;
+    @Mock
+    private Connection connection;
+    @Mock
+    private PreparedStatement saveTicketStatement;
+    @Mock
+    private ResultSet generatedKeys;
+    @Mock
+    private PreparedStatement incrementVisitStatement;
+    @Mock
+    private PreparedStatement updateTicketStatement;
+    @Mock
+    private PreparedStatement updateParkingStatement;
+    @Mock
+    private PreparedStatement rollupStatement;
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        lenient().when(connection.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS)).thenReturn(saveTicketStatement);
+        lenient().when(saveTicketStatement.getGeneratedKeys()).thenReturn(generatedKeys);
+        lenient().when(connection.prepareStatement(DBConstants.INCREMENT_VISIT)).thenReturn(incrementVisitStatement);
+        lenient().when(connection.prepareStatement(DBConstants.UPDATE_TICKET)).thenReturn(updateTicketStatement);
+        lenient().when(connection.prepareStatement(DBConstants.UPDATE_PARKING_SPOT)).thenReturn(updateParkingStatement);
+        lenient().when(connection.prepareStatement(DBConstants.ADD_TO_TICKET_ROLLUP)).thenReturn(rollupStatement);
+    }
+
+    @AfterEach
+    private void tearDown() {
+        batchWriter.close();
+    }
+
+    private static Ticket ticket() {
+        Ticket ticket = new Ticket();
+        ticket.setId(1);
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setInTime(new Date(System.currentTimeMillis() - (60 * 60 * 1000)));
+        ticket.setOutTime(new Date());
+        return ticket;
+    }
+
+    @Test
+    @DisplayName("Flush ticket and parking writes as batches in a single transaction")
+    public void flushWritesInOneTransaction() throws Exception {
+        //GIVEN
+        batchWriter = new BatchWriter(dataBaseConfig, 3, 10000);
+        when(saveTicketStatement.executeBatch()).thenReturn(new int[]{1});
+        when(updateTicketStatement.executeBatch()).thenReturn(new int[]{1});
+        when(updateParkingStatement.executeBatch()).thenReturn(new int[]{1});
+
+        //WHEN
+        CompletableFuture<Boolean> saved = batchWriter.saveTicket(ticket());
+        CompletableFuture<Boolean> updated = batchWriter.updateTicket(ticket());
+        CompletableFuture<Boolean> parked = batchWriter.updateParking(new ParkingSpot(1, ParkingType.CAR, true));
+
+        //THEN
+        assertTrue(saved.get(5, TimeUnit.SECONDS));
+        assertTrue(updated.get(5, TimeUnit.SECONDS));
+        assertTrue(parked.get(5, TimeUnit.SECONDS));
+        verify(dataBaseConfig, times(1)).getConnection();
+        verify(connection, times(1)).setAutoCommit(false);
+        verify(connection, times(1)).commit();
+        verify(saveTicketStatement, times(1)).addBatch();
+        verify(incrementVisitStatement, times(1)).addBatch();
+        verify(updateTicketStatement, times(1)).addBatch();
+        verify(updateParkingStatement, times(1)).addBatch();
+    }
+
+    @Test
+    @DisplayName("Flush a partial batch once the flush window has elapsed")
+    public void flushPartialBatchAfterWindow() throws Exception {
+        //GIVEN
+        batchWriter = new BatchWriter(dataBaseConfig, 100, 20);
+        when(updateParkingStatement.executeBatch()).thenReturn(new int[]{1});
+
+        //WHEN
+        CompletableFuture<Boolean> parked = batchWriter.updateParking(new ParkingSpot(1, ParkingType.CAR, true));
+
+        //THEN
+        assertTrue(parked.get(5, TimeUnit.SECONDS));
+        verify(connection, times(1)).commit();
+    }
+
+    @Test
+    @DisplayName("Roll back and acknowledge a failure to every writer of a failed batch")
+    public void rollbackFailedBatch() throws Exception {
+        //GIVEN
+        batchWriter = new BatchWriter(dataBaseConfig, 2, 10000);
+        when(saveTicketStatement.executeBatch()).thenThrow(new SQLException("Deadlock"));
+
+        //WHEN
+        CompletableFuture<Boolean> saved = batchWriter.saveTicket(ticket());
+        CompletableFuture<Boolean> parked = batchWriter.updateParking(new ParkingSpot(1, ParkingType.CAR, true));
+
+        //THEN
+        assertFalse(saved.get(5, TimeUnit.SECONDS));
+        assertFalse(parked.get(5, TimeUnit.SECONDS));
+        verify(dataBaseConfig, times(1)).rollback(connection);
+        verify(connection, times(0)).commit();
+    }
+
+    @Test
+    @DisplayName("Acknowledge a failure for a ticket closed by another exit")
+    public void rejectTicketAlreadyClosed() throws Exception {
+        //GIVEN
+        batchWriter = new BatchWriter(dataBaseConfig, 2, 10000);
+        when(updateTicketStatement.executeBatch()).thenReturn(new int[]{1, 0});
+
+        //WHEN
+        CompletableFuture<Boolean> first = batchWriter.updateTicket(ticket());
+        CompletableFuture<Boolean> second = batchWriter.updateTicket(ticket());
+
+        //THEN
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertFalse(second.get(5, TimeUnit.SECONDS));
+        verify(connection, times(1)).commit();
+    }
+
+    @Test
+    @DisplayName("Write the rollup changes of the tickets closed in the batch only")
+    public void writeRollupChangesOfClosedTickets() throws Exception {
+        //GIVEN
+        batchWriter = new BatchWriter(dataBaseConfig, 2, 10000);
+        when(updateTicketStatement.executeBatch()).thenReturn(new int[]{1, 0});
+        Ticket ticket = ticket();
+        List<TicketRollups.Change> changes = new TicketRollups().vehicleExited(ParkingType.CAR, ticket.getInTime(), ticket.getOutTime(), 1.5);
+
+        //WHEN
+        CompletableFuture<Boolean> first = batchWriter.updateTicket(ticket, changes);
+        CompletableFuture<Boolean> second = batchWriter.updateTicket(ticket(), changes);
+
+        //THEN
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertFalse(second.get(5, TimeUnit.SECONDS));
+        //the hour and the day of the first ticket
+        verify(rollupStatement, times(2)).addBatch();
+        verify(rollupStatement, times(1)).executeBatch();
+        verify(connection, times(1)).commit();
+    }
+
+    @Test
+    @DisplayName("Complete every write queued while the writer is closed")
+    public void completeWritesRacingWithClose() throws Exception {
+        //GIVEN
+        batchWriter = new BatchWriter(dataBaseConfig, 4, 1);
+        lenient().when(updateParkingStatement.executeBatch()).thenReturn(new int[]{1, 1, 1, 1});
+        List<CompletableFuture<Boolean>> writes = new CopyOnWriteArrayList<>();
+        ExecutorService writers = Executors.newFixedThreadPool(4);
+        CountDownLatch started = new CountDownLatch(4);
+        for (int i = 0; i < 4; i++) {
+            writers.execute(() -> {
+                started.countDown();
+                for (int j = 0; j < 200; j++) {
+                    writes.add(batchWriter.updateParking(new ParkingSpot(1, ParkingType.CAR, true)));
+                }
+            });
+        }
+
+        //WHEN
+        started.await();
+        batchWriter.close();
+        writers.shutdown();
+        assertTrue(writers.awaitTermination(5, TimeUnit.SECONDS));
+
+        //THEN
+        for (CompletableFuture<Boolean> write : writes) {
+            assertTrue(write.isDone());
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.ConnectionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ConnectionPoolTest {
+
+    private ConnectionPool connectionPool;
+
+    @AfterEach
+    private void tearDown() {
+        if (connectionPool != null) {
+            connectionPool.close();
+        }
+    }
+
+    private static Connection validConnection() throws SQLException {
+        Connection connection = mock(Connection.class);
+        lenient().when(connection.isValid(anyInt())).thenReturn(true);
+        lenient().when(connection.getAutoCommit()).thenReturn(true);
+        return connection;
+    }
+
+    @Test
+    @DisplayName("Reuse a released connection instead of creating a new one")
+    public void borrowReusesReleasedConnection() throws Exception {
+        //GIVEN
+        Connection connection = validConnection();
+        ConnectionPool.ConnectionFactory factory = mock(ConnectionPool.ConnectionFactory.class);
+        when(factory.create()).thenReturn(connection);
+        connectionPool = ConnectionPool.create(factory, 2, 60000, 1000);
+
+        //WHEN
+        Connection first = connectionPool.borrow();
+        connectionPool.release(first);
+        Connection second = connectionPool.borrow();
+
+        //THEN
+        assertSame(first, second);
+        verify(factory, times(1)).create();
+        assertEquals(1, connectionPool.getActiveCount());
+        assertEquals(0, connectionPool.getIdleCount());
+        assertEquals(2, connectionPool.getBorrowCount());
+    }
+
+    @Test
+    @DisplayName("Replace an idle connection that fails validation on borrow")
+    public void borrowDiscardsInvalidConnection() throws Exception {
+        //GIVEN
+        Connection broken = validConnection();
+        Connection fresh = validConnection();
+        ConnectionPool.ConnectionFactory factory = mock(ConnectionPool.ConnectionFactory.class);
+        when(factory.create()).thenReturn(broken, fresh);
+        connectionPool = ConnectionPool.create(factory, 1, 60000, 1000);
+        connectionPool.release(connectionPool.borrow());
+        when(broken.isValid(anyInt())).thenReturn(false);
+
+        //WHEN
+        Connection connection = connectionPool.borrow();
+
+        //THEN
+        assertSame(fresh, connection);
+        verify(broken, times(1)).close();
+        assertEquals(1, connectionPool.getEvictedCount());
+    }
+
+    @Test
+    @DisplayName("Fail to borrow when every connection of the pool is in use")
+    public void borrowTimesOutWhenPoolIsExhausted() throws Exception {
+        //GIVEN
+        Connection connection = validConnection();
+        ConnectionPool.ConnectionFactory factory = mock(ConnectionPool.ConnectionFactory.class);
+        when(factory.create()).thenReturn(connection);
+        connectionPool = ConnectionPool.create(factory, 1, 60000, 50);
+        connectionPool.borrow();
+
+        //THEN
+        assertThrows(SQLException.class, () -> connectionPool.borrow());
+        assertEquals(1, connectionPool.getActiveCount());
+    }
+
+    @Test
+    @DisplayName("Close a released connection that was not borrowed from the pool")
+    public void releaseClosesUnknownConnection() throws Exception {
+        //GIVEN
+        Connection pooled = validConnection();
+        Connection unknown = validConnection();
+        ConnectionPool.ConnectionFactory factory = mock(ConnectionPool.ConnectionFactory.class);
+        when(factory.create()).thenReturn(pooled);
+        connectionPool = ConnectionPool.create(factory, 1, 60000, 50);
+        connectionPool.release(connectionPool.borrow());
+
+        //WHEN
+        connectionPool.release(unknown);
+        connectionPool.release(pooled);
+
+        //THEN
+        verify(unknown, times(1)).close();
+        verify(pooled, never()).close();
+        assertEquals(1, connectionPool.getIdleCount());
+        assertSame(pooled, connectionPool.borrow());
+        assertThrows(SQLException.class, () -> connectionPool.borrow());
+    }
+}
@@ -1,5 +1,6 @@
 package com.parkit.parkingsystem;
 
+import com.parkit.parkingsystem.config.TariffConfig;
 import com.parkit.parkingsystem.constants.Fare;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.model.ParkingSpot;
@@ -13,6 +14,7 @@ import org.junit.jupiter.api.DisplayName;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.util.Date;
+import java.util.Properties;
 
 public class FareCalculatorServiceTest {
 
@@ -137,8 +139,8 @@ public class FareCalculatorServiceTest {
         ticket.setParkingSpot(parkingSpot);
         fareCalculatorService.calculateFare(ticket);
 
-        //THEN should give 3/4th parking fare
-        assertEquals( (0.75 * Fare.CAR_RATE_PER_HOUR) , ticket.getPrice());
+        //THEN should give 3/4th parking fare rounded to the cent
+        assertEquals( 1.13 , ticket.getPrice());
     }
 
     @Test
@@ -213,8 +215,8 @@ public class FareCalculatorServiceTest {
         ticket.setParkingSpot(parkingSpot);
         fareCalculatorService.calculateFare(ticket, true);
 
-        //THEN
-        assertEquals((0.95 * Fare.CAR_RATE_PER_HOUR)  , ticket.getPrice());
+        //THEN should give 95% of the parking fare rounded to the cent
+        assertEquals( 1.43 , ticket.getPrice());
     }
 
     @Test
@@ -235,5 +237,50 @@ public class FareCalculatorServiceTest {
         //THEN
         assertEquals((0.95 * Fare.BIKE_RATE_PER_HOUR)  , ticket.getPrice());
     }
-}
 
+    @Test
+    @DisplayName("Calculate fare without out time")
+    public void calculateFareWithoutOutTime(){
+        //GIVEN
+        Date inTime = new Date();
+        inTime.setTime( System.currentTimeMillis() - ( 60 * 60 * 1000) );
+        ParkingSpot parkingSpot = new ParkingSpot(1, ParkingType.CAR, false);
+
+        //WHEN
+        ticket.setInTime(inTime);
+        ticket.setOutTime(null);
+        ticket.setParkingSpot(parkingSpot);
+
+        //THEN
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> fareCalculatorService.calculateFare(ticket));
+        assertEquals("Out time provided is incorrect:null", exception.getMessage());
+    }
+
+    @Test
+    @DisplayName("Calculate fare with the discount tier of the number of previous visits")
+    public void calculateFareWithDiscountTier(){
+        //GIVEN
+        Properties properties = new Properties();
+        properties.setProperty("discount.1", "5");
+        properties.setProperty("discount.10", "20");
+        TariffConfig.setTariff(TariffConfig.parse(properties));
+        Date inTime = new Date();
+        inTime.setTime( System.currentTimeMillis() - (  60 * 60 * 1000) );
+        Date outTime = new Date();
+        ParkingSpot parkingSpot = new ParkingSpot(1, ParkingType.CAR,false);
+
+        //WHEN
+        ticket.setInTime(inTime);
+        ticket.setOutTime(outTime);
+        ticket.setParkingSpot(parkingSpot);
+        ticket.setPreviousVisits(12);
+        try {
+            fareCalculatorService.calculateFare(ticket, ticket.getPreviousVisits());
+        } finally {
+            TariffConfig.setTariff(null);
+        }
+
+        //THEN
+        assertEquals(1.2, ticket.getPrice());
+    }
+}
@@ -0,0 +1,52 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.service.FareEngine;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FareEngineTest {
+
+    private static final long IN_TIME = 1_600_000_000_000L;
+
+    @Test
+    @DisplayName("Price one hour of parking in cents")
+    public void priceOneHour() {
+        //WHEN
+        long outTime = IN_TIME + TimeUnit.HOURS.toMillis(1);
+
+        //THEN
+        assertEquals(150, FareEngine.calculatePriceInCents(IN_TIME, outTime, ParkingType.CAR, false));
+        assertEquals(100, FareEngine.calculatePriceInCents(IN_TIME, outTime, ParkingType.BIKE, false));
+    }
+
+    @Test
+    @DisplayName("Round the price half up to the cent only once, after the discount")
+    public void roundHalfUpAfterDiscount() {
+        //WHEN
+        long outTime = IN_TIME + TimeUnit.MINUTES.toMillis(45);
+
+        //THEN 45 min at 150 cents/h = 112.5 cents, with 5% off = 106.875 cents
+        assertEquals(113, FareEngine.calculatePriceInCents(IN_TIME, outTime, ParkingType.CAR, false));
+        assertEquals(107, FareEngine.calculatePriceInCents(IN_TIME, outTime, ParkingType.CAR, true));
+    }
+
+    @Test
+    @DisplayName("Keep the first 30 minutes free")
+    public void freePeriod() {
+        //THEN
+        assertEquals(0, FareEngine.calculatePriceInCents(IN_TIME, IN_TIME + TimeUnit.MINUTES.toMillis(29) + 59_999, ParkingType.CAR, false));
+        assertEquals(75, FareEngine.calculatePriceInCents(IN_TIME, IN_TIME + TimeUnit.MINUTES.toMillis(30), ParkingType.CAR, false));
+    }
+
+    @Test
+    @DisplayName("Reject an out time before the in time")
+    public void rejectOutTimeBeforeInTime() {
+        //THEN
+        assertThrows(IllegalArgumentException.class, () -> FareEngine.calculatePriceInCents(IN_TIME, IN_TIME - 1, ParkingType.BIKE, false));
+    }
+}
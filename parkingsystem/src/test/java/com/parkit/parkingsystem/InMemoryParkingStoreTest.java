@@ -0,0 +1,198 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.InMemoryParkingSpotDAO;
+import com.parkit.parkingsystem.dao.InMemoryParkingStore;
+import com.parkit.parkingsystem.dao.InMemoryTicketDAO;
+import com.parkit.parkingsystem.dao.WriteAheadLog;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemoryParkingStoreTest {
+
+    //no periodic snapshot, the tests decide when one is taken
+    private static final long NO_SNAPSHOT = 0;
+
+    @TempDir
+    private Path dataDirectory;
+
+    private InMemoryParkingStore store;
+
+    @AfterEach
+    private void tearDown() throws Exception {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    private ParkingService newParkingService() {
+        return new ParkingService(new InMemoryParkingSpotDAO(store), new InMemoryTicketDAO(store));
+    }
+
+    private Path lastLogFile() throws Exception {
+        try (Stream<Path> files = Files.list(dataDirectory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("wal-"))
+                    .max((a, b) -> Long.compare(generationOf(a), generationOf(b)))
+                    .orElseThrow();
+        }
+    }
+
+    private static long generationOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring("wal-".length(), name.length() - ".log".length()));
+    }
+
+    @Test
+    @DisplayName("Park and release vehicles without a database")
+    public void enterAndExit() throws Exception {
+        //GIVEN
+        store = InMemoryParkingStore.open(dataDirectory, 3, 2, NO_SNAPSHOT);
+        ParkingService parkingService = newParkingService();
+
+        //WHEN
+        EntryResult first = parkingService.enter("ABCDEF", ParkingType.CAR);
+        parkingService.exit("ABCDEF", Instant.now());
+        EntryResult second = parkingService.enter("ABCDEF", ParkingType.CAR);
+
+        //THEN
+        assertTrue(first.isSuccess());
+        assertTrue(second.isSuccess());
+        assertEquals(1, second.getTicket().getParkingSpot().getId());
+        assertEquals(2, parkingService.getAvailableSlots(ParkingType.CAR));
+        assertEquals(2, store.getVisitCount("ABCDEF"));
+        assertTrue(store.getLatestTicket("ABCDEF").isRecurringUser());
+    }
+
+    @Test
+    @DisplayName("Close a ticket only once")
+    public void closeTicketOnce() throws Exception {
+        //GIVEN
+        store = InMemoryParkingStore.open(dataDirectory, 3, 2, NO_SNAPSHOT);
+        int id = store.saveTicket(1, "ABCDEF", 0, 1000, InMemoryParkingStore.toOutTime(null));
+
+        //WHEN
+        boolean first = store.updateTicket(id, 1.5, 2000);
+        boolean second = store.updateTicket(id, 3.0, 3000);
+
+        //THEN
+        assertTrue(first);
+        assertFalse(second);
+        assertEquals(1.5, store.getLatestTicket("ABCDEF").getPrice());
+    }
+
+    @Test
+    @DisplayName("Refuse writes and snapshots once the log failed")
+    public void failAfterLogError() throws Exception {
+        //GIVEN
+        store = InMemoryParkingStore.open(dataDirectory, 3, 2, NO_SNAPSHOT);
+        Field log = InMemoryParkingStore.class.getDeclaredField("writeAheadLog");
+        log.setAccessible(true);
+        ((WriteAheadLog) log.get(store)).close();
+
+        //WHEN
+        assertThrows(IOException.class, () -> store.claimLowestAvailable(ParkingType.CAR));
+        IOException refused = assertThrows(IOException.class, () -> store.updateParking(2, false));
+
+        //THEN
+        assertTrue(store.isFailed());
+        assertTrue(refused.getMessage().contains("refuses writes"));
+        assertThrows(IOException.class, () -> store.snapshot());
+        store.close();
+        store = InMemoryParkingStore.open(dataDirectory, 3, 2, NO_SNAPSHOT);
+        assertEquals(3, store.countAvailable(ParkingType.CAR));
+    }
+
+    @Test
+    @DisplayName("Recover the snapshot and the changes logged after it when reopened")
+    public void recoverFromSnapshotAndLog() throws Exception {
+        //GIVEN
+        store = InMemoryParkingStore.open(dataDirectory, 3, 2, NO_SNAPSHOT);
+        ParkingService parkingService = newParkingService();
+        parkingService.enter("ABCDEF", ParkingType.CAR);
+        store.snapshot();
+        parkingService.enter("GHIJKL", ParkingType.BIKE);
+        parkingService.exit("ABCDEF", Instant.now());
+
+        //WHEN
+        //dropped without close, as after a crash: only the log has the last changes
+        store = InMemoryParkingStore.open(dataDirectory, 3, 2, NO_SNAPSHOT);
+        ParkingService recoveredParkingService = newParkingService();
+
+        //THEN
+        assertEquals(3, recoveredParkingService.getAvailableSlots(ParkingType.CAR));
+        assertEquals(1, recoveredParkingService.getAvailableSlots(ParkingType.BIKE));
+        assertNotNull(store.getLatestTicket("ABCDEF").getOutTime());
+        assertNull(store.getLatestTicket("GHIJKL").getOutTime());
+        assertEquals(2, store.getTicketCount());
+    }
+
+    @Test
+    @DisplayName("Drop a record torn by a crash at the end of the log")
+    public void truncateTornRecord() throws Exception {
+        //GIVEN
+        store = InMemoryParkingStore.open(dataDirectory, 3, 2, NO_SNAPSHOT);
+        newParkingService().enter("ABCDEF", ParkingType.CAR);
+        newParkingService().enter("GHIJKL", ParkingType.CAR);
+        Path logFile = lastLogFile();
+        long size = Files.size(logFile);
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        //WHEN
+        store = InMemoryParkingStore.open(dataDirectory, 3, 2, NO_SNAPSHOT);
+
+        //THEN
+        //the spot claimed before the torn ticket stays taken, as it would in the database
+        assertNotNull(store.getLatestTicket("ABCDEF"));
+        assertNull(store.getLatestTicket("GHIJKL"));
+        assertEquals(1, store.getTicketCount());
+        assertEquals(1, store.countAvailable(ParkingType.CAR));
+        assertTrue(newParkingService().enter("MNOPQR", ParkingType.CAR).isSuccess());
+    }
+
+    @Test
+    @DisplayName("Keep every ticket saved concurrently")
+    public void concurrentSaves() throws Exception {
+        //GIVEN
+        store = InMemoryParkingStore.open(dataDirectory, 3, 2, NO_SNAPSHOT);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> ids = new ArrayList<>();
+
+        //WHEN
+        for (int i = 0; i < 200; i++) {
+            String vehicleRegNumber = "V" + (i % 20);
+            ids.add(executor.submit(() -> store.saveTicket(1, vehicleRegNumber, 0, System.currentTimeMillis(), InMemoryParkingStore.toOutTime(null))));
+        }
+        for (Future<Integer> id : ids) {
+            id.get();
+        }
+        executor.shutdown();
+        store.close();
+        store = InMemoryParkingStore.open(dataDirectory, 3, 2, NO_SNAPSHOT);
+
+        //THEN
+        assertEquals(200, store.getTicketCount());
+        assertEquals(10, store.getVisitCount("V7"));
+    }
+}
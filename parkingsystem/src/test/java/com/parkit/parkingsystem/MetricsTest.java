@@ -0,0 +1,58 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsTest {
+
+    @Test
+    @DisplayName("Report percentiles within the bucket precision")
+    public void percentiles() {
+        //GIVEN
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        //WHEN
+        for (int micros = 1; micros <= 1000; micros++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(micros));
+        }
+        histogram.record(TimeUnit.SECONDS.toNanos(2));
+
+        //THEN
+        assertEquals(1001, histogram.getCount());
+        assertEquals(TimeUnit.SECONDS.toNanos(2), histogram.getMaxNanos());
+        assertEquals(501_000, histogram.getValueAtPercentile(50), 501_000 * 0.016);
+        assertEquals(991_000, histogram.getValueAtPercentile(99), 991_000 * 0.016);
+        assertEquals(1_000_000, histogram.getValueAtPercentile(99.9), 1_000_000 * 0.016);
+        assertEquals(TimeUnit.SECONDS.toNanos(2), histogram.getValueAtPercentile(100));
+        assertEquals(0, new LatencyHistogram().getValueAtPercentile(99));
+    }
+
+    @Test
+    @DisplayName("Publish each operation over JMX")
+    public void publishOverJmx() throws Exception {
+        //GIVEN
+        OperationMetrics metrics = Metrics.operation("MetricsTest.jmx");
+        assertSame(metrics, Metrics.operation("MetricsTest.jmx"));
+
+        //WHEN
+        metrics.record(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(3));
+        metrics.error();
+
+        //THEN
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("com.parkit.parkingsystem:type=Operation,name=" + ObjectName.quote("MetricsTest.jmx"));
+        assertEquals(1L, server.getAttribute(name, "Count"));
+        assertEquals(1L, server.getAttribute(name, "Errors"));
+        assertTrue((Double) server.getAttribute(name, "P99Micros") >= 3000);
+    }
+}
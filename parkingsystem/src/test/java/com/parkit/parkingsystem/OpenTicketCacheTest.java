@@ -0,0 +1,115 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OpenTicketCacheTest {
+
+    private EmbeddedDataBaseConfig dataBaseConfig;
+    private TicketDAO ticketDAO;
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+        dataBaseConfig = new EmbeddedDataBaseConfig("open-tickets");
+        dataBaseConfig.createSchema(3, 2);
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+    }
+
+    @AfterEach
+    private void tearDown() {
+        dataBaseConfig.shutdown();
+    }
+
+    private static Ticket ticket(String vehicleRegNumber, int parkingNumber) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(parkingNumber, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setInTime(new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)));
+        return ticket;
+    }
+
+    @Test
+    @DisplayName("Serve the exit lookup from memory until the ticket is closed")
+    public void serveOpenTicketFromMemory() throws Exception {
+        //GIVEN
+        Ticket saved = ticket("ABCDEF", 1);
+        assertTrue(ticketDAO.saveTicket(saved));
+        //the database no longer has the ticket, only the cache can answer
+        dataBaseConfig.execute("delete from ticket");
+
+        //WHEN
+        Ticket ticket = ticketDAO.getTicketForExit("ABCDEF");
+
+        //THEN
+        assertEquals(1, saved.getId());
+        assertEquals(saved.getId(), ticket.getId());
+        assertEquals(1, ticket.getParkingSpot().getId());
+        assertEquals(saved.getInTime(), ticket.getInTime());
+        assertNotSame(ticket, ticketDAO.getTicketForExit("ABCDEF"));
+
+        //WHEN
+        ticket.setOutTime(new Date());
+        ticketDAO.updateTicket(ticket);
+
+        //THEN
+        assertNull(ticketDAO.getTicketForExit("ABCDEF"));
+    }
+
+    @Test
+    @DisplayName("Rebuild the open tickets from the database with the recurring user flag")
+    public void loadOpenTickets() throws Exception {
+        //GIVEN
+        Ticket closed = ticket("ABCDEF", 1);
+        closed.setOutTime(new Date());
+        ticketDAO.saveTicket(closed);
+        ticketDAO.saveTicket(ticket("ABCDEF", 2));
+        ticketDAO.saveTicket(ticket("GHIJKL", 3));
+
+        //WHEN
+        TicketDAO restartedTicketDAO = new TicketDAO();
+        restartedTicketDAO.dataBaseConfig = dataBaseConfig;
+        assertTrue(restartedTicketDAO.loadOpenTickets());
+
+        //THEN
+        Ticket recurring = restartedTicketDAO.getTicketForExit("ABCDEF");
+        assertEquals(2, recurring.getParkingSpot().getId());
+        assertTrue(recurring.isRecurringUser());
+        assertFalse(restartedTicketDAO.getTicketForExit("GHIJKL").isRecurringUser());
+        assertNull(restartedTicketDAO.getTicketForExit("MNOPQR"));
+    }
+
+    @Test
+    @DisplayName("Cache a saved ticket with the previous visits counted by the database")
+    public void cachePreviousVisitsOfSavedTicket() throws Exception {
+        //GIVEN
+        Ticket closed = ticket("ABCDEF", 1);
+        closed.setOutTime(new Date());
+        ticketDAO.saveTicket(closed);
+        Ticket open = ticket("ABCDEF", 2);
+        //whatever the caller set is replaced by the visit count
+        open.setPreviousVisits(7);
+
+        //WHEN
+        ticketDAO.saveTicket(open);
+
+        //THEN
+        assertEquals(1, open.getPreviousVisits());
+        assertEquals(1, ticketDAO.getTicketForExit("ABCDEF").getPreviousVisits());
+        TicketDAO restartedTicketDAO = new TicketDAO();
+        restartedTicketDAO.dataBaseConfig = dataBaseConfig;
+        assertEquals(1, restartedTicketDAO.getTicketForExit("ABCDEF").getPreviousVisits());
+    }
+}
@@ -0,0 +1,209 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.InMemoryParkingSpotDAO;
+import com.parkit.parkingsystem.dao.InMemoryParkingStore;
+import com.parkit.parkingsystem.dao.InMemoryTicketDAO;
+import com.parkit.parkingsystem.event.FileEventJournal;
+import com.parkit.parkingsystem.event.ParkingEvent;
+import com.parkit.parkingsystem.event.ParkingEventBus;
+import com.parkit.parkingsystem.event.ParkingEventSubscriber;
+import com.parkit.parkingsystem.event.SpotReleased;
+import com.parkit.parkingsystem.event.VehicleEntered;
+import com.parkit.parkingsystem.event.VehicleExited;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParkingEventBusTest {
+
+    @TempDir
+    private Path journalDirectory;
+
+    private ParkingEventBus eventBus;
+
+    @AfterEach
+    private void tearDown() {
+        if (eventBus != null) {
+            eventBus.close();
+        }
+    }
+
+    private static class CollectingSubscriber implements ParkingEventSubscriber {
+        private final List<ParkingEvent> events = new CopyOnWriteArrayList<>();
+        private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void onEvents(List<ParkingEvent> batch) {
+            events.addAll(batch);
+            batchSizes.add(batch.size());
+        }
+    }
+
+    private static SpotReleased released(int parkingNumber) {
+        return new SpotReleased(Instant.now(), parkingNumber, ParkingType.CAR);
+    }
+
+    @Test
+    @DisplayName("Deliver the events of many publishers to every subscriber in sequence order")
+    public void deliverInSequenceOrder() throws Exception {
+        //GIVEN
+        eventBus = new ParkingEventBus(64, 16, 10000, 1);
+        CollectingSubscriber first = new CollectingSubscriber();
+        CollectingSubscriber second = new CollectingSubscriber();
+        eventBus.subscribe(first);
+        eventBus.subscribe(second);
+        ExecutorService gates = Executors.newFixedThreadPool(4);
+        List<Future<?>> results = new ArrayList<>();
+
+        //WHEN
+        for (int gate = 0; gate < 4; gate++) {
+            results.add(gates.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    assertTrue(eventBus.publish(released(i + 1)));
+                }
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        gates.shutdown();
+        eventBus.close();
+
+        //THEN
+        assertEquals(2000, first.events.size());
+        for (int i = 0; i < first.events.size(); i++) {
+            assertEquals(i + 1, first.events.get(i).getSequence());
+            assertSame(first.events.get(i), second.events.get(i));
+        }
+        assertTrue(first.batchSizes.stream().allMatch(size -> size <= 16));
+        assertEquals(0, eventBus.getDroppedCount());
+        assertEquals(2000, eventBus.getDispatchedSequence());
+    }
+
+    @Test
+    @DisplayName("Hold the publishers back, then drop events, while a subscriber is stuck")
+    public void dropWhenSubscriberIsStuck() throws Exception {
+        //GIVEN
+        eventBus = new ParkingEventBus(4, 1, 50, 1);
+        CountDownLatch stuck = new CountDownLatch(1);
+        eventBus.subscribe(events -> stuck.await());
+
+        //WHEN
+        //the ring only frees the slots of a batch once it is delivered, so it is full after four events
+        int published = 0;
+        for (int i = 0; i < 6; i++) {
+            if (eventBus.publish(released(i + 1))) {
+                published++;
+            }
+        }
+        stuck.countDown();
+
+        CollectingSubscriber after = new CollectingSubscriber();
+        eventBus.subscribe(after);
+        boolean publishedAfter = eventBus.publish(released(7));
+        eventBus.close();
+
+        //THEN
+        assertEquals(4, published);
+        assertEquals(2, eventBus.getDroppedCount());
+        //the dropped events took sequences 5 and 6
+        assertTrue(publishedAfter);
+        assertEquals(7, after.events.get(after.events.size() - 1).getSequence());
+        assertEquals(7, eventBus.getDispatchedSequence());
+    }
+
+    @Test
+    @DisplayName("Hold the publishers back without dropping events while a durable subscriber is stuck")
+    public void blockForDurableSubscriber() throws Exception {
+        //GIVEN
+        eventBus = new ParkingEventBus(4, 1, 50, 1);
+        CountDownLatch stuck = new CountDownLatch(1);
+        CollectingSubscriber durable = new CollectingSubscriber() {
+            @Override
+            public void onEvents(List<ParkingEvent> batch) {
+                try {
+                    stuck.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.onEvents(batch);
+            }
+
+            @Override
+            public boolean isDurable() {
+                return true;
+            }
+        };
+        eventBus.subscribe(durable);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(eventBus.publish(released(i + 1)));
+        }
+        ExecutorService gate = Executors.newSingleThreadExecutor();
+
+        //WHEN
+        Future<Boolean> fifth = gate.submit(() -> eventBus.publish(released(5)));
+        Thread.sleep(200);
+        boolean heldBack = !fifth.isDone();
+        stuck.countDown();
+
+        //THEN
+        assertTrue(heldBack);
+        assertTrue(fifth.get());
+        gate.shutdown();
+        eventBus.close();
+        assertEquals(0, eventBus.getDroppedCount());
+        assertEquals(5, durable.events.size());
+        assertEquals(5, durable.events.get(4).getSequence());
+    }
+
+    @Test
+    @DisplayName("Journal the entries and exits of the parking service and replay them after a restart")
+    public void journalAndReplay() throws Exception {
+        //GIVEN
+        try (InMemoryParkingStore store = InMemoryParkingStore.open(journalDirectory.resolve("store"), 3, 2, 0)) {
+            ParkingService parkingService = new ParkingService(new InMemoryParkingSpotDAO(store), new InMemoryTicketDAO(store));
+            FileEventJournal journal = FileEventJournal.open(journalDirectory.resolve("events"));
+            eventBus = new ParkingEventBus(16, 16, 1000, journal.getLastSequence() + 1);
+            eventBus.subscribe(journal);
+            parkingService.eventBus = eventBus;
+
+            //WHEN
+            parkingService.enter("ABCDEF", ParkingType.CAR);
+            parkingService.exit("ABCDEF", Instant.now().plusSeconds(3600));
+            eventBus.close();
+        }
+        FileEventJournal reopened = FileEventJournal.open(journalDirectory.resolve("events"));
+        CollectingSubscriber replayed = new CollectingSubscriber();
+        FileEventJournal.replay(journalDirectory.resolve("events"), 1, 100, replayed);
+        reopened.close();
+
+        //THEN
+        assertEquals(3, reopened.getLastSequence());
+        assertEquals(2, replayed.events.size());
+        VehicleExited exited = (VehicleExited) replayed.events.get(0);
+        assertEquals("ABCDEF", exited.getVehicleRegNumber());
+        assertEquals(1, exited.getParkingNumber());
+        assertEquals(1, exited.getTicketId());
+        assertTrue(exited.getPrice() > 0);
+        assertEquals(2, exited.getSequence());
+        assertInstanceOf(SpotReleased.class, replayed.events.get(1));
+        CollectingSubscriber all = new CollectingSubscriber();
+        FileEventJournal.replay(journalDirectory.resolve("events"), 0, 100, all);
+        assertEquals("ABCDEF", ((VehicleEntered) all.events.get(0)).getVehicleRegNumber());
+    }
+}
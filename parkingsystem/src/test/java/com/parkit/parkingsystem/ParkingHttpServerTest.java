@@ -0,0 +1,163 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingError;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.OccupancyCounters;
+import com.parkit.parkingsystem.dao.SpotAvailabilityIndex;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.ParkingHttpServer;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ParkingHttpServerTest {
+
+    @Mock
+    private ParkingService parkingService;
+
+    private ParkingHttpServer server;
+
+    private SpotAvailabilityIndex availabilityIndex;
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+        server = new ParkingHttpServer(parkingService, 0, Executors.newFixedThreadPool(2));
+        server.start();
+    }
+
+    @AfterEach
+    private void tearDown() {
+        server.stop();
+    }
+
+    private HttpURLConnection request(String method, String path) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path).openConnection();
+        connection.setRequestMethod(method);
+        return connection;
+    }
+
+    private static String body(HttpURLConnection connection) throws Exception {
+        InputStream in = connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream();
+        try (InputStream body = in) {
+            return new String(body.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    @DisplayName("Enter a vehicle through the API")
+    public void enterVehicle() throws Exception {
+        //GIVEN
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(3, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("AB-12");
+        ticket.setInTime(new Date(0));
+        when(parkingService.enter("AB-12", ParkingType.CAR)).thenReturn(EntryResult.entered(ticket));
+
+        //WHEN
+        HttpURLConnection connection = request("POST", "/api/entries?vehicleRegNumber=AB-12&parkingType=car");
+
+        //THEN
+        assertEquals(201, connection.getResponseCode());
+        assertEquals("{\"vehicleRegNumber\":\"AB-12\",\"parkingNumber\":3,\"parkingType\":\"CAR\","
+                + "\"inTime\":\"1970-01-01T00:00:00Z\",\"recurringUser\":false}", body(connection));
+    }
+
+    @Test
+    @DisplayName("Answer 409 when the parking is full and 400 on an unknown vehicle type")
+    public void enterVehicleErrors() throws Exception {
+        //GIVEN
+        when(parkingService.enter("ABCDEF", ParkingType.BIKE)).thenReturn(EntryResult.failed(ParkingError.PARKING_FULL));
+
+        //WHEN
+        HttpURLConnection full = request("POST", "/api/entries?vehicleRegNumber=ABCDEF&parkingType=BIKE");
+        HttpURLConnection unknownType = request("POST", "/api/entries?vehicleRegNumber=ABCDEF&parkingType=TRUCK");
+
+        //THEN
+        assertEquals(409, full.getResponseCode());
+        assertEquals(400, unknownType.getResponseCode());
+        verify(parkingService, times(1)).enter(anyString(), any(ParkingType.class));
+    }
+
+    @Test
+    @DisplayName("Report the available spots by vehicle type")
+    public void occupancy() throws Exception {
+        //GIVEN
+        OccupancyCounters occupancy = newOccupancy();
+        when(parkingService.getOccupancy()).thenReturn(occupancy);
+
+        //WHEN
+        HttpURLConnection connection = request("GET", "/api/occupancy");
+
+        //THEN
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("{\"version\":" + occupancy.getVersion() + ",\"CAR\":{\"available\":2,\"occupied\":1,\"capacity\":3},"
+                + "\"BIKE\":{\"available\":0,\"occupied\":2,\"capacity\":2}}", body(connection));
+        assertEquals(405, request("POST", "/api/occupancy").getResponseCode());
+    }
+
+    @Test
+    @DisplayName("Hold an occupancy request until a spot changes")
+    public void awaitOccupancyChange() throws Exception {
+        //GIVEN
+        OccupancyCounters occupancy = newOccupancy();
+        when(parkingService.getOccupancy()).thenReturn(occupancy);
+        long version = occupancy.getVersion();
+        ScheduledExecutorService gate = Executors.newSingleThreadScheduledExecutor();
+
+        //WHEN
+        gate.schedule(() -> availabilityIndex.setAvailable(5, ParkingType.BIKE, true), 200, TimeUnit.MILLISECONDS);
+        HttpURLConnection connection = request("GET", "/api/occupancy?since=" + version + "&waitMillis=10000");
+
+        //THEN
+        assertEquals(200, connection.getResponseCode());
+        assertTrue(body(connection).contains("\"BIKE\":{\"available\":1,\"occupied\":1,\"capacity\":2}"));
+        assertTrue(occupancy.getVersion() > version);
+        gate.shutdown();
+    }
+
+    private OccupancyCounters newOccupancy() {
+        OccupancyCounters occupancy = new OccupancyCounters();
+        availabilityIndex = new SpotAvailabilityIndex(5, occupancy);
+        availabilityIndex.setAvailable(1, ParkingType.CAR, true);
+        availabilityIndex.setAvailable(3, ParkingType.CAR, true);
+        occupancy.setCapacity(Map.of(ParkingType.CAR, 3, ParkingType.BIKE, 2));
+        return occupancy;
+    }
+
+    @Test
+    @DisplayName("Expose the operation metrics in the Prometheus text format")
+    public void scrapeMetrics() throws Exception {
+        //GIVEN
+        Metrics.operation("ParkingHttpServerTest.scrape").record(System.nanoTime());
+
+        //WHEN
+        HttpURLConnection connection = request("GET", "/api/metrics");
+
+        //THEN
+        assertEquals(200, connection.getResponseCode());
+        assertTrue(connection.getContentType().startsWith("text/plain"));
+        assertTrue(body(connection).contains("parkit_operation_latency_seconds_count{operation=\"ParkingHttpServerTest.scrape\"} 1\n"));
+    }
+}
@@ -1,10 +1,14 @@
 package com.parkit.parkingsystem;
 
+import com.parkit.parkingsystem.constants.ParkingError;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.InteractiveShell;
 import com.parkit.parkingsystem.service.ParkingService;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 //import org.junit.jupiter.api.BeforeEach;
@@ -16,6 +20,7 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Instant;
 import java.util.Date;
 
 import static org.mockito.Mockito.*;
@@ -24,6 +29,7 @@ import static org.mockito.Mockito.*;
 public class ParkingServiceTest {
 
     private static ParkingService parkingService;
+    private static InteractiveShell shell;
 
     @Mock
     private static InputReaderUtil inputReaderUtil;
@@ -36,7 +42,8 @@ public class ParkingServiceTest {
     private void setUp() throws Exception {
         try {
             when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
-            parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+            parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+            shell = new InteractiveShell(inputReaderUtil, parkingService);
         } catch (Exception e) {
             e.printStackTrace();
             throw  new RuntimeException("Failed to set up test mock objects");
@@ -55,17 +62,40 @@ public class ParkingServiceTest {
       ticket.setVehicleRegNumber("ABCDEF"); 
 
       //WHEN
-      when(ticketDAO.getTicket(anyString())).thenReturn(ticket);
+      when(ticketDAO.getTicketForExit(anyString())).thenReturn(ticket);
       when(ticketDAO.updateTicket(any(Ticket.class))).thenReturn(true);
-      when(ticketDAO.getNbTicket(anyString())).thenReturn(0);
 
-      parkingService.processExitingVehicle();
+      shell.processExitingVehicle();
 
       //THEN
-      verify(ticketDAO, Mockito.times(1)).getNbTicket("ABCDEF");
+      verify(ticketDAO, Mockito.times(1)).getTicketForExit("ABCDEF");
+      verify(ticketDAO, Mockito.times(0)).getNbTicket(anyString());
       verify(parkingSpotDAO, Mockito.times(1)).updateParking(any(ParkingSpot.class));
       assertTrue(ticket.getParkingSpot().isAvailable());
-      assertEquals(ticketDAO.getTicket("ABCDEF").getPrice(), 1.5);
+      assertEquals(ticketDAO.getTicketForExit("ABCDEF").getPrice(), 1.5);
+    }
+
+    @Test
+    @DisplayName("Process exiting vehicle of a recurring user with discount")
+    public void processExitingVehicleRecurringUserTest() throws Exception {
+      //GIVEN
+      setUp();
+      ParkingSpot parkingSpot = new ParkingSpot(1, ParkingType.CAR,false);
+      Ticket ticket = new Ticket();
+      ticket.setInTime(new Date(System.currentTimeMillis() - (60*60*1000)));
+      ticket.setParkingSpot(parkingSpot);
+      ticket.setVehicleRegNumber("ABCDEF");
+      ticket.setPreviousVisits(1);
+
+      //WHEN
+      when(ticketDAO.getTicketForExit(anyString())).thenReturn(ticket);
+      when(ticketDAO.updateTicket(any(Ticket.class))).thenReturn(true);
+
+      shell.processExitingVehicle();
+
+      //THEN
+      verify(ticketDAO, Mockito.times(1)).updateTicket(ticket);
+      assertEquals(1.43, ticket.getPrice());
     }
 
     @Test
@@ -76,15 +106,111 @@ public class ParkingServiceTest {
 
       //WHEN
       when(inputReaderUtil.readSelection()).thenReturn(1);
-      when(ticketDAO.getNbTicket(anyString())).thenReturn(0);   
+      when(ticketDAO.getNbTicket(anyString())).thenReturn(3);
       when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
-      when(parkingSpotDAO.getNextAvailableSlot(any(ParkingType.class))).thenReturn(1);
+      when(parkingSpotDAO.claimNextAvailableSlot(any(ParkingType.class))).thenReturn(1);
       
-      parkingService.processIncomingVehicle();
+      shell.processIncomingVehicle();
 		  
       //THEN
-      verify(parkingSpotDAO, Mockito.times(1)).updateParking(any(ParkingSpot.class));
-      verify(ticketDAO, Mockito.times(1)).saveTicket(any(Ticket.class));
+      verify(parkingSpotDAO, Mockito.times(1)).claimNextAvailableSlot(ParkingType.CAR);
+      verify(parkingSpotDAO, Mockito.times(0)).updateParking(any(ParkingSpot.class));
+      verify(ticketDAO, Mockito.times(1)).saveTicket(argThat(ticket -> ticket.getPreviousVisits() == 3));
+    }
+
+    @Test
+    @DisplayName("Process incoming vehicle and claim no spot when the registration number is invalid")
+    public void testProcessIncomingVehicleClaimsNoSpotOnInvalidInput() throws Exception {
+      //GIVEN
+      parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+      shell = new InteractiveShell(inputReaderUtil, parkingService);
+
+      //WHEN
+      when(inputReaderUtil.readSelection()).thenReturn(1);
+      when(inputReaderUtil.readVehicleRegistrationNumber()).thenThrow(new IllegalArgumentException("Invalid input provided"));
+
+      shell.processIncomingVehicle();
+
+      //THEN
+      verify(parkingSpotDAO, times(0)).claimNextAvailableSlot(any(ParkingType.class));
+      verify(ticketDAO, times(0)).saveTicket(any(Ticket.class));
+    }
+
+    @Test
+    @DisplayName("Enter a vehicle when the parking is full")
+    public void testEnterVehicleParkingFull() throws Exception {
+      //GIVEN
+      parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+
+      //WHEN
+      when(parkingSpotDAO.claimNextAvailableSlot(ParkingType.BIKE)).thenReturn(0);
+
+      EntryResult result = parkingService.enter("ABCDEF", ParkingType.BIKE);
+
+      //THEN
+      assertFalse(result.isSuccess());
+      assertEquals(ParkingError.PARKING_FULL, result.getError());
+      verify(ticketDAO, times(0)).saveTicket(any(Ticket.class));
+    }
+
+    @Test
+    @DisplayName("Enter a vehicle and release its spot when the ticket cannot be saved")
+    public void testEnterVehicleUnableToSaveTicket() throws Exception {
+      //GIVEN
+      parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+      when(parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR)).thenReturn(2);
+      when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(false);
+      when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
+
+      //WHEN
+      EntryResult result = parkingService.enter("ABCDEF", ParkingType.CAR);
+
+      //THEN
+      assertFalse(result.isSuccess());
+      assertEquals(ParkingError.DATABASE_ERROR, result.getError());
+      verify(parkingSpotDAO, times(1)).updateParking(argThat(parkingSpot ->
+              parkingSpot.getId() == 2 && parkingSpot.isAvailable() && parkingSpot.getParkingType() == ParkingType.CAR));
+    }
+
+    @Test
+    @DisplayName("Exit a vehicle without open ticket or with an invalid registration number")
+    public void testExitVehicleErrors() throws Exception {
+      //GIVEN
+      parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+
+      //WHEN
+      when(ticketDAO.getTicketForExit("ABCDEF")).thenReturn(null);
+
+      ExitResult noTicket = parkingService.exit("ABCDEF", Instant.now());
+      ExitResult invalid = parkingService.exit("ABCDEFGHIJKL", Instant.now());
+
+      //THEN
+      assertEquals(ParkingError.NO_OPEN_TICKET, noTicket.getError());
+      assertEquals(ParkingError.INVALID_VEHICLE_REG_NUMBER, invalid.getError());
+      verify(ticketDAO, times(1)).getTicketForExit(anyString());
+      verify(ticketDAO, times(0)).updateTicket(any(Ticket.class));
+    }
+
+    @Test
+    @DisplayName("Quote the fare of a parked vehicle without closing its ticket")
+    public void testQuoteFare() throws Exception {
+      //GIVEN
+      parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+      Ticket ticket = new Ticket();
+      ticket.setInTime(new Date(System.currentTimeMillis() - (60*60*1000)));
+      ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR,false));
+      ticket.setVehicleRegNumber("ABCDEF");
+
+      //WHEN
+      when(ticketDAO.getTicketForExit("ABCDEF")).thenReturn(ticket);
+
+      ExitResult result = parkingService.quote("ABCDEF", Instant.now());
+
+      //THEN
+      assertTrue(result.isSuccess());
+      assertEquals(1.5, result.getPrice());
+      verify(ticketDAO, times(0)).updateTicket(any(Ticket.class));
+      verify(parkingSpotDAO, times(0)).updateParking(any(ParkingSpot.class));
     }
 
     @Test
@@ -100,10 +226,10 @@ public class ParkingServiceTest {
       ticket.setVehicleRegNumber("ABCDEF"); 
       
       //WHEN
-      when(ticketDAO.getTicket(anyString())).thenReturn(ticket);
+      when(ticketDAO.getTicketForExit(anyString())).thenReturn(ticket);
 		  when(ticketDAO.updateTicket(any(Ticket.class))).thenReturn(false);
 
-		  parkingService.processExitingVehicle();
+		  shell.processExitingVehicle();
 
       //THEN
       assertEquals(0, parkingSpotDAO.getNextAvailableSlot(any(ParkingType.class)));
@@ -116,13 +242,14 @@ public class ParkingServiceTest {
     @DisplayName("Get the next parking spot available")
     public void testGetNextParkingNumberIfAvailable() throws Exception {
       //GIVEN
-      parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+      parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+      shell = new InteractiveShell(inputReaderUtil, parkingService);
 
       //WHEN
       when(inputReaderUtil.readSelection()).thenReturn(1);
       when(parkingSpotDAO.getNextAvailableSlot(any(ParkingType.class))).thenReturn(1);
 
-      ParkingSpot parkingSpot = parkingService.getNextParkingNumberIfAvailable();
+      ParkingSpot parkingSpot = shell.getNextParkingNumberIfAvailable();
 
       //THEN
       verify(parkingSpotDAO, times(1)).getNextAvailableSlot(any(ParkingType.class));
@@ -134,13 +261,14 @@ public class ParkingServiceTest {
     @DisplayName("Get the next parking spot and the number is not found")
     public void testGetNextParkingNumberIfAvailableParkingNumberNotFound() throws Exception {
       //GIVEN
-      parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+      parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+      shell = new InteractiveShell(inputReaderUtil, parkingService);
 
       //WHEN
       when(inputReaderUtil.readSelection()).thenReturn(2);
       when(parkingSpotDAO.getNextAvailableSlot(any(ParkingType.class))).thenReturn(0);
 
-      ParkingSpot parkingSpot = parkingService.getNextParkingNumberIfAvailable();
+      ParkingSpot parkingSpot = shell.getNextParkingNumberIfAvailable();
 
       //THEN
       verify(parkingSpotDAO, times(1)).getNextAvailableSlot(any(ParkingType.class));
@@ -152,12 +280,13 @@ public class ParkingServiceTest {
     @DisplayName("Get the next parking spot and the type of vehicle is unknown")
     public void testGetNextParkingNumberIfAvailableParkingNumberWrongArgument() throws Exception {
       //GIVEN
-      parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+      parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+      shell = new InteractiveShell(inputReaderUtil, parkingService);
 
       //WHEN
       when(inputReaderUtil.readSelection()).thenReturn(3);
 
-      ParkingSpot parkingSpot = parkingService.getNextParkingNumberIfAvailable();
+      ParkingSpot parkingSpot = shell.getNextParkingNumberIfAvailable();
 
       //THEN
       verify(parkingSpotDAO, times(0)).getNextAvailableSlot(any(ParkingType.class));
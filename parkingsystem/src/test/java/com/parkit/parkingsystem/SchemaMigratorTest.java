@@ -0,0 +1,83 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SchemaMigratorTest {
+
+    @Test
+    @DisplayName("Keep migration scripts in strictly increasing version order")
+    public void migrationsAreOrdered() {
+        //GIVEN
+        int previousVersion = 0;
+
+        //THEN
+        for (String script : SchemaMigrator.MIGRATIONS) {
+            int version = SchemaMigrator.getVersion(script);
+            assertTrue(version > previousVersion, script + " is out of order");
+            previousVersion = version;
+        }
+    }
+
+    @Test
+    @DisplayName("Split every migration script into statements without comments")
+    public void readStatements() throws Exception {
+        for (String script : SchemaMigrator.MIGRATIONS) {
+            //WHEN
+            List<String> statements = SchemaMigrator.readStatements(script);
+
+            //THEN
+            assertFalse(statements.isEmpty(), script + " has no statement");
+            for (String statement : statements) {
+                assertFalse(statement.startsWith("--"));
+                assertFalse(statement.endsWith(";"));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Read the three index creations of the ticket index migration")
+    public void readTicketIndexStatements() throws Exception {
+        //WHEN
+        List<String> statements = SchemaMigrator.readStatements("V3__ticket_indexes.sql");
+
+        //THEN
+        assertEquals(3, statements.size());
+        assertEquals("create index IDX_TICKET_VEHICLE_IN_TIME on ticket(VEHICLE_REG_NUMBER, IN_TIME desc)", statements.get(0));
+    }
+
+    @Test
+    @DisplayName("Re-run the migrations whose indexes were created by a failed run")
+    public void rerunIndexMigrations() throws Exception {
+        //GIVEN
+        EmbeddedDataBaseConfig dataBaseConfig = new EmbeddedDataBaseConfig("migrator-rerun");
+        try {
+            SchemaMigrator migrator = new SchemaMigrator(dataBaseConfig);
+            migrator.migrate();
+            //as if the run stopped after the indexes of V3, before its version was recorded
+            Connection con = dataBaseConfig.getConnection();
+            try (Statement statement = con.createStatement()) {
+                statement.execute("delete from schema_version where VERSION >= 3");
+            } finally {
+                dataBaseConfig.closeConnection(con);
+            }
+
+            //WHEN
+            int applied = migrator.migrate();
+
+            //THEN
+            assertEquals(SchemaMigrator.MIGRATIONS.length - 2, applied);
+            assertEquals(0, migrator.migrate());
+        } finally {
+            dataBaseConfig.shutdown();
+        }
+    }
+}
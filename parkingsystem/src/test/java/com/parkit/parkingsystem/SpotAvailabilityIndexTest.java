@@ -0,0 +1,210 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.OccupancyCounters;
+import com.parkit.parkingsystem.dao.SpotAvailabilityIndex;
+import com.parkit.parkingsystem.model.OccupancySnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpotAvailabilityIndexTest {
+
+    private SpotAvailabilityIndex availabilityIndex;
+
+    @BeforeEach
+    private void setUpPerTest() {
+        availabilityIndex = new SpotAvailabilityIndex(5);
+        availabilityIndex.setAvailable(1, ParkingType.CAR, true);
+        availabilityIndex.setAvailable(2, ParkingType.CAR, true);
+        availabilityIndex.setAvailable(3, ParkingType.CAR, true);
+        availabilityIndex.setAvailable(4, ParkingType.BIKE, true);
+        availabilityIndex.setAvailable(5, ParkingType.BIKE, true);
+    }
+
+    @Test
+    @DisplayName("Get the lowest available spot of each type")
+    public void getLowestAvailable() {
+        //THEN
+        assertEquals(1, availabilityIndex.getLowestAvailable(ParkingType.CAR));
+        assertEquals(4, availabilityIndex.getLowestAvailable(ParkingType.BIKE));
+    }
+
+    @Test
+    @DisplayName("Skip the spots marked as unavailable and reuse them once released")
+    public void getLowestAvailableAfterUpdate() {
+        //WHEN
+        availabilityIndex.setAvailable(1, ParkingType.CAR, false);
+        availabilityIndex.setAvailable(2, ParkingType.CAR, false);
+
+        //THEN
+        assertEquals(3, availabilityIndex.getLowestAvailable(ParkingType.CAR));
+        assertEquals(1, availabilityIndex.countAvailable(ParkingType.CAR));
+
+        //WHEN
+        availabilityIndex.setAvailable(2, ParkingType.CAR, true);
+
+        //THEN
+        assertEquals(2, availabilityIndex.getLowestAvailable(ParkingType.CAR));
+    }
+
+    @Test
+    @DisplayName("Return 0 when every spot of the type is taken")
+    public void getLowestAvailableWhenFull() {
+        //WHEN
+        availabilityIndex.setAvailable(4, ParkingType.BIKE, false);
+        availabilityIndex.setAvailable(5, ParkingType.BIKE, false);
+
+        //THEN
+        assertEquals(0, availabilityIndex.getLowestAvailable(ParkingType.BIKE));
+    }
+
+    @Test
+    @DisplayName("Claim the lowest available spot and mark it as unavailable")
+    public void claimLowestAvailable() {
+        //WHEN
+        int first = availabilityIndex.claimLowestAvailable(ParkingType.CAR);
+        int second = availabilityIndex.claimLowestAvailable(ParkingType.CAR);
+
+        //THEN
+        assertEquals(1, first);
+        assertEquals(2, second);
+        assertEquals(3, availabilityIndex.getLowestAvailable(ParkingType.CAR));
+        assertEquals(1, availabilityIndex.countAvailable(ParkingType.CAR));
+    }
+
+    @Test
+    @DisplayName("Reject a parking number outside of the index")
+    public void setAvailableUnknownParkingNumber() {
+        //THEN
+        assertThrows(IllegalArgumentException.class, () -> availabilityIndex.setAvailable(6, ParkingType.CAR, true));
+    }
+
+    @Test
+    @DisplayName("Never allocate the same spot twice when many gates claim concurrently")
+    public void claimLowestAvailableConcurrently() throws Exception {
+        //GIVEN
+        int nbSpots = 5000;
+        int nbGates = 16;
+        SpotAvailabilityIndex index = new SpotAvailabilityIndex(nbSpots);
+        for (int parkingNumber = 1; parkingNumber <= nbSpots; parkingNumber++) {
+            index.setAvailable(parkingNumber, ParkingType.CAR, true);
+        }
+        AtomicIntegerArray allocations = new AtomicIntegerArray(nbSpots + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService gates = Executors.newFixedThreadPool(nbGates);
+
+        //WHEN
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int gate = 0; gate < nbGates; gate++) {
+            Callable<Integer> claimUntilFull = () -> {
+                start.await();
+                int claimed = 0;
+                int parkingNumber;
+                while ((parkingNumber = index.claimLowestAvailable(ParkingType.CAR)) > 0) {
+                    allocations.incrementAndGet(parkingNumber);
+                    claimed++;
+                }
+                return claimed;
+            };
+            results.add(gates.submit(claimUntilFull));
+        }
+        start.countDown();
+        int totalClaimed = 0;
+        for (Future<Integer> result : results) {
+            totalClaimed += result.get();
+        }
+        gates.shutdown();
+
+        //THEN
+        assertEquals(nbSpots, totalClaimed);
+        for (int parkingNumber = 1; parkingNumber <= nbSpots; parkingNumber++) {
+            assertEquals(1, allocations.get(parkingNumber), "spot " + parkingNumber + " allocated more than once");
+        }
+        assertEquals(0, index.countAvailable(ParkingType.CAR));
+    }
+
+    @Test
+    @DisplayName("Never hold the same spot twice when gates claim and release concurrently")
+    public void claimAndReleaseConcurrently() throws Exception {
+        //GIVEN
+        int nbSpots = 64;
+        int nbGates = 16;
+        int nbVisitsPerGate = 20000;
+        SpotAvailabilityIndex index = new SpotAvailabilityIndex(nbSpots);
+        for (int parkingNumber = 1; parkingNumber <= nbSpots; parkingNumber++) {
+            index.setAvailable(parkingNumber, ParkingType.BIKE, true);
+        }
+        AtomicIntegerArray occupants = new AtomicIntegerArray(nbSpots + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService gates = Executors.newFixedThreadPool(nbGates);
+
+        //WHEN
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int gate = 0; gate < nbGates; gate++) {
+            Callable<Boolean> parkAndLeave = () -> {
+                start.await();
+                boolean noDoubleAllocation = true;
+                for (int visit = 0; visit < nbVisitsPerGate; visit++) {
+                    int parkingNumber = index.claimLowestAvailable(ParkingType.BIKE);
+                    if (parkingNumber > 0) {
+                        noDoubleAllocation &= occupants.incrementAndGet(parkingNumber) == 1;
+                        occupants.decrementAndGet(parkingNumber);
+                        index.setAvailable(parkingNumber, ParkingType.BIKE, true);
+                    }
+                }
+                return noDoubleAllocation;
+            };
+            results.add(gates.submit(parkAndLeave));
+        }
+        start.countDown();
+        boolean noDoubleAllocation = true;
+        for (Future<Boolean> result : results) {
+            noDoubleAllocation &= result.get();
+        }
+        gates.shutdown();
+
+        //THEN
+        assertTrue(noDoubleAllocation);
+        assertEquals(nbSpots, index.countAvailable(ParkingType.BIKE));
+        assertEquals(nbSpots, index.getOccupancy().snapshot().getAvailable(ParkingType.BIKE));
+    }
+
+    @Test
+    @DisplayName("Count only the spots that change and notify the subscribers of each change")
+    public void occupancyCounters() throws Exception {
+        //GIVEN
+        OccupancyCounters occupancy = availabilityIndex.getOccupancy();
+        long version = occupancy.getVersion();
+        CompletableFuture<Void> change = occupancy.onChange(version);
+
+        //WHEN
+        availabilityIndex.setAvailable(4, ParkingType.BIKE, true);
+        boolean notifiedWithoutChange = change.isDone();
+        availabilityIndex.claimLowestAvailable(ParkingType.CAR);
+        availabilityIndex.setAvailable(2, ParkingType.CAR, false);
+
+        //THEN
+        assertFalse(notifiedWithoutChange);
+        assertTrue(change.isDone());
+        OccupancySnapshot snapshot = occupancy.snapshot();
+        assertEquals(version + 2, snapshot.getVersion());
+        assertEquals(1, snapshot.getAvailable(ParkingType.CAR));
+        assertEquals(2, snapshot.getAvailable(ParkingType.BIKE));
+        assertSame(snapshot, occupancy.snapshot());
+        assertTrue(occupancy.onChange(version).isDone());
+        assertFalse(occupancy.onChange(snapshot.getVersion()).isDone());
+    }
+}
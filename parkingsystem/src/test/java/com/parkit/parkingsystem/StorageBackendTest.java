@@ -0,0 +1,74 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.StorageBackend;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StorageBackendTest {
+
+    @TempDir
+    private Path dataDirectory;
+
+    @BeforeEach
+    private void setUpPerTest() {
+        System.setProperty(StorageBackend.BACKEND_PROPERTY, "h2");
+        System.setProperty("parkit.db.file", dataDirectory.resolve("parkit").toString());
+    }
+
+    @AfterEach
+    private void tearDown() {
+        DataBaseConfig.closeConnectionPool();
+        System.clearProperty(StorageBackend.BACKEND_PROPERTY);
+        System.clearProperty("parkit.db.file");
+    }
+
+    private static ParkingService newParkingService() {
+        return new ParkingService(new ParkingSpotDAO(), new TicketDAO());
+    }
+
+    @Test
+    @DisplayName("Create the embedded database on first use and keep its tickets across restarts")
+    public void embeddedDatabase() {
+        //GIVEN
+        ParkingService parkingService = newParkingService();
+
+        //WHEN
+        EntryResult entry = parkingService.enter("ABCDEF", ParkingType.CAR);
+        DataBaseConfig.closeConnectionPool();
+        ParkingService restartedParkingService = newParkingService();
+
+        //THEN
+        assertTrue(entry.isSuccess());
+        assertEquals(1, entry.getTicket().getParkingSpot().getId());
+        assertEquals(2, restartedParkingService.getAvailableSlots(ParkingType.CAR));
+        assertEquals(2, restartedParkingService.getAvailableSlots(ParkingType.BIKE));
+        assertTrue(restartedParkingService.exit("ABCDEF", Instant.now()).isSuccess());
+        assertEquals(3, restartedParkingService.getAvailableSlots(ParkingType.CAR));
+    }
+
+    @Test
+    @DisplayName("Reject an unknown storage backend")
+    public void unknownBackend() {
+        //GIVEN
+        System.setProperty(StorageBackend.BACKEND_PROPERTY, "oracle");
+
+        //THEN
+        assertThrows(IllegalArgumentException.class, StorageBackend::fromConfiguration);
+        System.setProperty(StorageBackend.BACKEND_PROPERTY, " H2 ");
+        assertEquals(StorageBackend.H2, StorageBackend.fromConfiguration());
+    }
+}
@@ -0,0 +1,128 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.TariffConfig;
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.Tariff;
+import com.parkit.parkingsystem.service.FareEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TariffConfigTest {
+
+    //2020-09-13T12:00:00Z
+    private static final long NOON = 1_599_998_400_000L;
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    private void tearDown() {
+        System.clearProperty(TariffConfig.TARIFF_FILE_PROPERTY);
+        TariffConfig.setTariff(null);
+    }
+
+    @Test
+    @DisplayName("Use the Fare constants when nothing is configured")
+    public void parseDefaultTariff() {
+        //WHEN
+        Tariff tariff = TariffConfig.parse(new Properties());
+
+        //THEN
+        assertEquals(Fare.CAR_RATE_PER_HOUR_IN_CENTS, tariff.getRatePerHourInCents(ParkingType.CAR));
+        assertEquals(Fare.BIKE_RATE_PER_HOUR_IN_CENTS, tariff.getRatePerHourInCents(ParkingType.BIKE));
+        assertEquals(Fare.FREE_PERIOD_IN_MINUTES, tariff.getFreePeriodInMinutes());
+        assertEquals(0, tariff.getDiscountPercent(0));
+        assertEquals(Fare.RECURRING_USER_DISCOUNT_PERCENT, tariff.getDiscountPercent(1));
+        assertEquals(100, tariff.getRatePercent(NOON));
+    }
+
+    @Test
+    @DisplayName("Index discount tiers by number of previous visits and time bands by hour of day")
+    public void parseTiersAndBands() {
+        //GIVEN
+        Properties properties = new Properties();
+        properties.setProperty("rate.CAR", "200");
+        properties.setProperty("freePeriodMinutes", "15");
+        properties.setProperty("discount.1", "5");
+        properties.setProperty("discount.10", "10");
+        properties.setProperty("band.0-7", "50");
+        properties.setProperty("zoneOffset", "+02:00");
+
+        //WHEN
+        Tariff tariff = TariffConfig.parse(properties);
+
+        //THEN
+        assertEquals(200, tariff.getRatePerHourInCents(ParkingType.CAR));
+        assertEquals(15, tariff.getFreePeriodInMinutes());
+        assertEquals(5, tariff.getDiscountPercent(9));
+        assertEquals(10, tariff.getDiscountPercent(10));
+        assertEquals(10, tariff.getDiscountPercent(500));
+        //06:00 local time is 04:00 UTC
+        assertEquals(50, tariff.getRatePercent(NOON - TimeUnit.HOURS.toMillis(8)));
+        assertEquals(100, tariff.getRatePercent(NOON - TimeUnit.HOURS.toMillis(5)));
+    }
+
+    @Test
+    @DisplayName("Price a ticket with the time band of its entry hour and the discount tier of the vehicle")
+    public void priceWithTariff() {
+        //GIVEN
+        Properties properties = new Properties();
+        properties.setProperty("discount.10", "20");
+        properties.setProperty("band.12-14", "80");
+        Tariff tariff = TariffConfig.parse(properties);
+        long outTime = NOON + TimeUnit.HOURS.toMillis(2);
+
+        //WHEN
+        long price = FareEngine.calculatePriceInCents(tariff, NOON, outTime, ParkingType.CAR, 10);
+
+        //THEN 2h at 150 cents/h, 80% band, 20% discount
+        assertEquals(192, price);
+    }
+
+    @Test
+    @DisplayName("Reject an invalid tariff")
+    public void parseInvalidTariff() {
+        //GIVEN
+        Properties properties = new Properties();
+        properties.setProperty("discount.1", "150");
+        Properties bands = new Properties();
+        bands.setProperty("band.0-24", "1001");
+
+        //THEN
+        assertThrows(IllegalArgumentException.class, () -> TariffConfig.parse(properties));
+        assertThrows(IllegalArgumentException.class, () -> TariffConfig.parse(bands));
+    }
+
+    @Test
+    @DisplayName("Reload the tariff from file and keep the current one when the new file is invalid")
+    public void reloadFromFile() throws Exception {
+        //GIVEN
+        Path file = tempDir.resolve("tariff.properties");
+        Files.write(file, "rate.CAR=300\n".getBytes(StandardCharsets.UTF_8));
+        System.setProperty(TariffConfig.TARIFF_FILE_PROPERTY, file.toString());
+
+        //WHEN
+        assertTrue(TariffConfig.reload());
+
+        //THEN
+        assertEquals(300, TariffConfig.getTariff().getRatePerHourInCents(ParkingType.CAR));
+
+        //WHEN
+        Files.write(file, "rate.CAR=abc\n".getBytes(StandardCharsets.UTF_8));
+
+        //THEN
+        assertFalse(TariffConfig.reload());
+        assertEquals(300, TariffConfig.getTariff().getRatePerHourInCents(ParkingType.CAR));
+    }
+}
@@ -0,0 +1,98 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.service.TicketArchiveJob;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TicketArchiveJobTest {
+
+    private EmbeddedDataBaseConfig dataBaseConfig;
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+        dataBaseConfig = new EmbeddedDataBaseConfig("archive");
+        //archive tables of a previous test are not known to the migrations
+        dataBaseConfig.execute("drop all objects");
+        dataBaseConfig.createSchema(3, 2);
+        dataBaseConfig.saveTicket(1, "ABCDEF", 1.5, LocalDateTime.of(2023, 1, 15, 10, 0), LocalDateTime.of(2023, 1, 15, 12, 0));
+        dataBaseConfig.saveTicket(1, "ABCDEF", 1.5, LocalDateTime.of(2023, 1, 31, 23, 0), LocalDateTime.of(2023, 2, 1, 1, 0));
+        dataBaseConfig.saveTicket(1, "GHIJKL", 1.5, LocalDateTime.of(2023, 2, 10, 8, 0), LocalDateTime.of(2023, 2, 10, 9, 0));
+        //kept: closed within the retention window, or still open
+        dataBaseConfig.saveTicket(1, "ABCDEF", 1.5, LocalDateTime.now().minusHours(3), LocalDateTime.now().minusHours(2));
+        dataBaseConfig.saveTicket(1, "MNOPQR", 1.5, LocalDateTime.of(2023, 1, 1, 8, 0), null);
+        dataBaseConfig.execute(DBConstants.REBUILD_VISIT_COUNTS);
+    }
+
+    @AfterEach
+    private void tearDown() {
+        dataBaseConfig.shutdown();
+    }
+
+    @Test
+    @DisplayName("Move the tickets closed before the retention window to monthly archive tables")
+    public void archiveOldTickets() throws Exception {
+        //GIVEN
+        TicketArchiveJob job = new TicketArchiveJob(dataBaseConfig, 2, 0);
+
+        //WHEN
+        boolean completed = job.run(new Timestamp(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(30)), Integer.MAX_VALUE);
+
+        //THEN
+        assertTrue(completed);
+        assertEquals(3, job.getArchivedCount());
+        assertEquals(2, dataBaseConfig.count("select count(*) from ticket"));
+        assertEquals(1, dataBaseConfig.count("select count(*) from ticket_archive_202301"));
+        assertEquals(2, dataBaseConfig.count("select count(*) from ticket_archive_202302"));
+        assertEquals(3, dataBaseConfig.count("select ID from ticket_archive_202302 where VEHICLE_REG_NUMBER = 'GHIJKL'"));
+        assertEquals(2, dataBaseConfig.count("select NB_VISIT from vehicle_archived_visit where VEHICLE_REG_NUMBER = 'ABCDEF'"));
+        assertEquals(3, dataBaseConfig.count("select NB_VISIT from vehicle_visit where VEHICLE_REG_NUMBER = 'ABCDEF'"));
+    }
+
+    @Test
+    @DisplayName("Count the archived visits when the visit counters are rebuilt")
+    public void rebuildVisitCountsAfterArchiving() throws Exception {
+        //GIVEN
+        new TicketArchiveJob(dataBaseConfig, 10, 0).run(new Timestamp(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(30)), Integer.MAX_VALUE);
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+
+        //WHEN
+        boolean rebuilt = ticketDAO.rebuildVisitCounters();
+
+        //THEN
+        assertTrue(rebuilt);
+        assertEquals(3, ticketDAO.getNbTicket("ABCDEF"));
+        assertEquals(1, ticketDAO.getNbTicket("GHIJKL"));
+        assertEquals(1, ticketDAO.getNbTicket("MNOPQR"));
+        assertEquals(3, dataBaseConfig.count("select NB_VISIT from vehicle_visit where VEHICLE_REG_NUMBER = 'ABCDEF'"));
+    }
+
+    @Test
+    @DisplayName("Keep the tickets not exported yet")
+    public void keepTicketsNotExported() throws Exception {
+        //GIVEN
+        TicketArchiveJob job = new TicketArchiveJob(dataBaseConfig, 10, 0);
+        //repriced after its export
+        dataBaseConfig.execute("insert into ticket_export_pending(TICKET_ID, VERSION) values(1, 1)");
+
+        //WHEN
+        boolean completed = job.run(new Timestamp(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(30)), 2);
+
+        //THEN
+        assertTrue(completed);
+        assertEquals(1, job.getArchivedCount());
+        assertEquals(2, dataBaseConfig.count("select ID from ticket_archive_202302"));
+        assertEquals(4, dataBaseConfig.count("select count(*) from ticket"));
+    }
+}
@@ -0,0 +1,112 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TicketDAOTest {
+
+    private TicketDAO ticketDAO;
+
+    @Mock
+    private DataBaseConfig dataBaseConfig;
+    @Mock
+    private Connection connection;
+    @Mock
+    private PreparedStatement statement;
+    @Mock
+    private ResultSet resultSet;
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+    }
+
+    @Test
+    @DisplayName("Close the statement and release the connection when the query fails")
+    public void closeStatementOnQueryError() throws Exception {
+        //GIVEN
+        when(connection.prepareStatement(DBConstants.GET_TICKET)).thenReturn(statement);
+        when(statement.executeQuery()).thenThrow(new SQLException("connection reset"));
+
+        //WHEN
+        Ticket ticket = ticketDAO.getTicket("ABCDEF");
+
+        //THEN
+        assertNull(ticket);
+        verify(statement).close();
+        verify(dataBaseConfig).closeConnection(connection);
+    }
+
+    @Test
+    @DisplayName("Close the statements of a failed save and roll it back")
+    public void closeStatementsOnSaveError() throws Exception {
+        //GIVEN
+        //the visit counters cannot be loaded, the save still goes to the database
+        when(connection.prepareStatement(DBConstants.COUNT_VISIT_COUNTS)).thenThrow(new SQLException("connection reset"));
+        lenient().when(connection.prepareStatement(DBConstants.GET_OPEN_TICKETS)).thenThrow(new SQLException("connection reset"));
+        when(connection.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS)).thenReturn(statement);
+        when(statement.getGeneratedKeys()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(7);
+        when(connection.prepareStatement(DBConstants.INCREMENT_VISIT)).thenThrow(new SQLException("deadlock"));
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setInTime(new Date());
+
+        //WHEN
+        boolean saved = ticketDAO.saveTicket(ticket);
+
+        //THEN
+        assertFalse(saved);
+        verify(resultSet).close();
+        verify(statement).close();
+        verify(dataBaseConfig).rollback(connection);
+        verify(connection, never()).commit();
+    }
+
+    @Test
+    @DisplayName("Refuse to close a ticket another exit already closed")
+    public void updateClosedTicket() throws Exception {
+        //GIVEN
+        when(connection.prepareStatement(DBConstants.UPDATE_TICKET)).thenReturn(statement);
+        when(statement.executeUpdate()).thenReturn(0);
+        Ticket ticket = new Ticket();
+        ticket.setId(7);
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setInTime(new Date(System.currentTimeMillis() - 3600000));
+        ticket.setOutTime(new Date());
+
+        //WHEN
+        boolean updated = ticketDAO.updateTicket(ticket);
+
+        //THEN
+        assertFalse(updated);
+        verify(statement).close();
+        verify(dataBaseConfig).closeConnection(connection);
+    }
+}
@@ -0,0 +1,220 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.TicketExportJob;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TicketExportJobTest {
+
+    private static final long NOW = System.currentTimeMillis();
+
+    private EmbeddedDataBaseConfig dataBaseConfig;
+
+    @TempDir
+    Path exportDirectory;
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+        dataBaseConfig = new EmbeddedDataBaseConfig("export");
+        dataBaseConfig.createSchema(3, 2);
+        dataBaseConfig.saveTicket(1, "ABCDEF", 1.5, hoursAgo(5), hoursAgo(4));
+        dataBaseConfig.saveTicket(4, "GHIJKL", 2.0, hoursAgo(5), hoursAgo(3));
+        dataBaseConfig.saveTicket(2, "ABCDEF", 1.43, hoursAgo(3), hoursAgo(2));
+        //still parked: exported once closed
+        dataBaseConfig.saveTicket(3, "MNOPQR", 0, hoursAgo(2), null);
+        dataBaseConfig.saveTicket(5, "STUVWX", 1.0, hoursAgo(2), hoursAgo(1));
+    }
+
+    @AfterEach
+    private void tearDown() {
+        dataBaseConfig.shutdown();
+    }
+
+    private static Date hoursAgo(int hours) {
+        return new Date(NOW - TimeUnit.HOURS.toMillis(hours));
+    }
+
+    private void closeTicket(int id) throws Exception {
+        Connection con = dataBaseConfig.getConnection();
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_TICKET)) {
+            ps.setDouble(1, 3.0);
+            ps.setTimestamp(2, new Timestamp(NOW));
+            ps.setInt(3, id);
+            ps.execute();
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private void repriceTicket(int id, double price) throws Exception {
+        Connection con = dataBaseConfig.getConnection();
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_TICKET_PRICE);
+             PreparedStatement markPs = con.prepareStatement(DBConstants.MARK_TICKET_FOR_EXPORT)) {
+            ps.setDouble(1, price);
+            ps.setInt(2, id);
+            ps.execute();
+            markPs.setInt(1, id);
+            markPs.execute();
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private List<Ticket> readExport() throws Exception {
+        List<Ticket> tickets = new ArrayList<>();
+        try (Stream<Path> files = Files.list(exportDirectory)) {
+            for (Path file : (Iterable<Path>) files.filter(file -> file.toString().endsWith(".tcol.gz")).sorted()::iterator) {
+                TicketExportJob.readFile(file, tickets::add);
+            }
+        }
+        //updates files sort after the tickets files and their rows replace the older ones
+        Map<Integer, Ticket> latest = new TreeMap<>();
+        for (Ticket ticket : tickets) {
+            latest.put(ticket.getId(), ticket);
+        }
+        return new ArrayList<>(latest.values());
+    }
+
+    @Test
+    @DisplayName("Export the closed tickets, past the open one")
+    public void exportClosedTickets() throws Exception {
+        //GIVEN
+        TicketExportJob job = new TicketExportJob(dataBaseConfig, exportDirectory, 2, 2, 2);
+
+        //WHEN
+        boolean completed = job.run();
+
+        //THEN
+        assertTrue(completed);
+        assertEquals(4, job.getExportedCount());
+        assertEquals(5, job.getLastId());
+        assertTrue(Files.exists(exportDirectory.resolve("tickets-1.tcol.gz")));
+        assertTrue(Files.exists(exportDirectory.resolve("tickets-3.tcol.gz")));
+        List<Ticket> tickets = readExport();
+        assertEquals(4, tickets.size());
+        Ticket second = tickets.get(1);
+        assertEquals(2, second.getId());
+        assertEquals(4, second.getParkingSpot().getId());
+        assertEquals(ParkingType.BIKE, second.getParkingSpot().getParkingType());
+        assertEquals("GHIJKL", second.getVehicleRegNumber());
+        assertEquals(2.0, second.getPrice());
+        assertEquals(NOW - TimeUnit.HOURS.toMillis(5), second.getInTime().getTime());
+        assertEquals(NOW - TimeUnit.HOURS.toMillis(3), second.getOutTime().getTime());
+        assertEquals(1.43, tickets.get(2).getPrice());
+    }
+
+    @Test
+    @DisplayName("Resume from the watermark once the open ticket is closed")
+    public void resumeFromWatermark() throws Exception {
+        //GIVEN
+        new TicketExportJob(dataBaseConfig, exportDirectory, 10, 10, 100).run();
+        closeTicket(4);
+        TicketExportJob job = new TicketExportJob(dataBaseConfig, exportDirectory, 10, 10, 100);
+
+        //WHEN
+        job.run();
+
+        //THEN
+        assertEquals(1, job.getExportedCount());
+        assertEquals(5, job.getLastId());
+        List<Ticket> tickets = readExport();
+        assertEquals(5, tickets.size());
+        for (int i = 0; i < tickets.size(); i++) {
+            assertEquals(i + 1, tickets.get(i).getId());
+        }
+        assertEquals("MNOPQR", tickets.get(3).getVehicleRegNumber());
+        assertEquals(3.0, tickets.get(3).getPrice());
+    }
+
+    @Test
+    @DisplayName("Export a repriced ticket again and only once")
+    public void exportRepricedTicket() throws Exception {
+        //GIVEN
+        new TicketExportJob(dataBaseConfig, exportDirectory, 10, 10, 100).run();
+        repriceTicket(2, 2.5);
+        TicketExportJob job = new TicketExportJob(dataBaseConfig, exportDirectory, 10, 10, 100);
+
+        //WHEN
+        job.run();
+        TicketExportJob nextJob = new TicketExportJob(dataBaseConfig, exportDirectory, 10, 10, 100);
+        nextJob.run();
+
+        //THEN
+        assertEquals(1, job.getExportedCount());
+        assertEquals(0, nextJob.getExportedCount());
+        List<Ticket> tickets = readExport();
+        assertEquals(4, tickets.size());
+        assertEquals(2.5, tickets.get(1).getPrice());
+    }
+
+    @Test
+    @DisplayName("Export a ticket committed after the export went past its ID")
+    public void exportTicketCommittedLate() throws Exception {
+        //GIVEN
+        //ID 6 is given but not committed when ID 7 is exported
+        Connection gateCon = dataBaseConfig.getConnection();
+        gateCon.setAutoCommit(false);
+        dataBaseConfig.saveTicket(gateCon, 1, "YZABCD", 1.0, hoursAgo(1), new Date(NOW));
+        dataBaseConfig.saveTicket(2, "EFGHIJ", 2.0, hoursAgo(2), hoursAgo(1));
+        new TicketExportJob(dataBaseConfig, exportDirectory, 10, 10, 100).run();
+        assertEquals(5, TicketExportJob.readExportedUpToId(exportDirectory));
+        gateCon.commit();
+        dataBaseConfig.closeConnection(gateCon);
+        TicketExportJob job = new TicketExportJob(dataBaseConfig, exportDirectory, 10, 10, 100);
+
+        //WHEN
+        job.run();
+
+        //THEN
+        assertEquals(1, job.getExportedCount());
+        assertEquals(7, job.getLastId());
+        assertEquals(7, TicketExportJob.readExportedUpToId(exportDirectory));
+        List<Ticket> tickets = readExport();
+        assertEquals(6, tickets.size());
+        assertEquals("YZABCD", tickets.get(4).getVehicleRegNumber());
+    }
+
+    @Test
+    @DisplayName("Forget the ID of a ticket never committed once the hole times out")
+    public void forgetRolledBackTicket() throws Exception {
+        //GIVEN
+        Connection gateCon = dataBaseConfig.getConnection();
+        gateCon.setAutoCommit(false);
+        dataBaseConfig.saveTicket(gateCon, 1, "YZABCD", 1.0, hoursAgo(1), new Date(NOW));
+        dataBaseConfig.saveTicket(2, "EFGHIJ", 2.0, hoursAgo(2), hoursAgo(1));
+        new TicketExportJob(dataBaseConfig, exportDirectory, 10, 10, 100, 0).run();
+        gateCon.rollback();
+        dataBaseConfig.closeConnection(gateCon);
+        TicketExportJob job = new TicketExportJob(dataBaseConfig, exportDirectory, 10, 10, 100, 0);
+
+        //WHEN
+        job.run();
+
+        //THEN
+        assertEquals(0, job.getExportedCount());
+        assertEquals(7, TicketExportJob.readExportedUpToId(exportDirectory));
+        assertEquals(5, readExport().size());
+    }
+}
@@ -0,0 +1,168 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketRollups;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.service.TicketRepricingJob;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TicketRepricingJobTest {
+
+    private static final long NOW = System.currentTimeMillis();
+
+    private EmbeddedDataBaseConfig dataBaseConfig;
+    private Date from;
+    private Date to;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+        dataBaseConfig = new EmbeddedDataBaseConfig("repricing");
+        dataBaseConfig.createSchema(3, 2);
+        from = new Date(NOW - TimeUnit.DAYS.toMillis(10));
+        to = new Date(NOW + TimeUnit.DAYS.toMillis(1));
+        //first visit of ABCDEF, 1h by car, wrongly priced
+        dataBaseConfig.saveTicket(1, "ABCDEF", 0, hoursAgo(5), hoursAgo(4));
+        //second visit of ABCDEF, 1h by car, priced without the recurring user discount
+        dataBaseConfig.saveTicket(2, "ABCDEF", 1.5, hoursAgo(3), hoursAgo(2));
+        //first visit of GHIJKL, 2h by bike, correctly priced
+        dataBaseConfig.saveTicket(4, "GHIJKL", 2.0, hoursAgo(3), hoursAgo(1));
+        //still parked, not repriced
+        dataBaseConfig.saveTicket(5, "MNOPQR", 0, hoursAgo(1), null);
+    }
+
+    @AfterEach
+    private void tearDown() {
+        dataBaseConfig.shutdown();
+    }
+
+    private static Date hoursAgo(int hours) {
+        return new Date(NOW - TimeUnit.HOURS.toMillis(hours));
+    }
+
+    @Test
+    @DisplayName("Reprice the closed tickets of the date range and only write the changed prices")
+    public void repriceClosedTickets() throws Exception {
+        //GIVEN
+        Path checkpointFile = tempDir.resolve("repricing.checkpoint");
+        TicketRepricingJob job = new TicketRepricingJob(dataBaseConfig, checkpointFile, 2, 2, ForkJoinPool.commonPool());
+
+        //WHEN
+        boolean completed = job.run(from, to);
+
+        //THEN
+        assertTrue(completed);
+        assertEquals(3, job.getProcessedCount());
+        assertEquals(2, job.getUpdatedCount());
+        assertEquals(3, job.getLastId());
+        assertEquals(1.5, dataBaseConfig.getPrice(1));
+        assertEquals(1.43, dataBaseConfig.getPrice(2));
+        assertEquals(2.0, dataBaseConfig.getPrice(3));
+        assertEquals(0, dataBaseConfig.getPrice(4));
+        //the changed tickets are exported again
+        assertEquals(2, dataBaseConfig.count("select count(*) from ticket_export_pending"));
+        assertFalse(Files.exists(checkpointFile));
+    }
+
+    @Test
+    @DisplayName("Resume repricing after the ticket saved in the checkpoint")
+    public void resumeFromCheckpoint() throws Exception {
+        //GIVEN
+        Path checkpointFile = tempDir.resolve("repricing.checkpoint");
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty("from", String.valueOf(from.getTime()));
+        checkpoint.setProperty("to", String.valueOf(to.getTime()));
+        checkpoint.setProperty("lastId", "1");
+        try (OutputStream out = Files.newOutputStream(checkpointFile)) {
+            checkpoint.store(out, null);
+        }
+        TicketRepricingJob job = new TicketRepricingJob(dataBaseConfig, checkpointFile, 10, 10, ForkJoinPool.commonPool());
+
+        //WHEN
+        job.run(from, to);
+
+        //THEN
+        assertEquals(2, job.getProcessedCount());
+        assertEquals(0, dataBaseConfig.getPrice(1));
+        assertEquals(1.43, dataBaseConfig.getPrice(2));
+    }
+
+    @Test
+    @DisplayName("Count the archived visits of the vehicle as previous visits")
+    public void repriceAfterArchiving() throws Exception {
+        //GIVEN
+        Connection con = dataBaseConfig.getConnection();
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.INCREMENT_ARCHIVED_VISITS)) {
+            ps.setString(1, "ABCDEF");
+            ps.setInt(2, 1);
+            ps.setInt(3, 1);
+            ps.execute();
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+        TicketRepricingJob job = new TicketRepricingJob(dataBaseConfig, tempDir.resolve("repricing.checkpoint"), 10, 10, ForkJoinPool.commonPool());
+
+        //WHEN
+        job.run(from, to);
+
+        //THEN
+        assertEquals(1.43, dataBaseConfig.getPrice(1));
+        assertEquals(1.43, dataBaseConfig.getPrice(2));
+    }
+
+    private TicketRollups loadRollups() {
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO.loadRollups();
+        return ticketDAO.getRollups();
+    }
+
+    @Test
+    @DisplayName("Add the price changes to the revenue of the persisted rollups")
+    public void repriceRollups() throws Exception {
+        //GIVEN
+        loadRollups();
+        TicketRepricingJob job = new TicketRepricingJob(dataBaseConfig, tempDir.resolve("repricing.checkpoint"), 10, 10, ForkJoinPool.commonPool());
+
+        //WHEN
+        job.run(from, to);
+
+        //THEN
+        TicketRollups kept = loadRollups();
+        dataBaseConfig.execute("delete from ticket_rollup");
+        TicketRollups backfilled = loadRollups();
+        LocalDateTime firstExit = LocalDateTime.ofInstant(Instant.ofEpochMilli(NOW - TimeUnit.HOURS.toMillis(4)), ZoneId.systemDefault());
+        assertEquals(150, kept.getHour(firstExit, ParkingType.CAR).getRevenueCents());
+        for (int outHoursAgo : new int[]{4, 2, 1}) {
+            LocalDateTime exit = LocalDateTime.ofInstant(Instant.ofEpochMilli(NOW - TimeUnit.HOURS.toMillis(outHoursAgo)), ZoneId.systemDefault());
+            for (ParkingType parkingType : ParkingType.values()) {
+                assertEquals(backfilled.getHour(exit, parkingType).getRevenueCents(), kept.getHour(exit, parkingType).getRevenueCents());
+                assertEquals(backfilled.getDay(exit.toLocalDate(), parkingType).getRevenueCents(),
+                        kept.getDay(exit.toLocalDate(), parkingType).getRevenueCents());
+            }
+        }
+    }
+}
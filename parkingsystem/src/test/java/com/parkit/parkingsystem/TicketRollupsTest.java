@@ -0,0 +1,220 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketRollups;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.TicketRollup;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TicketRollupsTest {
+
+    private static final LocalDate DAY = LocalDate.of(2023, 3, 10);
+
+    private EmbeddedDataBaseConfig dataBaseConfig;
+    private TicketDAO ticketDAO;
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+        dataBaseConfig = new EmbeddedDataBaseConfig("rollups");
+        dataBaseConfig.createSchema(3, 2);
+        dataBaseConfig.saveTicket(1, "ABCDEF", 1.5, DAY.atTime(8, 10), DAY.atTime(9, 40));
+        dataBaseConfig.saveTicket(2, "GHIJKL", 0, DAY.atTime(8, 30), DAY.atTime(8, 50));
+        dataBaseConfig.saveTicket(4, "MNOPQR", 2.0, DAY.atTime(9, 0), DAY.atTime(11, 0));
+        //still parked
+        dataBaseConfig.saveTicket(3, "STUVWX", 0, DAY.atTime(9, 20), null);
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+    }
+
+    @AfterEach
+    private void tearDown() {
+        dataBaseConfig.shutdown();
+    }
+
+    @Test
+    @DisplayName("Backfill the hourly and daily rollups from the ticket history")
+    public void backfillRollups() {
+        //GIVEN
+        assertNull(ticketDAO.getRollups());
+
+        //WHEN
+        boolean loaded = ticketDAO.loadRollups();
+
+        //THEN
+        assertTrue(loaded);
+        TicketRollups rollups = ticketDAO.getRollups();
+        TicketRollup carDay = rollups.getDay(DAY, ParkingType.CAR);
+        assertEquals(2, carDay.getTicketCount());
+        assertEquals(150, carDay.getRevenueCents());
+        assertEquals(55.0, carDay.getAverageDurationMinutes());
+        assertEquals(2, carDay.getPeakOccupied());
+        TicketRollup carEight = rollups.getHour(DAY.atTime(8, 45), ParkingType.CAR);
+        assertEquals(DAY.atTime(8, 0), carEight.getStart());
+        assertEquals(1, carEight.getTicketCount());
+        assertEquals(20.0, carEight.getAverageDurationMinutes());
+        assertEquals(2, carEight.getPeakOccupied());
+        assertEquals(2, rollups.getHour(DAY.atTime(9, 0), ParkingType.CAR).getPeakOccupied());
+        assertEquals(0, rollups.getHour(DAY.atTime(10, 0), ParkingType.CAR).getTicketCount());
+        TicketRollup bikeEleven = rollups.getHour(DAY.atTime(11, 0), ParkingType.BIKE);
+        assertEquals(1, bikeEleven.getTicketCount());
+        assertEquals(200, bikeEleven.getRevenueCents());
+        assertEquals(1, bikeEleven.getPeakOccupied());
+        assertEquals(1, rollups.getOccupied(ParkingType.CAR));
+        assertEquals(0, rollups.getOccupied(ParkingType.BIKE));
+    }
+
+    @Test
+    @DisplayName("Add the tickets saved and closed after the backfill to the rollups")
+    public void updateRollupsOnTicketChanges() {
+        //GIVEN
+        ticketDAO.loadRollups();
+        Ticket parked = ticketDAO.getTicketForExit("STUVWX");
+        parked.setOutTime(Timestamp.valueOf(DAY.atTime(12, 15)));
+        parked.setPrice(3.0);
+        Ticket entering = new Ticket();
+        entering.setParkingSpot(new ParkingSpot(2, ParkingType.CAR, false));
+        entering.setVehicleRegNumber("ABCDEF");
+        entering.setInTime(Timestamp.valueOf(DAY.atTime(12, 30)));
+
+        //WHEN
+        boolean updated = ticketDAO.updateTicket(parked);
+        boolean saved = ticketDAO.saveTicket(entering);
+
+        //THEN
+        assertTrue(updated);
+        assertTrue(saved);
+        TicketRollups rollups = ticketDAO.getRollups();
+        TicketRollup carDay = rollups.getDay(DAY, ParkingType.CAR);
+        assertEquals(3, carDay.getTicketCount());
+        assertEquals(450, carDay.getRevenueCents());
+        assertEquals(4.5, carDay.getRevenue());
+        TicketRollup carNoon = rollups.getHour(DAY.atTime(12, 0), ParkingType.CAR);
+        assertEquals(1, carNoon.getTicketCount());
+        assertEquals(175.0, carNoon.getAverageDurationMinutes());
+        assertEquals(1, carNoon.getPeakOccupied());
+        assertEquals(1, rollups.getOccupied(ParkingType.CAR));
+    }
+
+    @Test
+    @DisplayName("Load the persisted rollups without the ticket history")
+    public void loadPersistedRollups() throws Exception {
+        //GIVEN
+        ticketDAO.loadRollups();
+        Ticket parked = ticketDAO.getTicketForExit("STUVWX");
+        parked.setOutTime(Timestamp.valueOf(DAY.atTime(12, 15)));
+        parked.setPrice(3.0);
+        ticketDAO.updateTicket(parked);
+        //archived: only the persisted rollups still count these tickets
+        Connection con = dataBaseConfig.getConnection();
+        try (PreparedStatement ps = con.prepareStatement("delete from ticket")) {
+            ps.execute();
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+        TicketDAO restartedTicketDAO = new TicketDAO();
+        restartedTicketDAO.dataBaseConfig = dataBaseConfig;
+
+        //WHEN
+        boolean loaded = restartedTicketDAO.loadRollups();
+
+        //THEN
+        assertTrue(loaded);
+        TicketRollups rollups = restartedTicketDAO.getRollups();
+        TicketRollup carDay = rollups.getDay(DAY, ParkingType.CAR);
+        assertEquals(3, carDay.getTicketCount());
+        assertEquals(450, carDay.getRevenueCents());
+        assertEquals(2, carDay.getPeakOccupied());
+        TicketRollup carNoon = rollups.getHour(DAY.atTime(12, 0), ParkingType.CAR);
+        assertEquals(1, carNoon.getTicketCount());
+        assertEquals(175.0, carNoon.getAverageDurationMinutes());
+        assertEquals(200, rollups.getHour(DAY.atTime(11, 0), ParkingType.BIKE).getRevenueCents());
+        assertEquals(0, rollups.getOccupied(ParkingType.CAR));
+    }
+
+    @Test
+    @DisplayName("Sum the revenue in cents without rounding errors")
+    public void sumRevenueInCents() {
+        //GIVEN
+        TicketRollups rollups = new TicketRollups();
+        Date inTime = Timestamp.valueOf(DAY.atTime(8, 0));
+        Date outTime = Timestamp.valueOf(DAY.atTime(9, 30));
+
+        //WHEN
+        for (int i = 0; i < 10; i++) {
+            rollups.vehicleEntered(ParkingType.CAR, inTime);
+            rollups.vehicleExited(ParkingType.CAR, inTime, outTime, 0.1);
+        }
+
+        //THEN
+        TicketRollup carDay = rollups.getDay(DAY, ParkingType.CAR);
+        assertEquals(100, carDay.getRevenueCents());
+        assertEquals(1.0, carDay.getRevenue());
+    }
+
+    @Test
+    @DisplayName("Persist the peak reached by concurrent entries")
+    public void persistPeakOfConcurrentEntries() throws Exception {
+        //GIVEN
+        ticketDAO.loadRollups();
+
+        //WHEN
+        try (ExecutorService gates = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < 40; i++) {
+                String vehicleRegNumber = "GATE" + i;
+                gates.submit(() -> {
+                    Ticket entering = new Ticket();
+                    entering.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+                    entering.setVehicleRegNumber(vehicleRegNumber);
+                    entering.setInTime(Timestamp.valueOf(DAY.atTime(13, 0)));
+                    ticketDAO.saveTicket(entering);
+                });
+            }
+        }
+
+        //THEN
+        assertEquals(41, ticketDAO.getRollups().getHour(DAY.atTime(13, 0), ParkingType.CAR).getPeakOccupied());
+        TicketDAO restartedTicketDAO = new TicketDAO();
+        restartedTicketDAO.dataBaseConfig = dataBaseConfig;
+        restartedTicketDAO.loadRollups();
+        assertEquals(41, restartedTicketDAO.getRollups().getHour(DAY.atTime(13, 0), ParkingType.CAR).getPeakOccupied());
+        assertEquals(41, restartedTicketDAO.getRollups().getDay(DAY, ParkingType.CAR).getPeakOccupied());
+    }
+
+    @Test
+    @DisplayName("Take back the exit of a ticket already closed")
+    public void revertExitOfClosedTicket() {
+        //GIVEN
+        ticketDAO.loadRollups();
+        Ticket parked = ticketDAO.getTicketForExit("STUVWX");
+        parked.setOutTime(Timestamp.valueOf(DAY.atTime(12, 15)));
+        parked.setPrice(3.0);
+        ticketDAO.updateTicket(parked);
+
+        //WHEN
+        boolean updated = ticketDAO.updateTicket(parked);
+
+        //THEN
+        assertFalse(updated);
+        TicketRollups rollups = ticketDAO.getRollups();
+        TicketRollup carDay = rollups.getDay(DAY, ParkingType.CAR);
+        assertEquals(3, carDay.getTicketCount());
+        assertEquals(450, carDay.getRevenueCents());
+        assertEquals(0, rollups.getOccupied(ParkingType.CAR));
+    }
+}
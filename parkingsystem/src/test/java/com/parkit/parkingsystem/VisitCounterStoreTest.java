@@ -0,0 +1,151 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.VisitCounterStore;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VisitCounterStoreTest {
+
+    @Test
+    @DisplayName("Count the visits of each vehicle and grow past the expected size")
+    public void countVisits() {
+        //GIVEN
+        VisitCounterStore store = new VisitCounterStore(1);
+        store.put("ABCDEF", 4);
+
+        //WHEN
+        for (int i = 0; i < 1000; i++) {
+            store.increment("V" + i);
+        }
+        store.increment("V7");
+
+        //THEN
+        assertEquals(1001, store.size());
+        assertEquals(4, store.getVisitCount("ABCDEF"));
+        assertEquals(2, store.getVisitCount("V7"));
+        assertEquals(1, store.getVisitCount("V999"));
+        assertEquals(0, store.getVisitCount("GHIJKL"));
+    }
+
+    @Test
+    @DisplayName("Keep every increment made by concurrent gates")
+    public void concurrentIncrements() throws Exception {
+        //GIVEN
+        VisitCounterStore store = new VisitCounterStore(16);
+
+        //WHEN
+        try (ExecutorService gates = Executors.newFixedThreadPool(8)) {
+            for (int gate = 0; gate < 8; gate++) {
+                gates.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        store.increment("V" + i);
+                        store.getVisitCount("V" + (499 - i));
+                    }
+                });
+            }
+        }
+
+        //THEN
+        assertEquals(500, store.size());
+        for (int i = 0; i < 500; i++) {
+            assertEquals(8, store.getVisitCount("V" + i));
+        }
+    }
+
+    @Test
+    @DisplayName("Rebuild the visit counters from the ticket history")
+    public void rebuildVisitCounters() throws Exception {
+        //GIVEN
+        EmbeddedDataBaseConfig dataBaseConfig = new EmbeddedDataBaseConfig("visit-counters");
+        try {
+            dataBaseConfig.createSchema(3, 0);
+            TicketDAO ticketDAO = new TicketDAO();
+            ticketDAO.dataBaseConfig = dataBaseConfig;
+            for (String vehicleRegNumber : new String[]{"ABCDEF", "ABCDEF", "GHIJKL"}) {
+                Ticket ticket = new Ticket();
+                ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+                ticket.setVehicleRegNumber(vehicleRegNumber);
+                ticket.setInTime(new Date());
+                ticketDAO.saveTicket(ticket);
+            }
+            assertEquals(2, ticketDAO.getNbTicket("ABCDEF"));
+            Connection con = dataBaseConfig.getConnection();
+            try (Statement statement = con.createStatement()) {
+                statement.execute("delete from vehicle_visit");
+            } finally {
+                dataBaseConfig.closeConnection(con);
+            }
+
+            //WHEN
+            TicketDAO restartedTicketDAO = new TicketDAO();
+            restartedTicketDAO.dataBaseConfig = dataBaseConfig;
+            assertTrue(restartedTicketDAO.rebuildVisitCounters());
+
+            //THEN
+            assertEquals(2, restartedTicketDAO.getNbTicket("ABCDEF"));
+            assertEquals(1, restartedTicketDAO.getNbTicket("GHIJKL"));
+            assertEquals(0, restartedTicketDAO.getNbTicket("MNOPQR"));
+        } finally {
+            dataBaseConfig.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Keep the visits counted while the counters are rebuilt")
+    public void countVisitsDuringRebuild() throws Exception {
+        //GIVEN
+        EmbeddedDataBaseConfig dataBaseConfig = new EmbeddedDataBaseConfig("visit-counters-rebuild");
+        try {
+            dataBaseConfig.createSchema(3, 0);
+            TicketDAO ticketDAO = new TicketDAO();
+            ticketDAO.dataBaseConfig = dataBaseConfig;
+            ticketDAO.loadVisitCounters();
+            //the embedded database may reject a save under contention, only the saved tickets are counted
+            AtomicInteger saved = new AtomicInteger();
+
+            //WHEN
+            try (ExecutorService gates = Executors.newFixedThreadPool(4)) {
+                for (int gate = 0; gate < 4; gate++) {
+                    gates.submit(() -> {
+                        for (int i = 0; i < 50; i++) {
+                            Ticket ticket = new Ticket();
+                            ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+                            ticket.setVehicleRegNumber("ABCDEF");
+                            ticket.setInTime(new Date());
+                            if (ticketDAO.saveTicket(ticket)) {
+                                saved.incrementAndGet();
+                            }
+                        }
+                    });
+                }
+                gates.submit(() -> {
+                    for (int i = 0; i < 20; i++) {
+                        ticketDAO.rebuildVisitCounters();
+                    }
+                });
+            }
+
+            //THEN
+            assertEquals(saved.get(), ticketDAO.getNbTicket("ABCDEF"));
+            TicketDAO restartedTicketDAO = new TicketDAO();
+            restartedTicketDAO.dataBaseConfig = dataBaseConfig;
+            assertEquals(saved.get(), restartedTicketDAO.getNbTicket("ABCDEF"));
+        } finally {
+            dataBaseConfig.shutdown();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DAO methods in isolation against the embedded database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DaoBenchmark {
+
+    private static final int NB_VEHICLES = 1000;
+
+    private EmbeddedDataBaseConfig dataBaseConfig;
+    private ParkingSpotDAO parkingSpotDAO;
+    private TicketDAO ticketDAO;
+    private ParkingSpot parkingSpot;
+    private Ticket closedTicket;
+    private int vehicle;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataBaseConfig = new EmbeddedDataBaseConfig("dao");
+        dataBaseConfig.createSchema(100, 100);
+        parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        parkingSpotDAO.loadAvailabilityIndex();
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        parkingSpot = new ParkingSpot(1, ParkingType.CAR, true);
+        for (int i = 0; i < NB_VEHICLES; i++) {
+            ticketDAO.saveTicket(ticket("V" + i));
+        }
+        closedTicket = ticketDAO.getTicket("V0");
+        closedTicket.setOutTime(new Date());
+        closedTicket.setPrice(1.5);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataBaseConfig.shutdown();
+    }
+
+    private static Ticket ticket(String vehicleRegNumber) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setInTime(new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)));
+        return ticket;
+    }
+
+    private String nextVehicle() {
+        vehicle = (vehicle + 1) % NB_VEHICLES;
+        return "V" + vehicle;
+    }
+
+    @Benchmark
+    public int getNextAvailableSlot() {
+        return parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR);
+    }
+
+    @Benchmark
+    public boolean updateParking() {
+        return parkingSpotDAO.updateParking(parkingSpot);
+    }
+
+    @Benchmark
+    public Ticket getTicket() {
+        return ticketDAO.getTicket(nextVehicle());
+    }
+
+    @Benchmark
+    public Ticket getTicketForExit() {
+        return ticketDAO.getTicketForExit(nextVehicle());
+    }
+
+    @Benchmark
+    public int getNbTicket() {
+        return ticketDAO.getNbTicket(nextVehicle());
+    }
+
+    @Benchmark
+    public boolean updateTicket() {
+        return ticketDAO.updateTicket(closedTicket);
+    }
+}
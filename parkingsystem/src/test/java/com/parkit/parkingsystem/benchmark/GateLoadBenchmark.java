@@ -0,0 +1,167 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.ConnectionPool;
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.config.StorageBackend;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.service.ParkingHttpServer;
+import com.parkit.parkingsystem.service.ParkingService;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test of the HTTP API: many gate terminals enter then exit vehicles concurrently, once with
+ * the fixed thread pool executor and once with virtual threads. Every database call is delayed to
+ * stand for the network round trip to MySQL, which the embedded database does not have.
+ *
+ * With -Dparkit.db.url (and -Dparkit.db.user, -Dparkit.db.password) the terminals run against that MySQL
+ * server instead, whose spots and tickets are reset first, and no latency is added: run it with
+ * -Djdk.tracePinnedThreads=short to see whether the driver pins the virtual threads during its I/O.
+ *
+ * Arguments: number of terminals (2000), entry/exit pairs per terminal (10), latency per database call in ms (5).
+ */
+public class GateLoadBenchmark {
+
+    private static final int POOL_SIZE = 256;
+
+    private static class RemoteDataBaseConfig extends EmbeddedDataBaseConfig {
+        private final long latencyMillis;
+
+        private RemoteDataBaseConfig(String name, long latencyMillis) {
+            super(name, POOL_SIZE);
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public Connection getConnection() throws ClassNotFoundException, SQLException {
+            Connection con = super.getConnection();
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return con;
+        }
+    }
+
+    private static class ServerDataBaseConfig extends DataBaseConfig {
+        private final ConnectionPool connectionPool = ConnectionPool.create(StorageBackend.MYSQL::connect, POOL_SIZE, 60000, 30000);
+
+        private void resetSchema(int nbCarSpots) throws Exception {
+            Connection con = getConnection();
+            try {
+                SchemaMigrator.migrate(con);
+                try (Statement statement = con.createStatement()) {
+                    statement.execute("delete from ticket");
+                    statement.execute("delete from vehicle_visit");
+                    statement.execute("delete from parking");
+                }
+                try (PreparedStatement ps = con.prepareStatement("insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(?,true,'CAR')")) {
+                    for (int i = 1; i <= nbCarSpots; i++) {
+                        ps.setInt(1, i);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+            } finally {
+                closeConnection(con);
+            }
+        }
+
+        @Override
+        public Connection getConnection() throws ClassNotFoundException, SQLException {
+            return connectionPool.borrow();
+        }
+
+        @Override
+        public void closeConnection(Connection con) {
+            if (con != null) {
+                connectionPool.release(con);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int terminals = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int pairsPerTerminal = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        long latencyMillis = args.length > 2 ? Long.parseLong(args[2]) : 5;
+        for (String mode : new String[]{"fixed", "virtual"}) {
+            run(mode, terminals, pairsPerTerminal, latencyMillis);
+        }
+    }
+
+    private static void run(String mode, int terminals, int pairsPerTerminal, long latencyMillis) throws Exception {
+        DataBaseConfig dataBaseConfig;
+        Runnable shutdown;
+        if (System.getProperty("parkit.db.url") != null) {
+            ServerDataBaseConfig serverDataBaseConfig = new ServerDataBaseConfig();
+            serverDataBaseConfig.resetSchema(terminals);
+            dataBaseConfig = serverDataBaseConfig;
+            shutdown = serverDataBaseConfig.connectionPool::close;
+        } else {
+            RemoteDataBaseConfig embeddedDataBaseConfig = new RemoteDataBaseConfig("load-" + mode, latencyMillis);
+            embeddedDataBaseConfig.createSchema(terminals, 0);
+            dataBaseConfig = embeddedDataBaseConfig;
+            shutdown = embeddedDataBaseConfig::shutdown;
+        }
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        parkingSpotDAO.loadAvailabilityIndex();
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        ParkingHttpServer server = new ParkingHttpServer(new ParkingService(parkingSpotDAO, ticketDAO), 0,
+                ParkingHttpServer.newExecutor(mode));
+        server.start();
+
+        AtomicLong requests = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        long start = System.nanoTime();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient httpClient = HttpClient.newHttpClient();
+            String baseUrl = "http://localhost:" + server.getPort() + "/api/";
+            for (int terminal = 0; terminal < terminals; terminal++) {
+                String vehicleRegNumber = "G" + terminal;
+                clients.submit(() -> {
+                    for (int i = 0; i < pairsPerTerminal; i++) {
+                        send(httpClient, baseUrl + "entries?parkingType=CAR&vehicleRegNumber=" + vehicleRegNumber, 201, requests, errors);
+                        send(httpClient, baseUrl + "exits?vehicleRegNumber=" + vehicleRegNumber, 200, requests, errors);
+                    }
+                });
+            }
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        server.stop();
+        shutdown.run();
+
+        System.out.println(String.format("%-8s %d terminals, %d requests, %d errors in %.1f s: %.0f requests/s",
+                mode, terminals, requests.get(), errors.get(), elapsedNanos / 1e9,
+                requests.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos));
+    }
+
+    private static void send(HttpClient httpClient, String url, int expectedStatus, AtomicLong requests, AtomicLong errors) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(url)).POST(HttpRequest.BodyPublishers.noBody()).build();
+            if (httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() != expectedStatus) {
+                errors.incrementAndGet();
+            }
+        } catch (Exception e) {
+            errors.incrementAndGet();
+        } finally {
+            requests.incrementAndGet();
+        }
+    }
+}
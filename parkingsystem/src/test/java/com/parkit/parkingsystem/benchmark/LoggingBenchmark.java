@@ -0,0 +1,105 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilder;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilderFactory;
+import org.apache.logging.log4j.core.config.builder.api.RootLoggerComponentBuilder;
+import org.apache.logging.log4j.core.config.builder.impl.BuiltConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logging overhead of a DAO call: a ticket lookup in the embedded database, logged to a file.
+ *
+ * lifecycle=info is the former behaviour, where every statement and result set close was written
+ * at info level; lifecycle=debug is the current one with the root logger at info. async=false
+ * writes on the calling thread, async=true publishes to the ring buffer of an async root logger.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class LoggingBenchmark {
+
+    private static final int NB_VEHICLES = 1000;
+
+    @Param({"info", "debug"})
+    public String lifecycle;
+
+    @Param({"false", "true"})
+    public boolean async;
+
+    private EmbeddedDataBaseConfig dataBaseConfig;
+    private TicketDAO ticketDAO;
+
+    @Setup
+    public void setUp() throws Exception {
+        //with lifecycle=info the root logger also lets the debug lifecycle messages through, as info used to
+        Configurator.reconfigure(configuration("info".equals(lifecycle) ? Level.DEBUG : Level.INFO, async));
+        dataBaseConfig = new EmbeddedDataBaseConfig("logging", 8);
+        dataBaseConfig.createSchema(1, 0);
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        for (int i = 0; i < NB_VEHICLES; i++) {
+            Ticket ticket = new Ticket();
+            ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+            ticket.setVehicleRegNumber("V" + i);
+            ticket.setInTime(new Date());
+            ticketDAO.saveTicket(ticket);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataBaseConfig.shutdown();
+    }
+
+    private static BuiltConfiguration configuration(Level level, boolean async) {
+        ConfigurationBuilder<BuiltConfiguration> builder = ConfigurationBuilderFactory.newConfigurationBuilder();
+        builder.add(builder.newAppender("file", "File")
+                .addAttribute("fileName", "target/logging-benchmark.log")
+                .addAttribute("append", false)
+                .add(builder.newLayout("PatternLayout").addAttribute("pattern", "%d{yyyy-MM-dd HH:mm:ss} %-5p %c{1} - %m%n")));
+        RootLoggerComponentBuilder root = async ? builder.newAsyncRootLogger(level) : builder.newRootLogger(level);
+        builder.add(root.add(builder.newAppenderRef("file")));
+        return builder.build();
+    }
+
+    @Benchmark
+    public Ticket getTicket() {
+        return ticketDAO.getTicket("V" + ThreadLocalVehicle.next());
+    }
+
+    private static final class ThreadLocalVehicle {
+        private static final ThreadLocal<int[]> vehicle = ThreadLocal.withInitial(() -> new int[1]);
+
+        private static int next() {
+            int[] current = vehicle.get();
+            current[0] = (current[0] + 1) % NB_VEHICLES;
+            return current[0];
+        }
+    }
+}
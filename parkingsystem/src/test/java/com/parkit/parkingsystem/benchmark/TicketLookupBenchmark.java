@@ -0,0 +1,144 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of the exit lookup on the test database, filled with a large ticket history,
+ * before and after the indexes of V3__ticket_indexes.sql are created.
+ * Usage: TicketLookupBenchmark [ticketCounts, default 1000000,10000000] [lookups, default 10000]
+ */
+public class TicketLookupBenchmark {
+
+    private static final int INSERT_BATCH_SIZE = 10000;
+    private static final int VISITS_PER_VEHICLE = 10;
+    private static final String[] INDEXES = {"IDX_TICKET_VEHICLE_IN_TIME", "IDX_TICKET_VEHICLE_OUT_TIME", "IDX_TICKET_OUT_TIME"};
+
+    private final DataBaseTestConfig dataBaseTestConfig = new DataBaseTestConfig();
+    private final Random random = new Random(42);
+
+    public static void main(String[] args) throws Exception {
+        String ticketCounts = args.length > 0 ? args[0] : "1000000,10000000";
+        int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        TicketLookupBenchmark benchmark = new TicketLookupBenchmark();
+        for (String ticketCount : ticketCounts.split(",")) {
+            benchmark.run(Integer.parseInt(ticketCount.trim()), lookups);
+        }
+    }
+
+    private void run(int nbTickets, int lookups) throws Exception {
+        Connection con = dataBaseTestConfig.getConnection();
+        try {
+            int nbVehicles = Math.max(1, nbTickets / VISITS_PER_VEHICLE);
+            dropIndexes(con);
+            seed(con, nbTickets, nbVehicles);
+            report(nbTickets, "no index", measure(con, nbVehicles, lookups));
+            createIndexes(con);
+            report(nbTickets, "indexed", measure(con, nbVehicles, lookups));
+        } finally {
+            dataBaseTestConfig.closeConnection(con);
+        }
+    }
+
+    private void seed(Connection con, int nbTickets, int nbVehicles) throws SQLException {
+        try (Statement statement = con.createStatement()) {
+            statement.execute("update parking set available = true");
+            statement.execute("truncate table ticket");
+            statement.execute("truncate table vehicle_visit");
+        }
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+        con.setAutoCommit(false);
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET)) {
+            for (int i = 0; i < nbTickets; i++) {
+                long inTime = now - TimeUnit.HOURS.toMillis(nbTickets - i);
+                ps.setInt(1, (i % 5) + 1);
+                ps.setString(2, plate(i % nbVehicles));
+                ps.setDouble(3, 1.5);
+                ps.setTimestamp(4, new Timestamp(inTime));
+                //the last visit of each vehicle stays open
+                ps.setTimestamp(5, i >= nbTickets - nbVehicles ? null : new Timestamp(inTime + TimeUnit.HOURS.toMillis(1)));
+                ps.addBatch();
+                if ((i + 1) % INSERT_BATCH_SIZE == 0) {
+                    ps.executeBatch();
+                    con.commit();
+                }
+            }
+            ps.executeBatch();
+            con.commit();
+        } finally {
+            con.setAutoCommit(true);
+        }
+        try (Statement statement = con.createStatement()) {
+            statement.execute("insert into vehicle_visit(VEHICLE_REG_NUMBER, NB_VISIT) select VEHICLE_REG_NUMBER, count(*) from ticket group by VEHICLE_REG_NUMBER");
+        }
+        System.out.println(nbTickets + " tickets seeded in " + TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) + " s");
+    }
+
+    private long[] measure(Connection con, int nbVehicles, int lookups) throws SQLException {
+        long[] latencies = new long[lookups];
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKET_FOR_EXIT)) {
+            //warm up the buffer pool and the statement
+            for (int i = 0; i < Math.min(lookups, 1000); i++) {
+                lookup(ps, plate(random.nextInt(nbVehicles)));
+            }
+            for (int i = 0; i < lookups; i++) {
+                long start = System.nanoTime();
+                lookup(ps, plate(random.nextInt(nbVehicles)));
+                latencies[i] = System.nanoTime() - start;
+            }
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private void lookup(PreparedStatement ps, String vehicleRegNumber) throws SQLException {
+        ps.setString(1, vehicleRegNumber);
+        try (ResultSet rs = ps.executeQuery()) {
+            rs.next();
+        }
+    }
+
+    private void dropIndexes(Connection con) {
+        for (String index : INDEXES) {
+            try (Statement statement = con.createStatement()) {
+                statement.execute("drop index " + index + " on ticket");
+            } catch (SQLException e) {
+                //index was not created yet
+            }
+        }
+    }
+
+    private void createIndexes(Connection con) throws Exception {
+        List<String> statements = SchemaMigrator.readStatements("V3__ticket_indexes.sql");
+        try (Statement statement = con.createStatement()) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+        }
+    }
+
+    private static String plate(int vehicle) {
+        return "P" + vehicle;
+    }
+
+    private static void report(int nbTickets, String label, long[] latencies) {
+        System.out.println(String.format("%,d tickets, %s: p50=%d us, p99=%d us, max=%d us",
+                nbTickets, label,
+                TimeUnit.NANOSECONDS.toMicros(latencies[latencies.length / 2]),
+                TimeUnit.NANOSECONDS.toMicros(latencies[(int) (latencies.length * 0.99)]),
+                TimeUnit.NANOSECONDS.toMicros(latencies[latencies.length - 1])));
+    }
+}
@@ -6,6 +6,7 @@ import com.parkit.parkingsystem.model.Ticket;
 
 import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
 import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
+import com.parkit.parkingsystem.service.InteractiveShell;
 import com.parkit.parkingsystem.service.ParkingService;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import com.parkit.parkingsystem.constants.ParkingType;
@@ -53,6 +54,9 @@ public class ParkingDataBaseIT {
         when(inputReaderUtil.readSelection()).thenReturn(1);
         when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
         dataBasePrepareService.clearDataBaseEntries();
+        parkingSpotDAO.loadAvailabilityIndex();
+        ticketDAO.loadOpenTickets();
+        ticketDAO.loadVisitCounters();
     }
 
     @AfterAll
@@ -64,10 +68,10 @@ public class ParkingDataBaseIT {
     @DisplayName("check if ticket is saved in DB and Parking table is updated with availability")
     public void testParkingACar() throws Exception {
         //GIVEN
-        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+        InteractiveShell shell = new InteractiveShell(inputReaderUtil, new ParkingService(parkingSpotDAO, ticketDAO));
         
         //WHEN
-        parkingService.processIncomingVehicle();
+        shell.processIncomingVehicle();
         Ticket ticket = ticketDAO.getTicket(inputReaderUtil.readVehicleRegistrationNumber());
 
         //THEN
@@ -80,9 +84,9 @@ public class ParkingDataBaseIT {
     @DisplayName("check if fare is generated and out time are populated correctly in DB")
     public void testParkingLotExit() throws Exception {
         //GIVEN
-        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+        InteractiveShell shell = new InteractiveShell(inputReaderUtil, new ParkingService(parkingSpotDAO, ticketDAO));
         
-        ParkingSpot parkingSpot = parkingService.getNextParkingNumberIfAvailable();
+        ParkingSpot parkingSpot = shell.getNextParkingNumberIfAvailable();
         Date inTime = new Date(System.currentTimeMillis() - ( 60 * 60 * 1002));
         Ticket ticket = new Ticket();
         ticket.setParkingSpot(parkingSpot);
@@ -93,7 +97,7 @@ public class ParkingDataBaseIT {
         ticketDAO.saveTicket(ticket);
 
         //WHEN
-        parkingService.processExitingVehicle();
+        shell.processExitingVehicle();
         ticket = ticketDAO.getTicket("ABCDEF");
 
         //THEN
@@ -107,10 +111,10 @@ public class ParkingDataBaseIT {
     public void testParkingLotExitRecurringUser() throws Exception {
         
         //GIVEN
-        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+        InteractiveShell shell = new InteractiveShell(inputReaderUtil, new ParkingService(parkingSpotDAO, ticketDAO));
         
         //first ticket
-        ParkingSpot parkingSpot = parkingService.getNextParkingNumberIfAvailable();
+        ParkingSpot parkingSpot = shell.getNextParkingNumberIfAvailable();
         Date inTime = new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(6));
         Date outTime = new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(5));
         Ticket firstTicket = new Ticket();
@@ -122,7 +126,7 @@ public class ParkingDataBaseIT {
         ticketDAO.saveTicket(firstTicket);
 
         //second ticket
-        ParkingSpot parkingSpot2 = parkingService.getNextParkingNumberIfAvailable();
+        ParkingSpot parkingSpot2 = shell.getNextParkingNumberIfAvailable();
         Date inTime2 = new Date(System.currentTimeMillis() - ( 60 * 60 * 1002));
         Ticket secondTicket = new Ticket();
         secondTicket.setParkingSpot(parkingSpot2);
@@ -133,12 +137,12 @@ public class ParkingDataBaseIT {
         ticketDAO.saveTicket(secondTicket);
 
         //WHEN
-        parkingService.processExitingVehicle();
+        shell.processExitingVehicle();
         secondTicket = ticketDAO.getTicket("ABCDEF");
 
         //THEN
         assertEquals(2, ticketDAO.getNbTicket(inputReaderUtil.readVehicleRegistrationNumber()));
-        assertEquals(Fare.CAR_RATE_PER_HOUR * 0.95, secondTicket.getPrice());
+        assertEquals(1.43, secondTicket.getPrice());
     }
 
 }
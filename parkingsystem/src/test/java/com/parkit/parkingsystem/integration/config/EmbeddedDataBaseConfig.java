@@ -0,0 +1,142 @@
+package com.parkit.parkingsystem.integration.config;
+
+import com.parkit.parkingsystem.config.ConnectionPool;
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.config.StorageBackend;
+import com.parkit.parkingsystem.constants.DBConstants;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Date;
+
+/**
+ * In-memory H2 database in MySQL mode, migrated with the production scripts, for tests and benchmarks
+ * that need to run without a MySQL server.
+ */
+public class EmbeddedDataBaseConfig extends DataBaseConfig {
+
+    private final String url;
+    private final ConnectionPool connectionPool;
+
+    public EmbeddedDataBaseConfig(String name) {
+        this(name, 16);
+    }
+
+    public EmbeddedDataBaseConfig(String name, int poolSize) {
+        this.url = StorageBackend.h2Url("mem:" + name) + ";DB_CLOSE_DELAY=-1";
+        this.connectionPool = ConnectionPool.create(() -> DriverManager.getConnection(url, "sa", ""), poolSize, 60000, 30000);
+    }
+
+    public void createSchema(int nbCarSpots, int nbBikeSpots) throws Exception {
+        new SchemaMigrator(this).migrate();
+        Connection con = getConnection();
+        try {
+            try (Statement statement = con.createStatement()) {
+                statement.execute("truncate table ticket restart identity");
+                statement.execute("delete from vehicle_visit");
+                statement.execute("delete from vehicle_archived_visit");
+                statement.execute("delete from ticket_export_pending");
+                statement.execute("delete from ticket_rollup");
+                statement.execute("delete from parking");
+            }
+            try (PreparedStatement ps = con.prepareStatement("insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(?,true,?)")) {
+                for (int i = 1; i <= nbCarSpots + nbBikeSpots; i++) {
+                    ps.setInt(1, i);
+                    ps.setString(2, i <= nbCarSpots ? "CAR" : "BIKE");
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        } finally {
+            closeConnection(con);
+        }
+    }
+
+    /**
+     * Inserts a ticket row directly, without the DAO caches. A null out time leaves the ticket open.
+     */
+    public void saveTicket(int parkingNumber, String vehicleRegNumber, double price, Date inTime, Date outTime) throws Exception {
+        Connection con = getConnection();
+        try {
+            saveTicket(con, parkingNumber, vehicleRegNumber, price, inTime, outTime);
+        } finally {
+            closeConnection(con);
+        }
+    }
+
+    public void saveTicket(int parkingNumber, String vehicleRegNumber, double price, LocalDateTime inTime, LocalDateTime outTime) throws Exception {
+        saveTicket(parkingNumber, vehicleRegNumber, price, Timestamp.valueOf(inTime), outTime == null ? null : Timestamp.valueOf(outTime));
+    }
+
+    /**
+     * Same insert on the caller's connection, so that it can be left uncommitted.
+     */
+    public void saveTicket(Connection con, int parkingNumber, String vehicleRegNumber, double price, Date inTime, Date outTime) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET)) {
+            ps.setInt(1, parkingNumber);
+            ps.setString(2, vehicleRegNumber);
+            ps.setDouble(3, price);
+            ps.setTimestamp(4, new Timestamp(inTime.getTime()));
+            ps.setTimestamp(5, outTime == null ? null : new Timestamp(outTime.getTime()));
+            ps.execute();
+        }
+    }
+
+    public double getPrice(int ticketId) throws Exception {
+        Connection con = getConnection();
+        try (PreparedStatement ps = con.prepareStatement("select PRICE from ticket where ID=?")) {
+            ps.setInt(1, ticketId);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getDouble(1);
+            }
+        } finally {
+            closeConnection(con);
+        }
+    }
+
+    public void execute(String sql) throws Exception {
+        Connection con = getConnection();
+        try (Statement statement = con.createStatement()) {
+            statement.execute(sql);
+        } finally {
+            closeConnection(con);
+        }
+    }
+
+    /**
+     * Returns the first column of the first row as an int, 0 when the query returns no row.
+     */
+    public int count(String sql) throws Exception {
+        Connection con = getConnection();
+        try (Statement statement = con.createStatement();
+             ResultSet rs = statement.executeQuery(sql)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        } finally {
+            closeConnection(con);
+        }
+    }
+
+    public void shutdown() {
+        connectionPool.close();
+    }
+
+    @Override
+    public Connection getConnection() throws ClassNotFoundException, SQLException {
+        return connectionPool.borrow();
+    }
+
+    @Override
+    public void closeConnection(Connection con) {
+        if (con != null) {
+            connectionPool.release(con);
+        }
+    }
+}
@@ -19,6 +19,9 @@ public class DataBasePrepareService {
             //clear ticket entries;
             connection.prepareStatement("truncate table ticket").execute();
 
+            //clear visit counters
+            connection.prepareStatement("truncate table vehicle_visit").execute();
+
         }catch(Exception e){
             e.printStackTrace();
         }finally {